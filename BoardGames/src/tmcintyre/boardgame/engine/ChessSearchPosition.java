@@ -0,0 +1,137 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.ChessMove;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * The {@link SearchPosition} of a {@link ChessGame}, whose moves are packed
+ * {@link ChessMove}s played with <code>ChessGame.doPackedMove</code>.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class ChessSearchPosition extends SearchPosition {
+
+  private final ChessGame game;
+  private final ChessBoard board;
+  private final IncrementalEvaluator incremental;
+
+  ChessSearchPosition(ChessGame game, IncrementalEvaluator incremental) {
+    this.game = game;
+    this.board = game.getBoard();
+    this.incremental = incremental;
+  }
+
+  @Override
+  int generate(int ply) {
+    return game.generateMoves(buffer(ply, ChessMove.MAX_MOVES));
+  }
+
+  @Override
+  void doMove(int move) {
+    if (incremental == null) {
+      game.doPackedMove(move);
+      return;
+    }
+    int from = ChessMove.from(move);
+    int to = ChessMove.to(move);
+    remove(from);
+    if (ChessMove.isCapture(move)) remove(ChessMove.capturedSquare(move));
+    if (ChessMove.isCastling(move)) remove(rookStart(move));
+
+    game.doPackedMove(move);
+
+    // The piece on the destination is the one promoted to, if any
+    add(to);
+    if (ChessMove.isCastling(move)) add(rookDest(move));
+  }
+
+  @Override
+  void undoMove(int move) {
+    if (incremental == null) {
+      game.undoPackedMove(move);
+      return;
+    }
+    remove(ChessMove.to(move));
+    if (ChessMove.isCastling(move)) remove(rookDest(move));
+
+    game.undoPackedMove(move);
+
+    add(ChessMove.from(move));
+    if (ChessMove.isCapture(move)) add(ChessMove.capturedSquare(move));
+    if (ChessMove.isCastling(move)) add(rookStart(move));
+  }
+
+  private void add(int square) {
+    incremental.add(board.pieceAt(square), ChessBoard.row(square), ChessBoard.col(square));
+  }
+
+  private void remove(int square) {
+    incremental.remove(board.pieceAt(square), ChessBoard.row(square), ChessBoard.col(square));
+  }
+
+  private static int rookStart(int move) {
+    int from = ChessMove.from(move);
+    int col = ChessMove.to(move) > from ? ChessBoard.SIZE - 1 : 0;
+    return ChessBoard.square(ChessBoard.row(from), col);
+  }
+
+  private static int rookDest(int move) {
+    return (ChessMove.from(move) + ChessMove.to(move)) / 2;
+  }
+
+  @Override
+  Move toMove(int move) {
+    return game.toMove(move);
+  }
+
+  @Override
+  int id(int move) {
+    return ((ChessMove.from(move) << 6 | ChessMove.to(move)) << 3 | ChessMove.promotion(move) + 1)
+        + 1;
+  }
+
+  @Override
+  int from(int move) {
+    return ChessMove.from(move);
+  }
+
+  @Override
+  int to(int move) {
+    return ChessMove.to(move);
+  }
+
+  @Override
+  PieceType movingType(int move) {
+    return ChessBoard.pieceType(ChessMove.piece(move));
+  }
+
+  @Override
+  PieceType capturedType(int move) {
+    return ChessMove.isCapture(move) ? ChessBoard.pieceType(ChessMove.captured(move)) : null;
+  }
+
+  @Override
+  PieceType promotionType(int move) {
+    return ChessMove.isPromotion(move) ? ChessBoard.pieceType(ChessMove.promotion(move)) : null;
+  }
+
+  @Override
+  boolean isPromotion(int move) {
+    return ChessMove.isPromotion(move);
+  }
+
+  @Override
+  boolean isInCheck() {
+    return game.isInCheck(game.getCurrentPlayer());
+  }
+
+  @Override
+  boolean isMidTurn() {
+    return false;
+  }
+
+}
@@ -0,0 +1,359 @@
+package tmcintyre.boardgame.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.tablebase.Tablebase;
+import tmcintyre.boardgame.tablebase.Tablebases;
+
+/**
+ * A computer player's search engine for two-player games such as
+ * <code>ChessGame</code> and <code>CheckersGame</code>.
+ * 
+ * <p>
+ * The engine searches the game in place with negamax alpha-beta, through a
+ * {@link SearchPosition} that handles its moves as <tt>int</tt>s and leaves
+ * the game exactly as it was found. A <code>ChessGame</code> is searched with
+ * packed moves from its <code>ChessMoveGenerator</code>, played with
+ * <code>doPackedMove</code> and taken back with <code>undoPackedMove</code>,
+ * so no <code>Move</code> objects are made (see {@link ChessSearchPosition}).
+ * Other games are searched through a {@link GameSearchPosition}, which plays
+ * the <code>Move</code>s from <code>Player.getAllLegalMoves</code> with
+ * <code>doMove(move, true)</code> and takes them back from the game's undo
+ * stack with <code>undoMove(true)</code>. Results are kept in a
+ * {@link TranspositionTable}, whose size is fixed when the engine is created,
+ * and carried over from one search to the next.
+ * 
+ * <p>
+ * The search is iteratively deepened, within the {@link SearchLimits} given:
+ * a depth, a soft and a hard time limit measured with
+ * <code>System.nanoTime</code>, and a number of nodes. When stopped it returns
+ * the best move found so far.
+ * 
+ * <p>
+ * Moves are searched in the order given by a {@link MoveOrdering}.
+ * Positions are scored by an {@link Evaluator}, by default a
+ * {@link PieceSquareEvaluator}. A player with no legal moves has lost, except in
+ * chess stalemate, which is a draw. A position repeated within the search is
+ * scored as a draw.
+ * 
+ * <p>
+ * A chess search may use several threads (see <code>setThreads</code>), in
+ * the manner of "Lazy SMP": helper threads search their own copies of the
+ * game to the same limits, sharing only the transposition table, and the
+ * results they leave there speed up the main search, whose move is played.
+ * Other games are always searched in the calling thread alone.
+ * 
+ * <p>
+ * A chess engine given {@link Tablebases} (see <code>setTablebases</code>)
+ * plays endings that have a table straight from it, without searching, and
+ * scores positions of those endings reached in a search from the table.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class Engine {
+
+  /**
+   * The score of a win at the root. A win <i>n</i> plies away scores
+   * <code>MATE - n</code>.
+   */
+  public static final int MATE = 30000;
+
+  /** The greatest number of plies searched from the root. */
+  public static final int MAX_PLY = 128;
+
+  /** A bound on the magnitude of every score <code>Evaluator</code>s return. */
+  public static final int MAX_EVALUATION = MATE - MAX_PLY - 1;
+
+  public static final int DEFAULT_HASH_MEGABYTES = 16;
+
+  static final int INFINITY = MATE + 1;
+
+  private final TranspositionTable table;
+  private final Evaluator evaluator;
+  private int threads = 1;
+  private ExecutorService helpers;
+  private Tablebases tablebases;
+  private SearchListener listener;
+
+  private volatile List<Search> current;
+
+  /**
+   * Creates an engine with the default hash size and a
+   * <code>PieceSquareEvaluator</code>.
+   */
+  public Engine() {
+    this(DEFAULT_HASH_MEGABYTES);
+  }
+
+  /**
+   * Creates an engine with a <code>PieceSquareEvaluator</code>.
+   * 
+   * @param hashMegabytes
+   *          the size of the transposition table
+   */
+  public Engine(int hashMegabytes) {
+    this(hashMegabytes, new PieceSquareEvaluator());
+  }
+
+  /**
+   * Creates an engine.
+   * 
+   * @param hashMegabytes
+   *          the size of the transposition table
+   * @param evaluator
+   *          scores the positions searched
+   */
+  public Engine(int hashMegabytes, Evaluator evaluator) {
+    this.table = new TranspositionTable(hashMegabytes);
+    this.evaluator = evaluator;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets the number of threads a chess search uses, including the calling
+   * thread. Takes effect from the next search.
+   * 
+   * @param threads
+   *          the number of threads, at least 1
+   * @throws IllegalArgumentException
+   *           if the number of threads is less than 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) throw new IllegalArgumentException("An engine needs at least one thread");
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the endgame tables a chess search consults, or <code>null</code> for
+   * none. Takes effect from the next search.
+   * 
+   * @param tablebases
+   */
+  public void setTablebases(Tablebases tablebases) {
+    this.tablebases = tablebases;
+  }
+
+  /**
+   * Sets the listener told of the progress of each search, or
+   * <code>null</code> for none. Its results count the nodes of all the
+   * search's threads.
+   * 
+   * @param listener
+   */
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the best <code>Move</code> for the player to move in the provided
+   * <code>Game</code>, or <code>null</code> if there is none.
+   * 
+   * @param game
+   *          a started two-player <code>Game</code>
+   * @param limits
+   * @return the best <code>Move</code> found
+   */
+  public Move bestMove(Game game, SearchLimits limits) {
+    return search(game, limits).getBestMove();
+  }
+
+  /**
+   * Searches the current position of the provided <code>Game</code>.
+   * 
+   * @param game
+   *          a started two-player <code>Game</code>
+   * @param limits
+   * @return the best <code>Move</code> found, with its score
+   * @throws IllegalArgumentException
+   *           if the <code>Game</code> does not have two players
+   */
+  public SearchResult search(Game game, SearchLimits limits) {
+    if (game.getPlayers().size() != 2) {
+      throw new IllegalArgumentException("The engine only plays two-player games");
+    }
+    long start = System.nanoTime();
+    if (tablebases != null && game instanceof ChessGame) {
+      SearchResult result = probe((ChessGame) game, start);
+      if (result != null) return result;
+    }
+    table.newSearch();
+
+    List<Search> searches = new ArrayList<Search>();
+    Search main = new Search(game, table, evaluator, tablebases, 0);
+    searches.add(main);
+    if (threads > 1 && game instanceof ChessGame) {
+      for (int helper = 1; helper < threads; helper++) {
+        searches.add(new Search(((ChessGame) game).copy(), table, evaluator, tablebases, helper));
+      }
+    }
+    if (listener != null) main.setListener(totalling(listener, searches));
+    current = searches;
+
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    try {
+      SearchLimits helperLimits = new SearchLimits(limits.getDepth());
+      helperLimits.setHardTime(limits.getHardTime());
+      for (Search helper : searches.subList(1, searches.size())) {
+        futures.add(getHelpers().submit(think(helper, helperLimits, start)));
+      }
+      main.think(limits, start);
+    } finally {
+      for (Search search : searches) {
+        search.stop();
+      }
+      awaitAll(futures);
+      current = null;
+    }
+
+    long nodes = 0;
+    long cutoffs = 0;
+    long firstMoveCutoffs = 0;
+    for (Search search : searches) {
+      nodes += search.getNodes();
+      cutoffs += search.getOrdering().getCutoffs();
+      firstMoveCutoffs += search.getOrdering().getFirstMoveCutoffs();
+    }
+    return new SearchResult(main.getBestMove(), main.getBestScore(), main.getCompletedDepth(),
+        nodes, System.nanoTime() - start, cutoffs, firstMoveCutoffs);
+  }
+
+  /**
+   * Returns the move the tables give for the current position, or
+   * <code>null</code> if they have no move for it.
+   */
+  private SearchResult probe(ChessGame game, long start) {
+    int move = tablebases.bestMove(game);
+    if (move == 0) return null;
+    game.doPackedMove(move);
+    int value = tablebases.probe(game);
+    game.undoPackedMove(move);
+    return new SearchResult(game.toMove(move), -tablebaseScore(value, 1), 0, 0,
+        System.nanoTime() - start, 0, 0);
+  }
+
+  /**
+   * Returns the score of a position with the provided <code>Tablebase</code>
+   * value, the given number of plies from the root. Wins and losses beyond
+   * <code>MAX_PLY</code> still score more than any evaluation.
+   * 
+   * @param value
+   * @param ply
+   * @return the score, for the player to move
+   */
+  static int tablebaseScore(int value, int ply) {
+    if (Tablebase.isWin(value)) return MATE - ply - Tablebase.toPlies(value);
+    if (Tablebase.isLoss(value)) return -MATE + ply + Tablebase.toPlies(value);
+    return 0;
+  }
+
+  /**
+   * Returns a listener that passes the main search's results on with the nodes
+   * of all the searches. The helpers' counts are read while they run, so may
+   * be a little behind.
+   */
+  private static SearchListener totalling(final SearchListener listener,
+      final List<Search> searches) {
+    return new SearchListener() {
+      @Override
+      public void depthCompleted(SearchResult result) {
+        long nodes = 0;
+        for (Search search : searches) {
+          nodes += search.getNodes();
+        }
+        listener.depthCompleted(new SearchResult(result.getBestMove(), result.getScore(), result
+            .getDepth(), nodes, result.getNanos(), result.getCutoffs(), result
+            .getFirstMoveCutoffs()));
+      }
+    };
+  }
+
+  private static Runnable think(final Search search, final SearchLimits limits,
+      final long start) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        search.think(limits, start);
+      }
+    };
+  }
+
+  /**
+   * Waits for the helper searches to finish, so that none is still using the
+   * table when the next search begins.
+   */
+  private static void awaitAll(List<Future<?>> futures) {
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("A helper search failed", e.getCause());
+        }
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  private synchronized ExecutorService getHelpers() {
+    if (helpers == null) {
+      helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Engine helper");
+          // Idle helpers must not keep the application running
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return helpers;
+  }
+
+  /**
+   * Stops the search in progress, if any, which then returns the best move
+   * found so far. May be called from any thread.
+   */
+  public void stop() {
+    List<Search> searches = current;
+    if (searches == null) return;
+    for (Search search : searches) {
+      search.stop();
+    }
+  }
+
+  /**
+   * Empties the transposition table, for example before analysing an
+   * unrelated game.
+   */
+  public void clearHash() {
+    table.clear();
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided score is a forced win or loss.
+   * 
+   * @param score
+   * @return <tt>true</tt> if the score is a forced win or loss
+   */
+  public static boolean isMateScore(int score) {
+    return Math.abs(score) >= MATE - MAX_PLY;
+  }
+
+}
@@ -0,0 +1,211 @@
+package tmcintyre.boardgame.engine;
+
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.Observer;
+import tmcintyre.boardgame.game.promotiongames.CheckersGame;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.player.Player;
+
+/**
+ * A <code>Player</code> whose moves are chosen by an {@link Engine}.
+ * 
+ * <p>
+ * An <code>EnginePlayer</code> is added to a game like any other
+ * <code>Player</code>, and then joins it with <code>joinGame</code>. From then
+ * on it observes the game, and whenever it becomes its turn it searches and
+ * plays its move. The search starts from the event queue rather than from
+ * within the notification, so that the move that handed over the turn has
+ * finished, and other observers have been told about it, first.
+ * 
+ * <p>
+ * Chess and checkers are searched on a copy of the game in a thread of the
+ * player's own, so the event queue is free while the engine thinks. Only the
+ * chosen move is made on the event queue, and it is dropped if the game has
+ * moved on in the meantime, for example through an undo. Games that cannot be
+ * copied are still searched on the event queue.
+ * 
+ * <p>
+ * In chess, a player given an {@link OpeningBook} plays straight from the
+ * book, without searching, for as long as the game stays in it.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class EnginePlayer extends Player implements Observer {
+
+  private static final long DEFAULT_SOFT_TIME_MILLIS = 1000;
+  private static final long DEFAULT_HARD_TIME_MILLIS = 3000;
+
+  private final Engine engine;
+  private final SearchLimits limits;
+  private final Random random = new Random();
+
+  private final ExecutorService searcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "Engine player");
+      // A player left thinking must not keep the application running
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private OpeningBook book;
+  private Game game;
+  private boolean movePending;
+
+  public EnginePlayer(Color color, String name) {
+    this(color, name, new Engine(), new SearchLimits(DEFAULT_SOFT_TIME_MILLIS,
+        DEFAULT_HARD_TIME_MILLIS));
+  }
+
+  public EnginePlayer(Color color, String name, Engine engine, SearchLimits limits) {
+    super(color, name);
+    this.engine = engine;
+    this.limits = limits;
+  }
+
+  /**
+   * Starts playing in the provided <code>Game</code>, to which this
+   * <code>Player</code> must already have been added. Call this before the
+   * game starts so that the first move is not missed.
+   * 
+   * @param game
+   */
+  public void joinGame(Game game) {
+    this.game = game;
+    game.addObserver(this);
+  }
+
+  /**
+   * Sets the book this player takes its chess openings from, or
+   * <code>null</code> to always search.
+   * 
+   * @param book
+   */
+  public void setOpeningBook(OpeningBook book) {
+    this.book = book;
+  }
+
+  @Override
+  public void notifyOnStart() {
+    playIfOurTurn();
+  }
+
+  @Override
+  public void notifyOnCurrentPlayerChanged() {
+    playIfOurTurn();
+  }
+
+  @Override
+  public void notifyOnMove(Move move) {
+    // Picks up turns of several moves, such as a chain of checkers captures
+    playIfOurTurn();
+  }
+
+  @Override
+  public void notifyOnPromotion(Move move) {
+
+  }
+
+  @Override
+  public void notifyOnStalemate() {
+
+  }
+
+  @Override
+  public void notifyOnUndo() {
+
+  }
+
+  @Override
+  public void notifyOnWin(Player winner) {
+
+  }
+
+  private void playIfOurTurn() {
+    if (movePending || game.getCurrentPlayer() != this) return;
+    movePending = true;
+    EventQueue.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (game.getCurrentPlayer() != EnginePlayer.this) {
+          movePending = false;
+          return;
+        }
+        final Game position = copyOf(game);
+        if (position == null) {
+          movePending = false;
+          Move move = chooseMove(game);
+          if (move != null) game.doMove(move, false);
+          return;
+        }
+        final Game searched = game;
+        final long key = game.getPositionKey();
+        searcher.execute(new Runnable() {
+          @Override
+          public void run() {
+            final Move move = chooseMove(position);
+            EventQueue.invokeLater(new Runnable() {
+              @Override
+              public void run() {
+                movePending = false;
+                if (game != searched || game.getCurrentPlayer() != EnginePlayer.this
+                    || game.getPositionKey() != key) {
+                  // The game moved on while we thought; start again if it is our turn
+                  playIfOurTurn();
+                  return;
+                }
+                Move ours = move == null ? null : findMove(game, move);
+                if (ours != null) game.doMove(ours, false);
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns a copy of the provided game that can be searched in another
+   * thread, or <code>null</code> if it cannot be copied.
+   */
+  private static Game copyOf(Game game) {
+    if (game instanceof ChessGame) return ((ChessGame) game).copy();
+    if (game instanceof CheckersGame) return ((CheckersGame) game).copy();
+    return null;
+  }
+
+  /**
+   * Returns the legal move in the provided game that matches a move chosen in
+   * a copy of it.
+   */
+  private static Move findMove(Game game, Move move) {
+    if (game instanceof ChessGame) {
+      ChessGame chess = (ChessGame) game;
+      return chess.toMove(chess.packMove(move));
+    }
+    return ((CheckersGame) game).findMove(move);
+  }
+
+  private Move chooseMove(Game position) {
+    Move move = bookMove(position);
+    return move == null ? engine.bestMove(position, limits) : move;
+  }
+
+  private Move bookMove(Game position) {
+    if (book == null || !(position instanceof ChessGame)) return null;
+    ChessGame chess = (ChessGame) position;
+    int move = book.chooseMove(chess, random);
+    return move == 0 ? null : chess.toMove(move);
+  }
+
+}
@@ -0,0 +1,25 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Game;
+
+/**
+ * Scores positions for the {@link Engine}.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface Evaluator {
+
+  /**
+   * Returns a static score for the current position of the provided
+   * <code>Game</code>, from the point of view of the player to move: positive
+   * if that player stands better. Scores are in hundredths of a pawn (or of a
+   * checker) and must lie strictly between <code>-Engine.MAX_EVALUATION</code>
+   * and <code>Engine.MAX_EVALUATION</code>.
+   * 
+   * @param game
+   * @return the score of the current position
+   */
+  public int evaluate(Game game);
+
+}
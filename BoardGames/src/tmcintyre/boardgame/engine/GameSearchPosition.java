@@ -0,0 +1,171 @@
+package tmcintyre.boardgame.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.PromotionGame;
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * The {@link SearchPosition} of any {@link Game}, played through dummy
+ * <code>Move</code>s. Each move is the index of a <code>Move</code> in the
+ * list kept for its ply.
+ * 
+ * <p>
+ * Moves are identified by their start and destination squares and promotion
+ * type, not by their index, since the order of a player's pieces, and so of
+ * the moves, changes as captures are undone and differs between copies of a
+ * game.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class GameSearchPosition extends SearchPosition {
+
+  private static final int PROMOTIONS = PieceType.values().length + 1;
+
+  private final Game game;
+  private final IncrementalEvaluator incremental;
+  private final int width;
+  private final int squares;
+  private final List<List<Move>> moves = new ArrayList<List<Move>>();
+  private int ply;
+
+  GameSearchPosition(Game game, IncrementalEvaluator incremental) {
+    this.game = game;
+    this.incremental = incremental;
+    this.width = game.getBoardWidth();
+    this.squares = width * game.getBoardHeight();
+  }
+
+  @Override
+  int generate(int ply) {
+    while (moves.size() <= ply) {
+      moves.add(new ArrayList<Move>());
+    }
+    // Copied, because the player's list is reused further down the tree
+    List<Move> list = moves.get(ply);
+    list.clear();
+    game.getCurrentPlayer().updateLegalMoves();
+    list.addAll(game.getCurrentPlayer().getAllLegalMoves());
+
+    int count = list.size();
+    int[] buffer = buffer(ply, count);
+    for (int i = 0; i < count; i++) {
+      buffer[i] = i;
+    }
+    return count;
+  }
+
+  private Move get(int move) {
+    return moves.get(ply).get(move);
+  }
+
+  @Override
+  void doMove(int move) {
+    Move first = get(move);
+    ply++;
+    game.doMove(first, true);
+    if (incremental == null) return;
+
+    for (Move step = first; step != null; step = step.getNextMove()) {
+      Piece captured = step.getCapturedPiece();
+      if (captured != null) incremental.remove(captured, captured.getRow(), captured.getCol());
+
+      // A promoted piece is new to the board, rather than moving on it
+      if (!step.destroyMovingPieceOnUndo()) {
+        incremental.remove(step.getMovingPiece(), step.startRow(), step.startCol());
+      }
+      incremental.add(step.getMovingPiece(), step.destRow(), step.destCol());
+    }
+  }
+
+  @Override
+  void undoMove(int move) {
+    ply--;
+    Move first = get(move);
+    if (incremental != null) {
+      // Before the pieces are moved back, so that captured pieces are found
+      // where they were taken
+      Move step = first;
+      while (step.getNextMove() != null) {
+        step = step.getNextMove();
+      }
+      while (true) {
+        incremental.remove(step.getMovingPiece(), step.destRow(), step.destCol());
+        if (!step.destroyMovingPieceOnUndo()) {
+          incremental.add(step.getMovingPiece(), step.startRow(), step.startCol());
+        }
+        Piece captured = step.getCapturedPiece();
+        if (captured != null) incremental.add(captured, captured.getRow(), captured.getCol());
+
+        if (step == first) break;
+        step = step.getPrevMove();
+      }
+    }
+    game.undoMove(true);
+  }
+
+  @Override
+  Move toMove(int move) {
+    return moves.get(0).get(move);
+  }
+
+  @Override
+  int id(int move) {
+    Move m = get(move);
+    PieceType promotion = m.getPromotionType();
+    int id = (from(move) * squares + to(move)) * PROMOTIONS;
+    if (promotion != null) id += promotion.ordinal() + 1;
+    // Unique on boards of up to 300 squares, and merely a poorer guess beyond
+    return id % TranspositionTable.MAX_MOVE + 1;
+  }
+
+  @Override
+  int from(int move) {
+    Move m = get(move);
+    return m.startRow() * width + m.startCol();
+  }
+
+  @Override
+  int to(int move) {
+    Move m = get(move);
+    return m.destRow() * width + m.destCol();
+  }
+
+  @Override
+  PieceType movingType(int move) {
+    return get(move).getMovingPiece().getType();
+  }
+
+  @Override
+  PieceType capturedType(int move) {
+    Piece captured = get(move).getCapturedPiece();
+    return captured == null ? null : captured.getType();
+  }
+
+  @Override
+  PieceType promotionType(int move) {
+    return get(move).getPromotionType();
+  }
+
+  @Override
+  boolean isPromotion(int move) {
+    return game instanceof PromotionGame && ((PromotionGame) game).checkPromotion(get(move));
+  }
+
+  @Override
+  boolean isInCheck() {
+    return false;
+  }
+
+  @Override
+  boolean isMidTurn() {
+    Move lastMove = game.getLastMove();
+    return lastMove != null && lastMove.getMovingPiece().getPlayer() == game.getCurrentPlayer();
+  }
+
+}
@@ -0,0 +1,62 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.pieces.Piece;
+
+/**
+ * An {@link Evaluator} that keeps its terms up to date as moves are made and
+ * taken back, rather than working them out afresh for every position scored.
+ * 
+ * <p>
+ * The search calls <code>reset</code> with the position at the root, then
+ * <code>remove</code> and <code>add</code> for every piece a move takes off or
+ * puts on a square, including the parts of the move that complete it, such as
+ * a capture, a promotion or the rook's part of castling. A piece moving from
+ * one square to another is removed from the first and added to the second.
+ * 
+ * <p>
+ * Since an incremental evaluator has state, each search thread uses its own,
+ * made with <code>copy</code>.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface IncrementalEvaluator extends Evaluator {
+
+  /**
+   * Sets the evaluator's terms for the current position of the provided
+   * <code>Game</code>, by looking at every piece.
+   * 
+   * @param game
+   */
+  public void reset(Game game);
+
+  /**
+   * Updates the evaluator's terms for a <code>Piece</code> put on the given
+   * square.
+   * 
+   * @param piece
+   * @param row
+   * @param col
+   */
+  public void add(Piece piece, int row, int col);
+
+  /**
+   * Updates the evaluator's terms for a <code>Piece</code> taken off the given
+   * square.
+   * 
+   * @param piece
+   * @param row
+   * @param col
+   */
+  public void remove(Piece piece, int row, int col);
+
+  /**
+   * Returns a new evaluator of the same kind, for use by another search. The
+   * new evaluator must be reset before it is used.
+   * 
+   * @return a new evaluator of the same kind
+   */
+  public IncrementalEvaluator copy();
+
+}
@@ -0,0 +1,59 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+import tmcintyre.boardgame.player.Player;
+
+/**
+ * An {@link Evaluator} that counts material: the value of the pieces of the
+ * player to move, less the value of everyone else's.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class MaterialEvaluator implements Evaluator {
+
+  @Override
+  public int evaluate(Game game) {
+    Player toMove = game.getCurrentPlayer();
+    int score = 0;
+    for (Player player : game.getPlayers()) {
+      int material = 0;
+      for (Piece piece : player.getPieces()) {
+        material += getValue(piece.getType());
+      }
+      score += player == toMove ? material : -material;
+    }
+    return score;
+  }
+
+  /**
+   * Returns the value of a piece of the given type, in hundredths of a pawn or
+   * of a checker.
+   * 
+   * @param type
+   * @return the value of the piece
+   */
+  public static int getValue(PieceType type) {
+    switch (type) {
+    case PAWN:
+    case BASE_CHECKER:
+      return 100;
+    case CROWNED_CHECKER:
+      return 150;
+    case KNIGHT:
+      return 320;
+    case BISHOP:
+      return 330;
+    case ROOK:
+      return 500;
+    case QUEEN:
+      return 900;
+    default:
+      // Kings are never captured, and race pieces have no material value
+      return 0;
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * Puts the legal moves of each position searched in the order most likely to
+ * cause an early cutoff, since alpha-beta prunes best when the best move is
+ * searched first.
+ * 
+ * <p>
+ * Moves are ordered:
+ * <ol>
+ * <li>the move from the transposition table, or at the root the best move of
+ * the previous depth;</li>
+ * <li>captures and promotions, most valuable victim first, and of those the
+ * least valuable attacker first (MVV-LVA). A promotion counts as capturing a
+ * piece of the type promoted to;</li>
+ * <li>the two <i>killer</i> moves of the ply: the quiet moves that last caused
+ * a cutoff at the same distance from the root;</li>
+ * <li>the other quiet moves, by their <i>history</i>: the squares they move
+ * from and to are credited each time a quiet move between them causes a
+ * cutoff, more so the deeper the search.</li>
+ * </ol>
+ * 
+ * <p>
+ * Every cutoff is counted, as are those caused by the first move searched. The
+ * proportion of the two shows how well the moves are ordered.
+ * 
+ * <p>
+ * Each {@link Search} has its own ordering, so none of this is shared between
+ * threads.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class MoveOrdering {
+
+  private static final int HASH_MOVE = 1 << 30;
+  private static final int TACTICAL = 1 << 24;
+  private static final int KILLER = 1 << 22;
+  private static final int MAX_HISTORY = 1 << 20;
+
+  private final SearchPosition position;
+  private final int squares;
+  private final int[][] killers = new int[Engine.MAX_PLY + 1][2];
+  private final int[] history;
+
+  private int[] scores = new int[64];
+  private long cutoffs;
+  private long firstMoveCutoffs;
+
+  /**
+   * Creates an ordering for the moves of the provided position, on a board of
+   * the given size.
+   * 
+   * @param position
+   * @param width
+   * @param height
+   */
+  MoveOrdering(SearchPosition position, int width, int height) {
+    this.position = position;
+    this.squares = width * height;
+    this.history = new int[squares * squares];
+  }
+
+  /**
+   * Sorts the provided moves into the order they should be searched in.
+   * 
+   * @param moves
+   *          the legal moves of the current position
+   * @param count
+   *          the number of moves
+   * @param ply
+   *          the distance of the position from the root
+   * @param hashMove
+   *          the id of the move to search first, or 0 if there is none
+   */
+  void order(int[] moves, int count, int ply, int hashMove) {
+    if (scores.length < count) scores = new int[Math.max(count, scores.length * 2)];
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      int score = score(move, ply, hashMove);
+
+      // Insertion sort, which is quick for lists this short
+      int j = i;
+      for (; j > 0 && scores[j - 1] < score; j--) {
+        scores[j] = scores[j - 1];
+        moves[j] = moves[j - 1];
+      }
+      scores[j] = score;
+      moves[j] = move;
+    }
+  }
+
+  private int score(int move, int ply, int hashMove) {
+    int id = position.id(move);
+    if (id == hashMove) return HASH_MOVE;
+    PieceType captured = position.capturedType(move);
+    PieceType promotion = position.promotionType(move);
+    if (captured != null || promotion != null) {
+      int victim = captured == null ? 0 : MaterialEvaluator.getValue(captured);
+      if (promotion != null) victim += MaterialEvaluator.getValue(promotion);
+      int attacker = MaterialEvaluator.getValue(position.movingType(move));
+      return TACTICAL + victim * 16 - attacker;
+    }
+    if (id == killers[ply][0]) return KILLER + 1;
+    if (id == killers[ply][1]) return KILLER;
+    return history[historyIndex(move)];
+  }
+
+  /**
+   * Records that the provided move caused a cutoff, crediting it as a killer
+   * and in the history if it is quiet.
+   * 
+   * @param move
+   * @param ply
+   *          the distance of the position from the root
+   * @param depth
+   *          the depth the position was searched to
+   * @param index
+   *          the place of the move in the order searched, from 0
+   */
+  void cutoff(int move, int ply, int depth, int index) {
+    cutoffs++;
+    if (index == 0) firstMoveCutoffs++;
+    if (isTactical(move)) return;
+
+    int id = position.id(move);
+    if (killers[ply][0] != id) {
+      killers[ply][1] = killers[ply][0];
+      killers[ply][0] = id;
+    }
+
+    int i = historyIndex(move);
+    history[i] += Math.max(depth, 1) * Math.max(depth, 1);
+    if (history[i] >= MAX_HISTORY) {
+      // Halving every entry keeps them in proportion, and below the killers
+      for (int j = 0; j < history.length; j++) {
+        history[j] /= 2;
+      }
+    }
+  }
+
+  private int historyIndex(int move) {
+    return position.from(move) * squares + position.to(move);
+  }
+
+  private boolean isTactical(int move) {
+    return position.capturedType(move) != null || position.promotionType(move) != null;
+  }
+
+  long getCutoffs() {
+    return cutoffs;
+  }
+
+  long getFirstMoveCutoffs() {
+    return firstMoveCutoffs;
+  }
+
+}
@@ -0,0 +1,174 @@
+package tmcintyre.boardgame.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.ChessMove;
+
+/**
+ * A chess opening book: the moves played from each known position, with a
+ * weight for how good each has proved, looked up by
+ * <code>Game.getPositionKey</code>.
+ * 
+ * <p>
+ * The book is a file of fixed-size entries sorted by position key, which is
+ * mapped into memory rather than read. So opening a book takes no time however
+ * large it is, the entries take no space on the Java heap, and engines in
+ * several processes on the same machine share one copy of the pages. A lookup
+ * is a binary search of the mapped entries, which allocates nothing.
+ * 
+ * <p>
+ * The file starts with a 16-byte header, a magic number and the number of
+ * entries. Each entry is 16 bytes: the position key (a <tt>long</tt>), a
+ * packed {@link ChessMove} and its weight (<tt>int</tt>s), all big-endian.
+ * Entries for the same position are sorted by weight, highest first. Books are
+ * made with an {@link OpeningBookBuilder}.
+ * 
+ * <p>
+ * Lookups read the mapping with absolute gets only, so one book can be shared
+ * by any number of threads. The mapping is released when the book is garbage
+ * collected; a book file cannot be larger than 2GB.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class OpeningBook {
+
+  /** Identifies a file as an opening book, and the version of its format. */
+  static final long MAGIC = 0x42474f424f4f4b01L;
+
+  static final int HEADER_BYTES = 16;
+  static final int ENTRY_BYTES = 16;
+
+  private final ByteBuffer entries;
+  private final int size;
+
+  /**
+   * Opens the provided book file.
+   * 
+   * @param file
+   * @throws IOException
+   *           if the file cannot be read, or is not an opening book
+   */
+  public OpeningBook(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = in.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) throw new IOException("Opening book too large: " + file);
+      entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    } finally {
+      // The mapping stays valid once the file is closed
+      in.close();
+    }
+    if (entries.capacity() < HEADER_BYTES || entries.getLong(0) != MAGIC) {
+      throw new IOException("Not an opening book: " + file);
+    }
+    long count = entries.getLong(8);
+    if (count < 0 || HEADER_BYTES + count * ENTRY_BYTES != entries.capacity()) {
+      throw new IOException("Truncated opening book: " + file);
+    }
+    size = (int) count;
+  }
+
+  /**
+   * Returns the number of entries in the book.
+   * 
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Writes the book moves for the position with the provided key into the
+   * provided arrays, highest weight first.
+   * 
+   * @param key
+   *          the position key
+   * @param moves
+   *          receives the packed moves; an array of
+   *          <code>ChessMove.MAX_MOVES</code> elements holds them all
+   * @param weights
+   *          receives the weight of each move
+   * @return the number of moves written, at most the length of the arrays
+   */
+  public int getMoves(long key, int[] moves, int[] weights) {
+    int count = 0;
+    for (int i = first(key); i < size && key(i) == key && count < moves.length; i++) {
+      int offset = HEADER_BYTES + i * ENTRY_BYTES;
+      moves[count] = entries.getInt(offset + 8);
+      weights[count] = entries.getInt(offset + 12);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Chooses a book move for the player to move in the provided game, at
+   * random in proportion to the moves' weights. Moves that are not legal in
+   * the game, as after a clash of position keys, are never chosen.
+   * 
+   * @param game
+   * @param random
+   * @return the packed move chosen, or 0 if the book has no move for the
+   *         position
+   */
+  public int chooseMove(ChessGame game, Random random) {
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    int[] weights = new int[ChessMove.MAX_MOVES];
+    int count = getMoves(game.getPositionKey(), moves, weights);
+    if (count == 0) return 0;
+
+    int[] legalMoves = new int[ChessMove.MAX_MOVES];
+    int legalCount = game.generateMoves(legalMoves);
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      if (!contains(legalMoves, legalCount, moves[i])) weights[i] = 0;
+      total += weights[i];
+    }
+    if (total == 0) return 0;
+
+    long choice = (long) (random.nextDouble() * total);
+    for (int i = 0; i < count; i++) {
+      choice -= weights[i];
+      if (choice < 0) return moves[i];
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the index of the first entry whose key is not less than the given
+   * key, or <code>size</code> if there is none.
+   */
+  private int first(long key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (key(middle) < key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private long key(int index) {
+    return entries.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+  }
+
+  private static boolean contains(int[] moves, int count, int move) {
+    for (int i = 0; i < count; i++) {
+      if (moves[i] == move) return true;
+    }
+    return false;
+  }
+
+}
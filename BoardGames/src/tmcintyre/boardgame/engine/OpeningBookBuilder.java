@@ -0,0 +1,233 @@
+package tmcintyre.boardgame.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.Fen;
+import tmcintyre.boardgame.game.promotiongames.SanMoveFormatter;
+import tmcintyre.boardgame.pgn.PgnGame;
+import tmcintyre.boardgame.pgn.PgnReader;
+
+/**
+ * Builds an {@link OpeningBook} from games in PGN.
+ * 
+ * <p>
+ * The first moves of each game are played out, and every move is counted
+ * against the position it was played from. A move scores 2 for each game the
+ * side playing it went on to win and 1 for each draw, or game with no result;
+ * its weight in the book is its score. Moves that never scored, and moves
+ * played in fewer than a minimum number of games, are left out.
+ * 
+ * <pre>
+ * OpeningBookBuilder builder = new OpeningBookBuilder(20, 2);
+ * builder.addGames(new PgnReader(pgnFile));
+ * builder.write(bookFile);
+ * </pre>
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class OpeningBookBuilder {
+
+  public static final int DEFAULT_MAX_PLY = 20;
+
+  private static final SanMoveFormatter SAN = new SanMoveFormatter();
+
+  private final int maxPly;
+  private final int minGames;
+
+  // Games and score of each move, by position key then packed move
+  private final Map<Long, Map<Integer, int[]>> positions =
+      new HashMap<Long, Map<Integer, int[]>>();
+  private long games;
+  private long skippedMoves;
+
+  /**
+   * Creates a builder that takes up to <code>DEFAULT_MAX_PLY</code> moves of
+   * each game, and keeps every move that scored.
+   */
+  public OpeningBookBuilder() {
+    this(DEFAULT_MAX_PLY, 1);
+  }
+
+  /**
+   * Creates a builder.
+   * 
+   * @param maxPly
+   *          the number of moves, by either side, to take from each game
+   * @param minGames
+   *          the fewest games a move must have been played in to be kept
+   */
+  public OpeningBookBuilder(int maxPly, int minGames) {
+    this.maxPly = maxPly;
+    this.minGames = minGames;
+  }
+
+  /**
+   * Adds the opening of the provided game. A game that reaches a move that is
+   * not legal contributes the moves before it.
+   * 
+   * @param game
+   */
+  public void addGame(PgnGame game) {
+    int score;
+    if (game.getResult().equals("1-0")) {
+      score = 2;
+    } else if (game.getResult().equals("0-1")) {
+      score = 0;
+    } else {
+      score = 1;
+    }
+
+    ChessGame chess;
+    try {
+      String fen = game.getTag("FEN");
+      chess = ChessGame.fromFen(fen != null ? fen : Fen.START_POSITION);
+    } catch (IllegalArgumentException e) {
+      skippedMoves += Math.min(maxPly, game.getMoves().size());
+      return;
+    }
+    games++;
+
+    // The score of the side that moves first, which may be black
+    if (chess.getCurrentPlayer() != chess.getPlayers().get(0)) score = 2 - score;
+    List<String> moves = game.getMoves();
+    int ply;
+    for (ply = 0; ply < Math.min(maxPly, moves.size()); ply++) {
+      int move;
+      try {
+        move = SAN.parse(chess, moves.get(ply));
+      } catch (IllegalArgumentException e) {
+        break;
+      }
+      count(chess.getPositionKey(), move, ply % 2 == 0 ? score : 2 - score);
+      chess.doPackedMove(move);
+    }
+    skippedMoves += Math.min(maxPly, moves.size()) - ply;
+  }
+
+  /**
+   * Adds the opening of every game the provided reader has left to read,
+   * then closes it. Games whose tags cannot be read are skipped.
+   * 
+   * @param reader
+   * @throws IOException
+   *           if the input cannot be read
+   */
+  public void addGames(PgnReader reader) throws IOException {
+    try {
+      for (;;) {
+        PgnGame game;
+        try {
+          game = reader.read();
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+        if (game == null) break;
+        addGame(game);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void count(long key, int move, int score) {
+    Map<Integer, int[]> moves = positions.get(key);
+    if (moves == null) {
+      moves = new HashMap<Integer, int[]>(4);
+      positions.put(key, moves);
+    }
+    int[] counts = moves.get(move);
+    if (counts == null) {
+      counts = new int[2];
+      moves.put(move, counts);
+    }
+    counts[0]++;
+    counts[1] += score;
+  }
+
+  /**
+   * Returns the number of games added.
+   * 
+   * @return the number of games added
+   */
+  public long getGames() {
+    return games;
+  }
+
+  /**
+   * Returns the number of moves that were not added because they, or a move
+   * before them in the same game, were not legal.
+   * 
+   * @return the number of moves skipped
+   */
+  public long getSkippedMoves() {
+    return skippedMoves;
+  }
+
+  /**
+   * Writes the book of the games added so far to the provided file.
+   * 
+   * @param file
+   * @return the number of entries written
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  public int write(File file) throws IOException {
+    List<Long> keys = new ArrayList<Long>(positions.keySet());
+    // Signed order, which is the order OpeningBook searches in
+    Collections.sort(keys);
+
+    List<long[]> entries = new ArrayList<long[]>();
+    for (Long key : keys) {
+      int start = entries.size();
+      for (Map.Entry<Integer, int[]> move : positions.get(key).entrySet()) {
+        int[] counts = move.getValue();
+        if (counts[0] >= minGames && counts[1] > 0) {
+          entries.add(new long[] { key, move.getKey(), counts[1] });
+        }
+      }
+      sortByWeight(entries, start);
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        file)));
+    try {
+      out.writeLong(OpeningBook.MAGIC);
+      out.writeLong(entries.size());
+      for (long[] entry : entries) {
+        out.writeLong(entry[0]);
+        out.writeInt((int) entry[1]);
+        out.writeInt((int) Math.min(entry[2], Integer.MAX_VALUE));
+      }
+    } finally {
+      out.close();
+    }
+    return entries.size();
+  }
+
+  /**
+   * Sorts the entries from <code>start</code> to the end, which are few, by
+   * weight, highest first.
+   */
+  private static void sortByWeight(List<long[]> entries, int start) {
+    for (int i = start + 1; i < entries.size(); i++) {
+      long[] entry = entries.get(i);
+      int j = i;
+      for (; j > start && entries.get(j - 1)[2] < entry[2]; j--) {
+        entries.set(j, entries.get(j - 1));
+      }
+      entries.set(j, entry);
+    }
+  }
+
+}
@@ -0,0 +1,228 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+import tmcintyre.boardgame.player.Player;
+
+/**
+ * An {@link IncrementalEvaluator} that scores material and where each piece
+ * stands, tapered between the middlegame and the endgame.
+ * 
+ * <p>
+ * Each <code>PieceType</code> has a middlegame and an endgame piece-square
+ * table, giving a bonus or penalty for a piece of that type on each square.
+ * The tables are drawn for an 8x8 board as seen by the first player, who
+ * starts at the bottom, and are scaled to other boards and turned around for
+ * the second player. Types without a table, such as race pieces, score 0.
+ * 
+ * <p>
+ * The game phase is the weight of the knights, bishops, rooks and queens left:
+ * 1 for each minor piece, 2 for a rook and 4 for a queen, at most 24 in all.
+ * The score is the middlegame score when the phase is 24 and the endgame score
+ * when it is 0, and in proportion between. With no such pieces, checkers is
+ * always scored as an endgame.
+ * 
+ * <p>
+ * The material, the two piece-square sums and the phase are all kept up to
+ * date move by move, so scoring a position takes constant time.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class PieceSquareEvaluator implements IncrementalEvaluator {
+
+  private static final int MAX_PHASE = 24;
+  private static final int[] PHASE = new int[PieceType.values().length];
+  private static final int[][] MIDDLEGAME = new int[PieceType.values().length][];
+  private static final int[][] ENDGAME = new int[PieceType.values().length][];
+
+  static {
+    PHASE[PieceType.KNIGHT.ordinal()] = 1;
+    PHASE[PieceType.BISHOP.ordinal()] = 1;
+    PHASE[PieceType.ROOK.ordinal()] = 2;
+    PHASE[PieceType.QUEEN.ordinal()] = 4;
+
+    tables(PieceType.PAWN, new int[] {
+         0,   0,   0,   0,   0,   0,   0,   0,
+        50,  50,  50,  50,  50,  50,  50,  50,
+        10,  10,  20,  30,  30,  20,  10,  10,
+         5,   5,  10,  25,  25,  10,   5,   5,
+         0,   0,   0,  20,  20,   0,   0,   0,
+         5,  -5, -10,   0,   0, -10,  -5,   5,
+         5,  10,  10, -20, -20,  10,  10,   5,
+         0,   0,   0,   0,   0,   0,   0,   0 }, new int[] {
+         0,   0,   0,   0,   0,   0,   0,   0,
+        80,  80,  80,  80,  80,  80,  80,  80,
+        50,  50,  50,  50,  50,  50,  50,  50,
+        30,  30,  30,  30,  30,  30,  30,  30,
+        20,  20,  20,  20,  20,  20,  20,  20,
+        10,  10,  10,  10,  10,  10,  10,  10,
+         0,   0,   0,   0,   0,   0,   0,   0,
+         0,   0,   0,   0,   0,   0,   0,   0 });
+    tables(PieceType.KNIGHT, new int[] {
+       -50, -40, -30, -30, -30, -30, -40, -50,
+       -40, -20,   0,   0,   0,   0, -20, -40,
+       -30,   0,  10,  15,  15,  10,   0, -30,
+       -30,   5,  15,  20,  20,  15,   5, -30,
+       -30,   0,  15,  20,  20,  15,   0, -30,
+       -30,   5,  10,  15,  15,  10,   5, -30,
+       -40, -20,   0,   5,   5,   0, -20, -40,
+       -50, -40, -30, -30, -30, -30, -40, -50 }, null);
+    tables(PieceType.BISHOP, new int[] {
+       -20, -10, -10, -10, -10, -10, -10, -20,
+       -10,   0,   0,   0,   0,   0,   0, -10,
+       -10,   0,   5,  10,  10,   5,   0, -10,
+       -10,   5,   5,  10,  10,   5,   5, -10,
+       -10,   0,  10,  10,  10,  10,   0, -10,
+       -10,  10,  10,  10,  10,  10,  10, -10,
+       -10,   5,   0,   0,   0,   0,   5, -10,
+       -20, -10, -10, -10, -10, -10, -10, -20 }, null);
+    tables(PieceType.ROOK, new int[] {
+         0,   0,   0,   0,   0,   0,   0,   0,
+         5,  10,  10,  10,  10,  10,  10,   5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+         0,   0,   0,   5,   5,   0,   0,   0 }, null);
+    tables(PieceType.QUEEN, new int[] {
+       -20, -10, -10,  -5,  -5, -10, -10, -20,
+       -10,   0,   0,   0,   0,   0,   0, -10,
+       -10,   0,   5,   5,   5,   5,   0, -10,
+        -5,   0,   5,   5,   5,   5,   0,  -5,
+         0,   0,   5,   5,   5,   5,   0,  -5,
+       -10,   5,   5,   5,   5,   5,   0, -10,
+       -10,   0,   5,   0,   0,   0,   0, -10,
+       -20, -10, -10,  -5,  -5, -10, -10, -20 }, null);
+    // The king hides in the middlegame, and comes out to fight in the endgame
+    tables(PieceType.KING, new int[] {
+       -30, -40, -40, -50, -50, -40, -40, -30,
+       -30, -40, -40, -50, -50, -40, -40, -30,
+       -30, -40, -40, -50, -50, -40, -40, -30,
+       -30, -40, -40, -50, -50, -40, -40, -30,
+       -20, -30, -30, -40, -40, -30, -30, -20,
+       -10, -20, -20, -20, -20, -20, -20, -10,
+        20,  20,   0,   0,   0,   0,  20,  20,
+        20,  30,  10,   0,   0,  10,  30,  20 }, new int[] {
+       -50, -40, -30, -20, -20, -30, -40, -50,
+       -30, -20, -10,   0,   0, -10, -20, -30,
+       -30, -10,  20,  30,  30,  20, -10, -30,
+       -30, -10,  30,  40,  40,  30, -10, -30,
+       -30, -10,  30,  40,  40,  30, -10, -30,
+       -30, -10,  20,  30,  30,  20, -10, -30,
+       -30, -30,   0,   0,   0,   0, -30, -30,
+       -50, -30, -30, -30, -30, -30, -30, -50 });
+    // Checkers advance towards the crown, but the back row guards against the
+    // opponent's
+    tables(PieceType.BASE_CHECKER, new int[] {
+         0,   0,   0,   0,   0,   0,   0,   0,
+        30,  30,  30,  30,  30,  30,  30,  30,
+        20,  20,  20,  20,  20,  20,  20,  20,
+        12,  12,  12,  12,  12,  12,  12,  12,
+         6,   6,   6,   6,   6,   6,   6,   6,
+         2,   2,   2,   2,   2,   2,   2,   2,
+         0,   0,   0,   0,   0,   0,   0,   0,
+        10,  10,  10,  10,  10,  10,  10,  10 }, null);
+    tables(PieceType.CROWNED_CHECKER, new int[] {
+       -10,  -5,  -5,  -5,  -5,  -5,  -5, -10,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   5,   5,   5,   5,   0,  -5,
+        -5,   0,   5,  10,  10,   5,   0,  -5,
+        -5,   0,   5,  10,  10,   5,   0,  -5,
+        -5,   0,   5,   5,   5,   5,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+       -10,  -5,  -5,  -5,  -5,  -5,  -5, -10 }, null);
+  }
+
+  private Game game;
+  private Player first;
+  private int width;
+  private int[][][] middlegame;
+  private int[][][] endgame;
+
+  // From the first player's point of view
+  private int middlegameScore;
+  private int endgameScore;
+  private int phase;
+
+  private static void tables(PieceType type, int[] middlegame, int[] endgame) {
+    MIDDLEGAME[type.ordinal()] = middlegame;
+    ENDGAME[type.ordinal()] = endgame != null ? endgame : middlegame;
+  }
+
+  @Override
+  public void reset(Game game) {
+    this.game = game;
+    first = game.getPlayers().get(0);
+    width = game.getBoardWidth();
+    middlegame = scaledTables(MIDDLEGAME, game.getBoardHeight(), width);
+    endgame = scaledTables(ENDGAME, game.getBoardHeight(), width);
+
+    middlegameScore = 0;
+    endgameScore = 0;
+    phase = 0;
+    for (Player player : game.getPlayers()) {
+      for (Piece piece : player.getPieces()) {
+        add(piece, piece.getRow(), piece.getCol());
+      }
+    }
+  }
+
+  /**
+   * Returns the tables for each player and <code>PieceType</code>, indexed by
+   * square, for a board of the given size.
+   */
+  private static int[][][] scaledTables(int[][] tables, int height, int width) {
+    int[][][] scaled = new int[2][tables.length][height * width];
+    for (int type = 0; type < tables.length; type++) {
+      if (tables[type] == null) continue;
+      for (int row = 0; row < height; row++) {
+        for (int col = 0; col < width; col++) {
+          int table = row * 8 / height * 8 + col * 8 / width;
+          int turned = (height - 1 - row) * 8 / height * 8 + col * 8 / width;
+          scaled[0][type][row * width + col] = tables[type][table];
+          scaled[1][type][row * width + col] = tables[type][turned];
+        }
+      }
+    }
+    return scaled;
+  }
+
+  @Override
+  public int evaluate(Game game) {
+    if (game != this.game) reset(game);
+    int weight = Math.min(phase, MAX_PHASE);
+    int score = (middlegameScore * weight + endgameScore * (MAX_PHASE - weight)) / MAX_PHASE;
+    return game.getCurrentPlayer() == first ? score : -score;
+  }
+
+  @Override
+  public IncrementalEvaluator copy() {
+    return new PieceSquareEvaluator();
+  }
+
+  @Override
+  public void add(Piece piece, int row, int col) {
+    update(piece, row, col, 1);
+  }
+
+  @Override
+  public void remove(Piece piece, int row, int col) {
+    update(piece, row, col, -1);
+  }
+
+  private void update(Piece piece, int row, int col, int count) {
+    int player = piece.getPlayer() == first ? 0 : 1;
+    int type = piece.getType().ordinal();
+    int square = row * width + col;
+    int material = MaterialEvaluator.getValue(piece.getType());
+    int sign = player == 0 ? count : -count;
+
+    middlegameScore += sign * (material + middlegame[player][type][square]);
+    endgameScore += sign * (material + endgame[player][type][square]);
+    phase += count * PHASE[type];
+  }
+
+}
@@ -0,0 +1,420 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.pieces.PieceType;
+import tmcintyre.boardgame.player.Player;
+import tmcintyre.boardgame.tablebase.Tablebase;
+import tmcintyre.boardgame.tablebase.TablebaseProber;
+import tmcintyre.boardgame.tablebase.Tablebases;
+
+/**
+ * One negamax alpha-beta search over a {@link Game}, driving the game through
+ * a {@link SearchPosition} and probing a shared {@link TranspositionTable}.
+ * 
+ * <p>
+ * Moves are handled as <tt>int</tt>s, generated into an array for each ply,
+ * and identified in the table by <code>SearchPosition.id</code>. A
+ * <code>Move</code> is only made for the best move at the end. The moves of
+ * each position are searched in the order given by a {@link MoveOrdering}.
+ * 
+ * <p>
+ * Several searches may share one table, each over its own copy of the game,
+ * for a parallel search. The helper searches, numbered from 1, start deepening
+ * at different depths so that they do not all search the same tree in step.
+ * 
+ * <p>
+ * The search deepens one ply at a time, searching the best move of each depth
+ * first at the next, until it reaches the limits it was given. If it is
+ * stopped part way through a depth, the best move is the best of those root
+ * moves whose search finished, which always includes the previous best.
+ * 
+ * <p>
+ * At the full depth the search continues with a quiescence search of captures
+ * and promotions only, so that positions are not scored part way through an
+ * exchange. The player to move may instead "stand pat" on the static score, as
+ * they need not capture, unless every move they have is a capture or promotion
+ * (a checker must capture when able), they are in check, or they are part way
+ * through a turn. Captures that could not raise the score to alpha even with a
+ * margin of <code>DELTA_MARGIN</code> are not searched (delta pruning).
+ * 
+ * <p>
+ * In chess, positions with few enough pieces are looked up in the
+ * {@link Tablebases}, if any, and scored from them without searching further.
+ * 
+ * <p>
+ * A player may move more than once in a turn, as when a checker makes a chain
+ * of captures. The score is then not negated, and the depth is not reduced
+ * until the turn passes. Such part-way positions are not stored in the table,
+ * as their legal moves differ from those of the same position at the start of
+ * a turn.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class Search {
+
+  private static final int DELTA_MARGIN = 200;
+
+  private final Game game;
+  private final TranspositionTable table;
+  private final Evaluator evaluator;
+  private final IncrementalEvaluator incremental;
+  private final SearchPosition position;
+  private final ChessGame chess;
+  private final TablebaseProber prober;
+  private final int helper;
+  private final MoveOrdering ordering;
+
+  private final long[] pathKeys = new long[Engine.MAX_PLY + 1];
+  private SearchListener listener;
+  private long nodes;
+  private long nodeLimit;
+  private long deadline;
+  private volatile boolean stopped;
+
+  private Move bestMove;
+  private int rootBestId;
+  private int bestScore;
+  private int completedDepth;
+
+  /**
+   * Creates a search.
+   * 
+   * @param game
+   * @param table
+   * @param evaluator
+   *          scores the positions searched. An <code>IncrementalEvaluator</code>
+   *          is copied, so that the search has its own
+   * @param tablebases
+   *          the endgame tables of a chess search, or <code>null</code>
+   * @param helper
+   *          0 for the main search, or the number of a helper
+   */
+  Search(Game game, TranspositionTable table, Evaluator evaluator, Tablebases tablebases,
+      int helper) {
+    this.game = game;
+    this.table = table;
+    if (evaluator instanceof IncrementalEvaluator) {
+      this.incremental = ((IncrementalEvaluator) evaluator).copy();
+      this.evaluator = incremental;
+    } else {
+      this.incremental = null;
+      this.evaluator = evaluator;
+    }
+    this.position = SearchPosition.of(game, incremental);
+    this.chess = game instanceof ChessGame ? (ChessGame) game : null;
+    this.prober = chess != null && tablebases != null ? new TablebaseProber(tablebases) : null;
+    this.helper = helper;
+    this.ordering = new MoveOrdering(position, game.getBoardWidth(), game.getBoardHeight());
+  }
+
+  /**
+   * Searches the current position, deepening until one of the limits is
+   * reached. The best move and its score are then available from
+   * <code>getBestMove</code> and <code>getBestScore</code>.
+   * 
+   * @param limits
+   * @param start
+   *          the <code>System.nanoTime</code> at which the search started
+   */
+  void think(SearchLimits limits, long start) {
+    long softTime = toNanos(limits.getSoftTime());
+    deadline = start + Math.min(toNanos(limits.getHardTime()), Long.MAX_VALUE - start);
+    nodeLimit = limits.getNodes();
+    if (incremental != null) incremental.reset(game);
+    bestMove = null;
+    rootBestId = 0;
+    completedDepth = 0;
+
+    int maxDepth = Math.min(limits.getDepth(), Engine.MAX_PLY);
+    for (int depth = 1 + helper % 2; depth <= maxDepth; depth++) {
+      negamax(depth, -Engine.INFINITY, Engine.INFINITY, 0);
+      if (stopped || rootBestId == 0) break;
+      completedDepth = depth;
+      if (listener != null) {
+        listener.depthCompleted(new SearchResult(rootMove(), bestScore, depth, nodes, System
+            .nanoTime() - start, ordering.getCutoffs(), ordering.getFirstMoveCutoffs()));
+      }
+
+      // A mate found within the depth searched cannot be bettered
+      if (Engine.isMateScore(bestScore) && Engine.MATE - Math.abs(bestScore) <= depth) break;
+      // Each depth usually takes longer than all those before it together
+      if (System.nanoTime() - start >= softTime / 2) break;
+    }
+
+    bestMove = rootMove();
+    // The search leaves the pieces' legal moves set for other positions
+    game.getCurrentPlayer().updateLegalMoves();
+  }
+
+  /**
+   * Returns the <code>Move</code> for the best root move so far, or the first
+   * root move if none has been searched.
+   */
+  private Move rootMove() {
+    // Found by its id, which unlike the move itself is the same whenever the
+    // root moves are generated
+    int count = position.generate(0);
+    int[] moves = position.moves(0);
+    for (int i = 0; i < count; i++) {
+      if (position.id(moves[i]) == rootBestId) return position.toMove(moves[i]);
+    }
+    return count > 0 ? position.toMove(moves[0]) : null;
+  }
+
+  /**
+   * Sets the listener told as each depth is completed, or <code>null</code>
+   * for none.
+   * 
+   * @param listener
+   */
+  void setListener(SearchListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Stops the search as soon as possible. May be called from any thread.
+   */
+  void stop() {
+    stopped = true;
+  }
+
+  private int negamax(int depth, int alpha, int beta, int ply) {
+    if (countNode()) return 0;
+
+    Player player = game.getCurrentPlayer();
+    long key = game.getPositionKey();
+    boolean midTurn = position.isMidTurn();
+
+    pathKeys[ply] = key;
+    if (ply > 0 && isRepetition(key, ply)) return 0;
+    if (ply >= Engine.MAX_PLY) return evaluator.evaluate(game);
+    if (ply > 0 && prober != null) {
+      int value = prober.probe(chess);
+      if (value != Tablebase.UNKNOWN) return Engine.tablebaseScore(value, ply);
+    }
+    if (depth <= 0) return quiesce(alpha, beta, ply);
+
+    int tableMove = 0;
+    if (!midTurn) {
+      long entry = table.probe(key);
+      if (entry != 0) {
+        tableMove = TranspositionTable.move(entry);
+        if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+          int score = fromTable(TranspositionTable.score(entry), ply);
+          int bound = TranspositionTable.bound(entry);
+          if (bound == TranspositionTable.EXACT
+              || (bound == TranspositionTable.LOWER && score >= beta)
+              || (bound == TranspositionTable.UPPER && score <= alpha)) {
+            return score;
+          }
+        }
+      }
+    }
+
+    int count = position.generate(ply);
+    int[] moves = position.moves(ply);
+    if (count == 0) {
+      if (ply == 0) bestScore = scoreWithoutMoves(ply);
+      return scoreWithoutMoves(ply);
+    }
+
+    int originalAlpha = alpha;
+    int best = -Engine.INFINITY;
+    int bestMoveHere = 0;
+    ordering.order(moves, count, ply, ply == 0 && rootBestId != 0 ? rootBestId : tableMove);
+
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      position.doMove(move);
+      int score;
+      if (game.getCurrentPlayer() == player) {
+        score = negamax(depth, alpha, beta, ply + 1);
+      } else {
+        score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+      }
+      position.undoMove(move);
+      if (stopped) return 0;
+
+      if (score > best) {
+        best = score;
+        bestMoveHere = move;
+        if (ply == 0) {
+          rootBestId = position.id(move);
+          bestScore = score;
+        }
+        if (score > alpha) {
+          alpha = score;
+          if (alpha >= beta) {
+            ordering.cutoff(move, ply, depth, i);
+            break;
+          }
+        }
+      }
+    }
+
+    if (!midTurn) {
+      int bound = best >= beta ? TranspositionTable.LOWER
+          : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+      table.store(key, position.id(bestMoveHere), toTable(best, ply), depth, bound);
+    }
+    return best;
+  }
+
+  /**
+   * Searches only the captures and promotions of the current position, until
+   * none is left that could change the score.
+   */
+  private int quiesce(int alpha, int beta, int ply) {
+    if (countNode()) return 0;
+
+    Player player = game.getCurrentPlayer();
+    pathKeys[ply] = game.getPositionKey();
+    if (ply >= Engine.MAX_PLY) return evaluator.evaluate(game);
+
+    int count = position.generate(ply);
+    int[] moves = position.moves(ply);
+    if (count == 0) return scoreWithoutMoves(ply);
+
+    boolean forced = position.isMidTurn() || position.isInCheck() || allTactical(moves, count);
+    int best = -Engine.INFINITY;
+    int standPat = 0;
+    if (!forced) {
+      standPat = evaluator.evaluate(game);
+      if (standPat >= beta) return standPat;
+      if (standPat > alpha) alpha = standPat;
+      best = standPat;
+    }
+
+    ordering.order(moves, count, ply, 0);
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (!forced) {
+        if (!isTactical(move)) continue;
+        // Underpromotions are left to the full-width search
+        PieceType promotion = position.promotionType(move);
+        if (promotion != null && promotion != PieceType.QUEEN) continue;
+        if (standPat + gain(move) + DELTA_MARGIN <= alpha) continue;
+      }
+
+      position.doMove(move);
+      int score;
+      if (game.getCurrentPlayer() == player) {
+        score = quiesce(alpha, beta, ply + 1);
+      } else {
+        score = -quiesce(-beta, -alpha, ply + 1);
+      }
+      position.undoMove(move);
+      if (stopped) return 0;
+
+      if (score > best) {
+        best = score;
+        if (score > alpha) {
+          alpha = score;
+          if (alpha >= beta) break;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided move captures a piece or promotes the
+   * moving piece.
+   */
+  private boolean isTactical(int move) {
+    return position.capturedType(move) != null || position.isPromotion(move);
+  }
+
+  private boolean allTactical(int[] moves, int count) {
+    for (int i = 0; i < count; i++) {
+      if (!isTactical(moves[i])) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the most material the provided move can win.
+   */
+  private int gain(int move) {
+    int gain = 0;
+    PieceType captured = position.capturedType(move);
+    if (captured != null) gain += MaterialEvaluator.getValue(captured);
+    if (position.isPromotion(move)) {
+      PieceType type = position.promotionType(move);
+      if (type == null) type = PieceType.CROWNED_CHECKER;
+      gain += MaterialEvaluator.getValue(type)
+          - MaterialEvaluator.getValue(position.movingType(move));
+    }
+    return gain;
+  }
+
+  /**
+   * Counts a node, and returns <tt>true</tt> if the search should stop.
+   */
+  private boolean countNode() {
+    if (++nodes >= nodeLimit || ((nodes & 1023) == 0 && System.nanoTime() >= deadline)) {
+      stopped = true;
+    }
+    return stopped;
+  }
+
+  /**
+   * Returns the score for a player with no legal moves: a draw for stalemate
+   * in chess, and otherwise a loss, sooner losses scoring lower.
+   */
+  private int scoreWithoutMoves(int ply) {
+    if (game instanceof ChessGame && !position.isInCheck()) return 0;
+    return -Engine.MATE + ply;
+  }
+
+  private boolean isRepetition(long key, int ply) {
+    for (int i = ply - 1; i >= 0; i--) {
+      if (pathKeys[i] == key) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Mate scores count plies from the root, so are stored in the table as
+   * plies from the current position.
+   */
+  private static int toTable(int score, int ply) {
+    if (score >= Engine.MATE - Engine.MAX_PLY) return score + ply;
+    if (score <= -Engine.MATE + Engine.MAX_PLY) return score - ply;
+    return score;
+  }
+
+  private static int fromTable(int score, int ply) {
+    if (score >= Engine.MATE - Engine.MAX_PLY) return score - ply;
+    if (score <= -Engine.MATE + Engine.MAX_PLY) return score + ply;
+    return score;
+  }
+
+  private static long toNanos(long millis) {
+    return millis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : millis * 1000000;
+  }
+
+  Move getBestMove() {
+    return bestMove;
+  }
+
+  int getBestScore() {
+    return bestScore;
+  }
+
+  int getCompletedDepth() {
+    return completedDepth;
+  }
+
+  long getNodes() {
+    return nodes;
+  }
+
+  MoveOrdering getOrdering() {
+    return ordering;
+  }
+
+}
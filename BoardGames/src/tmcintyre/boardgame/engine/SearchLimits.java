@@ -0,0 +1,117 @@
+package tmcintyre.boardgame.engine;
+
+/**
+ * The limits on a search by the {@link Engine}.
+ * 
+ * <p>
+ * The engine deepens its search one ply at a time until one of the limits is
+ * reached:
+ * <ul>
+ * <li>the <i>depth</i> limit, the greatest depth to search to;</li>
+ * <li>the <i>soft time</i> limit, the time the search should take. No new
+ * depth is started once the next is unlikely to finish within it;</li>
+ * <li>the <i>hard time</i> limit, after which the search stops at once, even
+ * part way through a depth;</li>
+ * <li>the <i>node</i> limit, the greatest number of positions to visit, which
+ * also stops the search at once.</li>
+ * </ul>
+ * Only the depth limit is set by default, to <code>Engine.MAX_PLY</code>.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class SearchLimits {
+
+  private int depth = Engine.MAX_PLY;
+  private long softTimeMillis = Long.MAX_VALUE;
+  private long hardTimeMillis = Long.MAX_VALUE;
+  private long nodes = Long.MAX_VALUE;
+
+  /**
+   * Creates limits that stop the search only at <code>Engine.MAX_PLY</code>.
+   * At least one other limit should be set.
+   */
+  public SearchLimits() {
+
+  }
+
+  /**
+   * Creates limits for a search to the given depth.
+   * 
+   * @param depth
+   *          the depth in plies, at least 1
+   */
+  public SearchLimits(int depth) {
+    setDepth(depth);
+  }
+
+  /**
+   * Creates limits for a search by time.
+   * 
+   * @param softTimeMillis
+   *          the time the search should take
+   * @param hardTimeMillis
+   *          the time after which the search must stop
+   */
+  public SearchLimits(long softTimeMillis, long hardTimeMillis) {
+    setSoftTime(softTimeMillis);
+    setHardTime(hardTimeMillis);
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Sets the depth of the search.
+   * 
+   * @param depth
+   *          the depth in plies, at least 1
+   * @throws IllegalArgumentException
+   *           if the depth is less than 1
+   */
+  public void setDepth(int depth) {
+    if (depth < 1) throw new IllegalArgumentException("Search depth must be at least 1");
+    this.depth = depth;
+  }
+
+  public long getSoftTime() {
+    return softTimeMillis;
+  }
+
+  /**
+   * Sets the time the search should take, in milliseconds.
+   * 
+   * @param softTimeMillis
+   */
+  public void setSoftTime(long softTimeMillis) {
+    this.softTimeMillis = softTimeMillis;
+  }
+
+  public long getHardTime() {
+    return hardTimeMillis;
+  }
+
+  /**
+   * Sets the time after which the search must stop, in milliseconds.
+   * 
+   * @param hardTimeMillis
+   */
+  public void setHardTime(long hardTimeMillis) {
+    this.hardTimeMillis = hardTimeMillis;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Sets the greatest number of positions to visit.
+   * 
+   * @param nodes
+   */
+  public void setNodes(long nodes) {
+    this.nodes = nodes;
+  }
+
+}
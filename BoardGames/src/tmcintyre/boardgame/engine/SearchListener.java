@@ -0,0 +1,25 @@
+package tmcintyre.boardgame.engine;
+
+/**
+ * Told of the progress of a search by the {@link Engine}, as each depth is
+ * completed.
+ * 
+ * <p>
+ * The listener is called from the thread doing the search, which waits for it
+ * to return, so it should be quick.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface SearchListener {
+
+  /**
+   * Called when the search has completed a depth.
+   * 
+   * @param result
+   *          the best move and score so far, with the depth just completed and
+   *          the nodes and time used since the search started
+   */
+  public void depthCompleted(SearchResult result);
+
+}
@@ -0,0 +1,153 @@
+package tmcintyre.boardgame.engine;
+
+import java.util.Arrays;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * The position a {@link Search} works on: a {@link Game} whose moves are
+ * handled as <tt>int</tt>s, generated into an array kept for each ply.
+ * 
+ * <p>
+ * A <code>ChessGame</code> generates and plays packed moves itself, so its
+ * search creates no <code>Move</code> objects at all. Other games are searched
+ * through their <code>Move</code>s, each <tt>int</tt> being the index of a
+ * <code>Move</code> in the list for its ply.
+ * 
+ * <p>
+ * If the search has an {@link IncrementalEvaluator}, the position reports
+ * every piece put on or taken off the board to it.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+abstract class SearchPosition {
+
+  private final int[][] moves = new int[Engine.MAX_PLY + 1][];
+
+  /**
+   * Returns the position for the provided <code>Game</code>.
+   * 
+   * @param game
+   * @param incremental
+   *          the evaluator to report changes to, or <code>null</code>
+   * @return the position for the <code>Game</code>
+   */
+  static SearchPosition of(Game game, IncrementalEvaluator incremental) {
+    if (game instanceof ChessGame) return new ChessSearchPosition((ChessGame) game, incremental);
+    return new GameSearchPosition(game, incremental);
+  }
+
+  /**
+   * Generates the legal moves of the current position, which is the given
+   * number of plies from the root, into the array for that ply.
+   * 
+   * @param ply
+   * @return the number of moves generated
+   */
+  abstract int generate(int ply);
+
+  /**
+   * Returns the array holding the moves last generated for the given ply.
+   * 
+   * @param ply
+   * @return the moves of the ply
+   */
+  final int[] moves(int ply) {
+    return moves[ply];
+  }
+
+  /**
+   * Returns the array for the moves of the given ply, large enough to hold the
+   * given number of them.
+   */
+  final int[] buffer(int ply, int capacity) {
+    int[] buffer = moves[ply];
+    if (buffer == null || buffer.length < capacity) {
+      buffer = buffer == null ? new int[capacity] : Arrays.copyOf(buffer, capacity);
+      moves[ply] = buffer;
+    }
+    return buffer;
+  }
+
+  abstract void doMove(int move);
+
+  abstract void undoMove(int move);
+
+  /**
+   * Returns the <code>Move</code> for one of the moves generated at the root,
+   * to be played for real.
+   * 
+   * @param move
+   * @return the <code>Move</code>
+   */
+  abstract Move toMove(int move);
+
+  /**
+   * Returns a number from 1 to <code>TranspositionTable.MAX_MOVE</code>
+   * identifying the move within its position, the same whichever copy of the
+   * game it was generated in.
+   * 
+   * @param move
+   * @return the id of the move
+   */
+  abstract int id(int move);
+
+  /**
+   * Returns the start square of the move, as <code>row * width + col</code>.
+   * 
+   * @param move
+   * @return the start square
+   */
+  abstract int from(int move);
+
+  /**
+   * Returns the destination square of the move, as
+   * <code>row * width + col</code>.
+   * 
+   * @param move
+   * @return the destination square
+   */
+  abstract int to(int move);
+
+  abstract PieceType movingType(int move);
+
+  /**
+   * Returns the type of the piece the move captures, or <code>null</code> if
+   * it captures none.
+   * 
+   * @param move
+   * @return the type of the captured piece
+   */
+  abstract PieceType capturedType(int move);
+
+  /**
+   * Returns the type the move promotes to, or <code>null</code> if it is not a
+   * promotion or the type is not chosen until the move is played.
+   * 
+   * @param move
+   * @return the type promoted to
+   */
+  abstract PieceType promotionType(int move);
+
+  abstract boolean isPromotion(int move);
+
+  /**
+   * Returns <tt>true</tt> if the player to move is in check.
+   * 
+   * @return <tt>true</tt> if the player to move is in check
+   */
+  abstract boolean isInCheck();
+
+  /**
+   * Returns <tt>true</tt> if the player to move has already moved this turn,
+   * as part of a chain of captures.
+   * 
+   * @return <tt>true</tt> if the player to move is part way through a turn
+   */
+  abstract boolean isMidTurn();
+
+}
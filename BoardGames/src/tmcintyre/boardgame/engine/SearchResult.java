@@ -0,0 +1,106 @@
+package tmcintyre.boardgame.engine;
+
+import tmcintyre.boardgame.game.Move;
+
+/**
+ * The outcome of a search by the {@link Engine}.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class SearchResult {
+
+  private final Move bestMove;
+  private final int score;
+  private final int depth;
+  private final long nodes;
+  private final long nanos;
+  private final long cutoffs;
+  private final long firstMoveCutoffs;
+
+  SearchResult(Move bestMove, int score, int depth, long nodes, long nanos, long cutoffs,
+      long firstMoveCutoffs) {
+    this.bestMove = bestMove;
+    this.score = score;
+    this.depth = depth;
+    this.nodes = nodes;
+    this.nanos = nanos;
+    this.cutoffs = cutoffs;
+    this.firstMoveCutoffs = firstMoveCutoffs;
+  }
+
+  /**
+   * Returns the best <code>Move</code> found, or <code>null</code> if the
+   * player to move had no legal moves.
+   * 
+   * @return the best <code>Move</code> found
+   */
+  public Move getBestMove() {
+    return bestMove;
+  }
+
+  /**
+   * Returns the score of the best <code>Move</code>, from the point of view of
+   * the player to move.
+   * 
+   * @return the score of the best <code>Move</code>
+   * @see Engine#isMateScore
+   */
+  public int getScore() {
+    return score;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the time the search took, in nanoseconds.
+   * 
+   * @return the time the search took
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Returns the number of beta cutoffs in the search: the positions whose
+   * search stopped early because a move was found too good for the opponent
+   * to allow.
+   * 
+   * @return the number of beta cutoffs
+   */
+  public long getCutoffs() {
+    return cutoffs;
+  }
+
+  /**
+   * Returns the number of beta cutoffs caused by the first move searched.
+   * 
+   * @return the number of first-move beta cutoffs
+   */
+  public long getFirstMoveCutoffs() {
+    return firstMoveCutoffs;
+  }
+
+  /**
+   * Returns the proportion of beta cutoffs caused by the first move searched,
+   * from 0 to 1. The nearer to 1, the better the moves were ordered.
+   * 
+   * @return the first-move cutoff rate, or 0 if there were no cutoffs
+   */
+  public double getFirstMoveCutoffRate() {
+    return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+  }
+
+  @Override
+  public String toString() {
+    return bestMove + " (score " + score + ", depth " + depth + ", " + nodes + " nodes, "
+        + Math.round(getFirstMoveCutoffRate() * 100) + "% first-move cutoffs)";
+  }
+
+}
@@ -0,0 +1,246 @@
+package tmcintyre.boardgame.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed-size hash table of search results, keyed by
+ * <code>Game.getPositionKey</code>, shared by every thread searching a game.
+ * 
+ * <p>
+ * Each entry is two <code>long</code>s held off the Java heap in a direct
+ * <code>ByteBuffer</code>: the data, which packs the best move, score, depth,
+ * bound type and search generation together, and the position key exclusive
+ * or'ed with the data. The table takes no locks. Two threads writing the same
+ * entry at once can leave one thread's key with the other's data, but then
+ * the key no longer matches when the entry is read back, so a torn entry is
+ * simply a miss.
+ * 
+ * <p>
+ * Entries are grouped into buckets of four, which together fill one 64-byte
+ * cache line. A position may be stored in any entry of its bucket. When the
+ * bucket is full, the entry replaced is the shallowest one, with entries left
+ * over from earlier searches counting as shallower still.
+ * 
+ * <p>
+ * A probe returns the packed data as a single <code>long</code>, or 0 for a
+ * miss, and the static methods unpack it. So a probe allocates nothing.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class TranspositionTable {
+
+  /** The score is exact. */
+  public static final int EXACT = 1;
+  /** The score is a lower bound: the search failed high. */
+  public static final int LOWER = 2;
+  /** The score is an upper bound: the search failed low. */
+  public static final int UPPER = 3;
+
+  /** The largest move number that can be stored. */
+  public static final int MAX_MOVE = (1 << 20) - 1;
+
+  /** The largest table that can be allocated, in megabytes. */
+  public static final int MAX_MEGABYTES = 1024;
+
+  private static final int ENTRY_BYTES = 16;
+  private static final int BUCKET_ENTRIES = 4;
+  private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+
+  // Layout of the data long: move (20 bits), score (16), depth (8), bound (2),
+  // generation (8)
+  private static final int SCORE_SHIFT = 20;
+  private static final int DEPTH_SHIFT = 36;
+  private static final int BOUND_SHIFT = 44;
+  private static final int GENERATION_SHIFT = 46;
+  private static final int GENERATIONS = 256;
+
+  private final ByteBuffer table;
+  private final int bucketMask;
+
+  private volatile int generation;
+
+  /**
+   * Creates a table of (at most) the given size.
+   * 
+   * @param megabytes
+   *          from 1 to <code>MAX_MEGABYTES</code>
+   * @throws IllegalArgumentException
+   *           if the size is out of range
+   */
+  public TranspositionTable(int megabytes) {
+    if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+      throw new IllegalArgumentException("Hash size must be between 1 and " + MAX_MEGABYTES
+          + " MB");
+    }
+    int buckets = Integer.highestOneBit((int) (((long) megabytes << 20) / BUCKET_BYTES));
+    bucketMask = buckets - 1;
+    table = ByteBuffer.allocateDirect(buckets * BUCKET_BYTES).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Returns the packed data stored for the given position, or 0 if there is
+   * none.
+   * 
+   * @param key
+   *          the position key
+   * @return the packed data, to be read with <code>move</code>,
+   *         <code>score</code>, <code>depth</code> and <code>bound</code>
+   */
+  public long probe(long key) {
+    int bucket = bucketOffset(key);
+    for (int i = 0; i < BUCKET_ENTRIES; i++) {
+      int offset = bucket + i * ENTRY_BYTES;
+      long data = table.getLong(offset + 8);
+      if ((table.getLong(offset) ^ data) == key && data != 0) return data;
+    }
+    return 0;
+  }
+
+  /**
+   * Stores a search result for the given position.
+   * 
+   * <p>
+   * If the position is already stored its entry is overwritten, keeping the
+   * old best move when no new one is given. Otherwise the shallowest entry in
+   * the bucket, preferring those from earlier searches, is replaced.
+   * 
+   * @param key
+   *          the position key
+   * @param move
+   *          the best move, as a number from 1 to <code>MAX_MOVE</code> chosen
+   *          by the search, or 0 for none
+   * @param score
+   *          between <code>Short.MIN_VALUE</code> and
+   *          <code>Short.MAX_VALUE</code>
+   * @param depth
+   *          the remaining depth searched, from 0 to 255
+   * @param bound
+   *          <code>EXACT</code>, <code>LOWER</code> or <code>UPPER</code>
+   */
+  public void store(long key, int move, int score, int depth, int bound) {
+    int bucket = bucketOffset(key);
+    int current = generation;
+    int replace = bucket;
+    int lowestValue = Integer.MAX_VALUE;
+
+    for (int i = 0; i < BUCKET_ENTRIES; i++) {
+      int offset = bucket + i * ENTRY_BYTES;
+      long data = table.getLong(offset + 8);
+      if (data == 0) {
+        replace = offset;
+        break;
+      }
+      if ((table.getLong(offset) ^ data) == key) {
+        if (move == 0) move = move(data);
+        replace = offset;
+        break;
+      }
+      int age = (current - generation(data)) & (GENERATIONS - 1);
+      int value = depth(data) - 8 * age;
+      if (value < lowestValue) {
+        lowestValue = value;
+        replace = offset;
+      }
+    }
+
+    long data = (move & MAX_MOVE) | ((score & 0xffffL) << SCORE_SHIFT)
+        | ((long) (depth & 0xff) << DEPTH_SHIFT) | ((long) bound << BOUND_SHIFT)
+        | ((long) current << GENERATION_SHIFT);
+    table.putLong(replace, key ^ data);
+    table.putLong(replace + 8, data);
+  }
+
+  /**
+   * Marks the start of a new search, so that entries from earlier searches
+   * are replaced first.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & (GENERATIONS - 1);
+  }
+
+  /**
+   * Empties the table.
+   */
+  public void clear() {
+    for (int offset = 0; offset < table.capacity(); offset += 8) {
+      table.putLong(offset, 0);
+    }
+    generation = 0;
+  }
+
+  /**
+   * Returns the size of the table in bytes.
+   * 
+   * @return the size of the table in bytes
+   */
+  public int getSize() {
+    return table.capacity();
+  }
+
+  /**
+   * Returns how full the table is with entries from the current search, in
+   * thousandths, estimated from the first thousand entries.
+   * 
+   * @return the number of entries in every thousand that are in use
+   */
+  public int getHashfull() {
+    int used = 0;
+    int entries = Math.min(1000, table.capacity() / ENTRY_BYTES);
+    for (int i = 0; i < entries; i++) {
+      long data = table.getLong(i * ENTRY_BYTES + 8);
+      if (data != 0 && generation(data) == generation) used++;
+    }
+    return used * 1000 / entries;
+  }
+
+  /**
+   * Returns the best move held in the packed data, or 0 if there is none.
+   * 
+   * @param data
+   * @return the best move
+   */
+  public static int move(long data) {
+    return (int) (data & MAX_MOVE);
+  }
+
+  /**
+   * Returns the score held in the packed data.
+   * 
+   * @param data
+   * @return the score
+   */
+  public static int score(long data) {
+    return (short) (data >>> SCORE_SHIFT);
+  }
+
+  /**
+   * Returns the depth held in the packed data.
+   * 
+   * @param data
+   * @return the depth
+   */
+  public static int depth(long data) {
+    return (int) (data >>> DEPTH_SHIFT) & 0xff;
+  }
+
+  /**
+   * Returns the bound type held in the packed data.
+   * 
+   * @param data
+   * @return <code>EXACT</code>, <code>LOWER</code> or <code>UPPER</code>
+   */
+  public static int bound(long data) {
+    return (int) (data >>> BOUND_SHIFT) & 3;
+  }
+
+  private static int generation(long data) {
+    return (int) (data >>> GENERATION_SHIFT) & (GENERATIONS - 1);
+  }
+
+  private int bucketOffset(long key) {
+    return ((int) (key >>> 32) & bucketMask) * BUCKET_BYTES;
+  }
+
+}
@@ -0,0 +1,354 @@
+package tmcintyre.boardgame.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.ChessMove;
+import tmcintyre.boardgame.game.promotiongames.Fen;
+import tmcintyre.boardgame.game.promotiongames.UciMoveFormatter;
+import tmcintyre.boardgame.tablebase.Tablebases;
+
+/**
+ * Drives an {@link Engine} over the Universal Chess Interface (UCI), reading
+ * commands from one stream and writing replies to another, so that the engine
+ * can be run by chess GUIs and match tools. Nothing here uses Swing.
+ *
+ * <p>
+ * The commands understood are <tt>uci</tt>, <tt>isready</tt>,
+ * <tt>ucinewgame</tt>, <tt>setoption</tt>, <tt>position</tt>, <tt>go</tt>,
+ * <tt>stop</tt> and <tt>quit</tt>. <tt>position</tt> takes <tt>startpos</tt>
+ * or <tt>fen</tt>, then optionally <tt>moves</tt>. <tt>go</tt> takes
+ * <tt>depth</tt>, <tt>nodes</tt>, <tt>movetime</tt>, <tt>infinite</tt> and the
+ * clock: <tt>wtime</tt>, <tt>btime</tt>, <tt>winc</tt>, <tt>binc</tt> and
+ * <tt>movestogo</tt>. The options are <tt>Hash</tt> in megabytes,
+ * <tt>Threads</tt> and <tt>TablebasePath</tt>, a directory of
+ * {@link Tablebases}.
+ *
+ * <p>
+ * A search runs in its own thread, so that <tt>stop</tt> and <tt>isready</tt>
+ * are answered while it runs. An <tt>info</tt> line is written as each depth
+ * is completed, and again with the final counts before <tt>bestmove</tt>.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public class UciProtocol {
+
+  public static final String NAME = "BoardGames";
+  public static final String AUTHOR = "Tom McIntyre";
+
+  // Moves left to plan for when the clock gives no number
+  private static final int DEFAULT_MOVES_TO_GO = 30;
+  // Kept back from the clock for the time it takes to send the move
+  private static final long MOVE_OVERHEAD_MILLIS = 50;
+
+  private final BufferedReader in;
+  private final PrintStream out;
+  private final UciMoveFormatter formatter = new UciMoveFormatter();
+
+  private Engine engine;
+  private int hashMegabytes = Engine.DEFAULT_HASH_MEGABYTES;
+  private int threads = 1;
+  private Tablebases tablebases;
+
+  private ChessGame game = ChessGame.fromFen(Fen.START_POSITION);
+  private Thread searchThread;
+  private CountDownLatch stopped;
+
+  public UciProtocol(InputStream in, OutputStream out) {
+    this.in = new BufferedReader(new InputStreamReader(in));
+    this.out = new PrintStream(out, true);
+    createEngine();
+  }
+
+  /**
+   * Reads and carries out commands until <tt>quit</tt> or the end of the
+   * input.
+   *
+   * @throws IOException
+   *           if the input cannot be read
+   */
+  public void run() throws IOException {
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (!handle(line.trim())) break;
+    }
+    stopSearch();
+  }
+
+  /**
+   * Carries out one command.
+   *
+   * @param line
+   * @return <tt>false</tt> if the command was <tt>quit</tt>
+   */
+  boolean handle(String line) {
+    if (line.length() == 0) return true;
+    String[] tokens = line.split("\\s+");
+    String command = tokens[0];
+    try {
+      if (command.equals("uci")) {
+        send("id name " + NAME);
+        send("id author " + AUTHOR);
+        send("option name Hash type spin default " + Engine.DEFAULT_HASH_MEGABYTES
+            + " min 1 max " + TranspositionTable.MAX_MEGABYTES);
+        send("option name Threads type spin default 1 min 1 max "
+            + Math.max(64, Runtime.getRuntime().availableProcessors()));
+        send("option name TablebasePath type string default <empty>");
+        send("uciok");
+      } else if (command.equals("isready")) {
+        send("readyok");
+      } else if (command.equals("ucinewgame")) {
+        stopSearch();
+        engine.clearHash();
+      } else if (command.equals("setoption")) {
+        stopSearch();
+        setOption(tokens);
+      } else if (command.equals("position")) {
+        stopSearch();
+        position(tokens);
+      } else if (command.equals("go")) {
+        stopSearch();
+        go(tokens);
+      } else if (command.equals("stop")) {
+        stopSearch();
+      } else if (command.equals("quit")) {
+        return false;
+      } else {
+        send("info string Unknown command: " + command);
+      }
+    } catch (IllegalArgumentException e) {
+      // Including a NumberFormatException
+      send("info string " + e.getMessage());
+    }
+    return true;
+  }
+
+  private void createEngine() {
+    engine = new Engine(hashMegabytes);
+    engine.setThreads(threads);
+    engine.setTablebases(tablebases);
+    engine.setListener(new SearchListener() {
+      @Override
+      public void depthCompleted(SearchResult result) {
+        sendInfo(result);
+      }
+    });
+  }
+
+  private void setOption(String[] tokens) {
+    StringBuilder name = new StringBuilder();
+    StringBuilder value = new StringBuilder();
+    StringBuilder current = null;
+    for (int i = 1; i < tokens.length; i++) {
+      if (tokens[i].equals("name")) {
+        current = name;
+      } else if (tokens[i].equals("value")) {
+        current = value;
+      } else if (current != null) {
+        if (current.length() > 0) current.append(' ');
+        current.append(tokens[i]);
+      }
+    }
+
+    String option = name.toString();
+    if (option.equalsIgnoreCase("Hash")) {
+      hashMegabytes = Integer.parseInt(value.toString());
+      // The table's size is fixed when the engine is made
+      createEngine();
+    } else if (option.equalsIgnoreCase("Threads")) {
+      threads = Integer.parseInt(value.toString());
+      engine.setThreads(threads);
+    } else if (option.equalsIgnoreCase("TablebasePath")) {
+      String path = value.toString();
+      if (path.length() == 0 || path.equals("<empty>")) {
+        tablebases = null;
+      } else {
+        try {
+          tablebases = new Tablebases(new File(path));
+        } catch (IOException e) {
+          throw new IllegalArgumentException(e.getMessage());
+        }
+        send("info string Tablebases: " + tablebases.size());
+      }
+      engine.setTablebases(tablebases);
+    } else {
+      send("info string Unknown option: " + option);
+    }
+  }
+
+  private void position(String[] tokens) {
+    int i = 1;
+    String fen;
+    if (i < tokens.length && tokens[i].equals("startpos")) {
+      fen = Fen.START_POSITION;
+      i++;
+    } else if (i < tokens.length && tokens[i].equals("fen")) {
+      StringBuilder record = new StringBuilder();
+      for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+        if (record.length() > 0) record.append(' ');
+        record.append(tokens[i]);
+      }
+      fen = record.toString();
+    } else {
+      throw new IllegalArgumentException("Expected startpos or fen");
+    }
+
+    ChessGame position = ChessGame.fromFen(fen);
+    if (i < tokens.length && tokens[i].equals("moves")) {
+      for (i++; i < tokens.length; i++) {
+        int move = findMove(position, tokens[i]);
+        if (move == 0) throw new IllegalArgumentException("Illegal move: " + tokens[i]);
+        position.doMove(position.toMove(move), true);
+      }
+    }
+    game = position;
+  }
+
+  /**
+   * Returns the legal packed move with the provided UCI name, or 0 if there is
+   * none.
+   */
+  private int findMove(ChessGame position, String name) {
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    int count = position.generateMoves(moves);
+    for (int i = 0; i < count; i++) {
+      if (formatter.format(moves[i]).equals(name)) return moves[i];
+    }
+    return 0;
+  }
+
+  private void go(String[] tokens) {
+    SearchLimits limits = new SearchLimits();
+    boolean white = game.getSide(game.getCurrentPlayer()) == ChessBoard.WHITE;
+    long time = -1;
+    long increment = 0;
+    int movesToGo = 0;
+    boolean infinite = false;
+
+    for (int i = 1; i < tokens.length; i++) {
+      String token = tokens[i];
+      boolean hasValue = i + 1 < tokens.length;
+      if (token.equals("infinite")) {
+        infinite = true;
+      } else if (token.equals("depth") && hasValue) {
+        limits.setDepth(Integer.parseInt(tokens[++i]));
+      } else if (token.equals("nodes") && hasValue) {
+        limits.setNodes(Long.parseLong(tokens[++i]));
+      } else if (token.equals("movetime") && hasValue) {
+        long movetime = Long.parseLong(tokens[++i]);
+        limits.setSoftTime(movetime);
+        limits.setHardTime(movetime);
+      } else if (token.equals(white ? "wtime" : "btime") && hasValue) {
+        time = Long.parseLong(tokens[++i]);
+      } else if (token.equals(white ? "winc" : "binc") && hasValue) {
+        increment = Long.parseLong(tokens[++i]);
+      } else if (token.equals("movestogo") && hasValue) {
+        movesToGo = Integer.parseInt(tokens[++i]);
+      }
+    }
+    if (time >= 0 && !infinite) {
+      long available = Math.max(1, time - MOVE_OVERHEAD_MILLIS);
+      long soft = available / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + increment * 3
+          / 4;
+      long hard = Math.min(available, soft * 4);
+      limits.setSoftTime(Math.max(1, Math.min(soft, hard)));
+      limits.setHardTime(Math.max(1, hard));
+    }
+    startSearch(limits, infinite);
+  }
+
+  private void startSearch(final SearchLimits limits, final boolean infinite) {
+    final ChessGame searched = game;
+    final Engine searching = engine;
+    final CountDownLatch stop = new CountDownLatch(1);
+    stopped = stop;
+    searchThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        SearchResult result = searching.search(searched, limits);
+        // An infinite search must not end until told to
+        if (infinite) awaitUninterruptibly(stop);
+        sendInfo(result);
+        Move best = result.getBestMove();
+        send("bestmove " + (best == null ? "0000" : formatter.format(best)));
+      }
+    }, "UCI search");
+    searchThread.start();
+  }
+
+  /**
+   * Stops the search in progress, if any, and waits for its
+   * <tt>bestmove</tt> to be sent.
+   */
+  private void stopSearch() {
+    if (searchThread == null) return;
+    engine.stop();
+    stopped.countDown();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        searchThread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+    searchThread = null;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  private void sendInfo(SearchResult result) {
+    long millis = result.getNanos() / 1000000;
+    long nps = result.getNanos() == 0 ? 0 : result.getNodes() * 1000000000L / result.getNanos();
+    StringBuilder info = new StringBuilder("info");
+    info.append(" depth ").append(result.getDepth());
+    info.append(" score ").append(score(result.getScore()));
+    info.append(" nodes ").append(result.getNodes());
+    info.append(" nps ").append(nps);
+    info.append(" time ").append(millis);
+    if (result.getBestMove() != null) {
+      info.append(" pv ").append(formatter.format(result.getBestMove()));
+    }
+    send(info.toString());
+  }
+
+  /**
+   * Returns a score in UCI terms: mate in a number of moves, negative when
+   * being mated, or centipawns.
+   */
+  private static String score(int score) {
+    if (Math.abs(score) <= Engine.MAX_EVALUATION) return "cp " + score;
+    int moves = (Engine.MATE - Math.abs(score) + 1) / 2;
+    return "mate " + (score > 0 ? moves : -moves);
+  }
+
+  private void send(String line) {
+    synchronized (out) {
+      out.println(line);
+    }
+  }
+
+}
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 import tmcintyre.boardgame.logger.Logger;
 import tmcintyre.boardgame.pieces.Piece;
@@ -24,12 +23,24 @@ import tmcintyre.boardgame.player.Player;
  * implementations. However, they do not form part of the core <code>Game</code>
  * API.
  * 
+ * <p>
+ * Each move done is pushed on an undo stack, together with whose turn it was,
+ * the position key and any game-specific state a subclass saves with
+ * <code>saveUndoState</code>. <code>undoMove</code> puts the pieces back and
+ * restores all of these as they were, without asking <code>isTurnOver</code>
+ * again.
+ * 
  * @author Tom McIntyre
  * 
  */
 public abstract class AbstractGame implements Game {
 
   private int playerIndex = 0;
+  private int currentPlayerIndex = -1;
+  private boolean loggingEnabled = true;
+
+  private ZobristKeys zobristKeys;
+  private long positionKey;
 
   protected List<Piece>[][] boardPieces;
   protected Color[][] boardColors;
@@ -39,7 +50,7 @@ public abstract class AbstractGame implements Game {
   protected Player currentPlayer;
 
   protected final GameType gameType;
-  protected final Stack<Move> moveHistory = new Stack<Move>();
+  private final UndoStack moveHistory = new UndoStack(64);
   protected final List<Observer> observers = new LinkedList<Observer>();
   protected final List<Player> players = new ArrayList<Player>();
 
@@ -55,8 +66,13 @@ public abstract class AbstractGame implements Game {
   @Override
   public void addPieceAt(int row, int col, Piece piece) {
     if (piece == null) return;
-    boardPieces[piece.getRow()][piece.getCol()].remove(piece);
+    if (boardPieces[piece.getRow()][piece.getCol()].remove(piece)) {
+      removeFromPositionKey(piece, piece.getRow(), piece.getCol());
+      squareChanged(piece.getRow(), piece.getCol());
+    }
     boardPieces[row][col].add(piece);
+    addToPositionKey(piece, row, col);
+    squareChanged(row, col);
 
     piece.setRow(row);
     piece.setCol(col);
@@ -75,7 +91,9 @@ public abstract class AbstractGame implements Game {
 
   @Override
   public void doMove(Move move, boolean isDummy) {
-    moveHistory.push(move);
+    int record = moveHistory.size();
+    moveHistory.push(move, currentPlayerIndex, playerIndex, positionKey, saveUndoState());
+    startMove(move);
     boolean turnOver;
 
     do {
@@ -105,10 +123,11 @@ public abstract class AbstractGame implements Game {
 
       turnOver = isTurnOver(move);
       if (turnOver) updateCurrentPlayerToNext();
+      if (move.getNextMove() == null) moveHistory.setLastStep(record, move);
       move = move.getNextMove();
     } while (move != null);
 
-    if (turnOver) {
+    if (turnOver && !isDummy) {
       for (Observer o : observers) {
         o.notifyOnCurrentPlayerChanged();
       }
@@ -142,10 +161,24 @@ public abstract class AbstractGame implements Game {
 
   @Override
   public Move getLastMove() {
-    if (moveHistory.isEmpty()) return null;
     return moveHistory.peek();
   }
 
+  /**
+   * Returns the moves done so far, oldest first, one for each turn. Where a
+   * turn was made of several linked moves, as when castling or promoting, the
+   * first of them is given; the rest follow from <code>getNextMove</code>.
+   * 
+   * @return a new list of the moves done so far
+   */
+  public List<Move> getMoveHistory() {
+    List<Move> history = new ArrayList<Move>(moveHistory.size());
+    for (int i = 0; i < moveHistory.size(); i++) {
+      history.add(moveHistory.move(i));
+    }
+    return history;
+  }
+
   @Override
   public Map<String, String[]> getGameSpecificOptions() {
     // The default case when there are no game-specific options
@@ -180,7 +213,88 @@ public abstract class AbstractGame implements Game {
   public void removePiece(Piece piece) {
     if (piece == null) return;
     piece.getPlayer().removePiece(piece);
-    boardPieces[piece.getRow()][piece.getCol()].remove(piece);
+    if (boardPieces[piece.getRow()][piece.getCol()].remove(piece)) {
+      removeFromPositionKey(piece, piece.getRow(), piece.getCol());
+      squareChanged(piece.getRow(), piece.getCol());
+    }
+  }
+
+  @Override
+  public long getPositionKey() {
+    return positionKey;
+  }
+
+  /**
+   * Adds the key for the provided <code>Piece</code> standing on the specified
+   * square to the position key. Subclasses that keep their own board, rather
+   * than using <code>boardPieces</code>, must call this whenever a piece is put
+   * on the board.
+   * 
+   * @param piece
+   * @param row
+   * @param col
+   */
+  protected void addToPositionKey(Piece piece, int row, int col) {
+    if (zobristKeys == null) return;
+    positionKey += pieceKey(piece, row, col);
+  }
+
+  /**
+   * Removes the key for the provided <code>Piece</code> standing on the
+   * specified square from the position key. Subclasses that keep their own
+   * board must call this whenever a piece is taken off the board.
+   * 
+   * @param piece
+   * @param row
+   * @param col
+   */
+  protected void removeFromPositionKey(Piece piece, int row, int col) {
+    if (zobristKeys == null) return;
+    positionKey -= pieceKey(piece, row, col);
+  }
+
+  /**
+   * Informs every player that a piece has been put on, or taken off, the
+   * specified square, so that the legal moves depending on it are generated
+   * again. Subclasses that keep their own board and have pieces that are
+   * <code>LocalPiece</code>s must call this whenever the board changes.
+   * 
+   * @param row
+   * @param col
+   * @see Player#squareChanged
+   */
+  protected void squareChanged(int row, int col) {
+    for (Player player : players) {
+      player.squareChanged(row, col);
+    }
+  }
+
+  /**
+   * Adds a key describing game-specific state to the position key. A subclass
+   * whose legal moves depend on more than the pieces and the player to move
+   * removes the key for the old state and adds the key for the new one each
+   * time the state changes.
+   * 
+   * @param key
+   * @see ZobristKeys#randomKeys
+   */
+  protected void addToPositionKey(long key) {
+    positionKey += key;
+  }
+
+  /**
+   * Removes a key describing game-specific state from the position key.
+   * 
+   * @param key
+   * @see #addToPositionKey(long)
+   */
+  protected void removeFromPositionKey(long key) {
+    positionKey -= key;
+  }
+
+  private long pieceKey(Piece piece, int row, int col) {
+    return zobristKeys.piece(players.indexOf(piece.getPlayer()), piece.getType(), row
+        * boardWidth + col);
   }
 
   @Override
@@ -205,9 +319,11 @@ public abstract class AbstractGame implements Game {
   public void start() {
     initialiseBoardColors();
     initializeBoardPieceLists();
+    zobristKeys = new ZobristKeys(players.size(), boardHeight * boardWidth);
+    positionKey = 0;
     initializeBoardPieces();
     initializePlayers();
-    addObserver(new Logger(this));
+    if (loggingEnabled) addObserver(new Logger(this));
 
     for (Observer o : observers) {
       o.notifyOnStart();
@@ -218,16 +334,15 @@ public abstract class AbstractGame implements Game {
   public void undoMove(boolean dummy) {
     if (moveHistory.isEmpty()) return;
 
-    Move lastMove = moveHistory.peek();
-    while (lastMove.getNextMove() != null)
-      lastMove = lastMove.getNextMove();
+    int record = moveHistory.size() - 1;
+    setCurrentPlayerIndex(moveHistory.playerIndex(record));
+    playerIndex = moveHistory.nextPlayerIndex(record);
 
+    Move lastMove = moveHistory.lastStep(record);
     do {
-      if (isTurnOver(lastMove)) updateCurrentPlayerToPrev();
-
       Piece movingBack = lastMove.getMovingPiece();
 
-      if (!dummy && lastMove.destroyMovingPieceOnUndo()) {
+      if (lastMove.destroyMovingPieceOnUndo()) {
         removePiece(movingBack);
       } else {
         addPieceAt(lastMove.startRow(), lastMove.startCol(), movingBack);
@@ -251,10 +366,52 @@ public abstract class AbstractGame implements Game {
       lastMove = lastMove.getPrevMove();
     } while (lastMove != null);
 
-    for (Observer o : observers) {
-      o.notifyOnCurrentPlayerChanged();
-    }
+    // The key is restored whole, rather than undone piece by piece
+    positionKey = moveHistory.positionKey(record);
+    restoreUndoState(moveHistory.state(record));
     moveHistory.pop();
+
+    if (!dummy) {
+      for (Observer o : observers) {
+        o.notifyOnCurrentPlayerChanged();
+      }
+    }
+  }
+
+  /**
+   * Returns any game-specific state that a move may change and that must be
+   * put back when the move is undone, such as the en passant square in chess.
+   * It is saved on the undo stack before each move, and passed to
+   * <code>restoreUndoState</code> when the move is undone. Returns 0 unless
+   * overridden.
+   * 
+   * @return the game-specific state to save
+   */
+  protected int saveUndoState() {
+    return 0;
+  }
+
+  /**
+   * Restores the game-specific state saved by <code>saveUndoState</code>
+   * before the move now being undone. Does nothing unless overridden.
+   * 
+   * @param state
+   */
+  protected void restoreUndoState(int state) {
+    // No game-specific state by default
+  }
+
+  /**
+   * Called by <code>doMove</code> once the move has been pushed on the undo
+   * stack, before any piece moves. Subclasses update here any state that the
+   * move changes and that the pieces depend on as they move. Does nothing
+   * unless overridden.
+   * 
+   * @param move
+   *          the first <code>Move</code> of the chain being done
+   */
+  protected void startMove(Move move) {
+    // No game-specific state by default
   }
 
   private void initializeBoardPieceLists() {
@@ -265,7 +422,50 @@ public abstract class AbstractGame implements Game {
     }
   }
 
-  private void initializePlayers() {
+  /**
+   * Sets whether a <code>Logger</code> is added as an observer when the game
+   * starts. Logging is on by default; headless users of the game, such as
+   * analysis tools playing out thousands of positions, can turn it off before
+   * calling <code>start</code>.
+   * 
+   * @param loggingEnabled
+   */
+  public void setLoggingEnabled(boolean loggingEnabled) {
+    this.loggingEnabled = loggingEnabled;
+  }
+
+  /**
+   * Updates the legal moves of the provided <code>Player</code> for the
+   * current position, unless they have already been updated for it. The
+   * moves generated to check the win conditions after a move are then the
+   * moves of the next turn.
+   * 
+   * <p>
+   * Only games whose legal moves follow from the position key, such as
+   * <code>getLegalMovesKey</code> returns it, should use this.
+   * 
+   * @param player
+   * @see Player#updateLegalMoves(long)
+   */
+  protected void updateLegalMoves(Player player) {
+    player.updateLegalMoves(getLegalMovesKey());
+  }
+
+  /**
+   * Returns the key identifying the current position for
+   * <code>updateLegalMoves</code>. This is the position key, unless part of it
+   * is left out while a move is being done.
+   * 
+   * @return the key of the current position
+   */
+  protected long getLegalMovesKey() {
+    return positionKey;
+  }
+
+  protected void initializePlayers() {
+    for (Player player : players) {
+      player.invalidateLegalMoves();
+    }
     for (int i = 0; i < players.size(); i++) {
       updateCurrentPlayerToNext();
       currentPlayer.updateLegalMoves();
@@ -303,15 +503,22 @@ public abstract class AbstractGame implements Game {
   }
 
   protected void updateCurrentPlayerToNext() {
-    currentPlayer = players.get(playerIndex);
+    setCurrentPlayerIndex(playerIndex);
     playerIndex++;
     if (playerIndex >= players.size()) playerIndex -= players.size();
 
   }
 
   protected void updateCurrentPlayerToPrev() {
-    currentPlayer = players.get(playerIndex);
+    setCurrentPlayerIndex(playerIndex);
     playerIndex--;
     if (playerIndex < 0) playerIndex += players.size();
   }
+
+  private void setCurrentPlayerIndex(int index) {
+    if (currentPlayer != null) positionKey -= zobristKeys.player(currentPlayerIndex);
+    currentPlayer = players.get(index);
+    currentPlayerIndex = index;
+    positionKey += zobristKeys.player(index);
+  }
 }
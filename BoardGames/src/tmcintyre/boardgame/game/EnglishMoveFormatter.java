@@ -0,0 +1,72 @@
+package tmcintyre.boardgame.game;
+
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * Names a {@link Move} in plain English, with its player, piece type and the
+ * rows and columns it moves between, eg <tt>White PAWN moved from 6, 4 to 4,
+ * 4</tt>. This is the name given by <code>Move.toString</code> and written by
+ * the <code>Logger</code>.
+ * 
+ * <p>
+ * A <code>Move</code> given a name when it was created is called by that name.
+ * The king's part of castling and the <code>Move</code> linked for a promotion
+ * are recognised and named as such. The name does not depend on the position,
+ * so a <code>Move</code> may be formatted at any time.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class EnglishMoveFormatter implements MoveFormatter {
+
+  @Override
+  public String format(Move move) {
+    if (move.getName() != null) return move.getName();
+
+    Piece moving = move.getMovingPiece();
+    Piece captured = move.getCapturedPiece();
+
+    if (isCastling(move)) {
+      return moving.getColor() + " castled to the "
+          + (move.destCol() < move.startCol() ? "left" : "right");
+    }
+    if (isPromotion(move)) {
+      return captured.getColor() + " " + captured.getType() + " promoted to " + moving.getType();
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(moving.getPlayer().getName() + " ");
+    sb.append(moving.getType());
+    sb.append(" moved from ");
+    sb.append(move.startRow() + ", " + move.startCol());
+    sb.append(" to ");
+    sb.append(move.destRow() + ", " + move.destCol());
+    if (captured != null) {
+      sb.append(", capturing ");
+      sb.append(captured.getPlayer().getName() + "'s ");
+      sb.append(captured.getType());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The king's part of castling moves it two squares, with the rook's part
+   * linked.
+   */
+  private static boolean isCastling(Move move) {
+    return move.getMovingPiece().getType() == PieceType.KING && move.getNextMove() != null
+        && Math.abs(move.destCol() - move.startCol()) == 2;
+  }
+
+  /**
+   * A promotion is linked as a new piece capturing the promoted one, which
+   * belongs to the same player.
+   */
+  private static boolean isPromotion(Move move) {
+    Piece captured = move.getCapturedPiece();
+    return move.destroyMovingPieceOnUndo() && captured != null
+        && captured.getPlayer() == move.getMovingPiece().getPlayer();
+  }
+
+}
@@ -208,6 +208,20 @@ public interface Game {
    */
   public List<Player> getPlayers();
 
+  /**
+   * Returns a 64-bit key identifying the current position: the pieces on the
+   * board, the player to move and any game-specific state that affects the
+   * legal moves, such as castling rights in chess. Equal positions have equal
+   * keys, and unequal positions almost certainly have different keys.
+   * 
+   * <p>
+   * The key is kept up to date as moves are done and undone, so this method
+   * is constant time.
+   * 
+   * @return the key of the current position
+   */
+  public long getPositionKey();
+
   /**
    * Returns <tt>true</tt> if the current player's turn has ended as a result of
    * the <code>Move</code> provided and any other relevant game state.
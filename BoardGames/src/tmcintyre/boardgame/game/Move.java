@@ -1,6 +1,7 @@
 package tmcintyre.boardgame.game;
 
 import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
 
 /**
  * Represents the movement of a piece from one position on the game board to
@@ -16,11 +17,24 @@ import tmcintyre.boardgame.pieces.Piece;
  * these cases it is possible to chain related moves together using the
  * <code>setNextMove</code> method. Accessor methods are also provided.
  * 
+ * <p>
+ * A move that promotes the moving piece may carry the <code>PieceType</code>
+ * to promote to. A {@link tmcintyre.boardgame.game.promotiongames.PromotionGame}
+ * then links the promotion to the move itself when the move is done, so the
+ * same move can be done and undone any number of times without a promotion
+ * being chosen by an observer.
+ * 
+ * <p>
+ * A move is not named when it is created, unless a name is given. Its name is
+ * rendered by a {@link MoveFormatter} when asked for, which
+ * <code>toString</code> does in English.
  * 
  * @author Tom McIntyre
  * 
  */
 public class Move {
+  private static final MoveFormatter ENGLISH = new EnglishMoveFormatter();
+
   private final int destCol;
   private final int destRow;
   private boolean destroyMovingPieceOnUndo = false;
@@ -28,6 +42,7 @@ public class Move {
   private final String name;
   private Move nextMove;
   private Move prevMove;
+  private PieceType promotionType;
 
   private final int startCol;
 
@@ -40,7 +55,6 @@ public class Move {
 
   public Move(Piece movingPiece, int destRow, int destCol, Piece takenPiece) {
     this(movingPiece, destRow, destCol, takenPiece, null);
-    generateName();
   }
 
   public Move(Piece movingPiece, int destRow, int destCol, Piece capturedPiece, String name) {
@@ -50,7 +64,7 @@ public class Move {
     this.destRow = destRow;
     this.destCol = destCol;
     this.capturedPiece = capturedPiece;
-    this.name = name != null ? name : generateName();
+    this.name = name;
   }
 
   /**
@@ -96,13 +110,25 @@ public class Move {
   }
 
   /**
-   * Returns the name of this <code>Move</code>
+   * Returns the name this <code>Move</code> was given when it was created, or
+   * <code>null</code> if it was given none.
+   * 
+   * @return the name given to this <code>Move</code>, if any
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the name of this <code>Move</code> in English, rendered on each
+   * call.
    * 
    * @return the name of this <code>Move</code>
+   * @see EnglishMoveFormatter
    */
   @Override
   public String toString() {
-    return name;
+    return ENGLISH.format(this);
   }
 
   /**
@@ -135,6 +161,27 @@ public class Move {
     return capturedPiece;
   }
 
+  /**
+   * Returns the <code>PieceType</code> the moving piece is promoted to by this
+   * <code>Move</code>, or <code>null</code> if the promotion (if any) is to be
+   * chosen when the move is done.
+   * 
+   * @return the <code>PieceType</code> the moving piece is promoted to, if set
+   */
+  public PieceType getPromotionType() {
+    return promotionType;
+  }
+
+  /**
+   * Sets the <code>PieceType</code> the moving piece is promoted to by this
+   * <code>Move</code>.
+   * 
+   * @param promotionType
+   */
+  public void setPromotionType(PieceType promotionType) {
+    this.promotionType = promotionType;
+  }
+
   /**
    * Sets whether the moving piece should be destroyed if this move is undone.
    * 
@@ -176,27 +223,4 @@ public class Move {
   public int startRow() {
     return startRow;
   }
-
-  /**
-   * Generates a String describing this <code>Move</code> to be used as a
-   * default name if none is provided. The name is based on the moving piece,
-   * the start and destination positions, and the captured piece (if any).
-   * 
-   * @return a String describing this <code>Move</code>
-   */
-  private String generateName() {
-    StringBuilder sb = new StringBuilder();
-    sb.append(movingPiece.getPlayer().getName() + " ");
-    sb.append(movingPiece.getType());
-    sb.append(" moved from ");
-    sb.append(startRow + ", " + startCol);
-    sb.append(" to ");
-    sb.append(destRow + ", " + destCol);
-    if (capturedPiece != null) {
-      sb.append(", capturing ");
-      sb.append(capturedPiece.getPlayer().getName() + "'s ");
-      sb.append(capturedPiece.getType());
-    }
-    return sb.toString();
-  }
 }
@@ -0,0 +1,32 @@
+package tmcintyre.boardgame.game;
+
+/**
+ * Names a {@link Move} in some notation.
+ * 
+ * <p>
+ * A <code>Move</code> does not name itself when it is created, since most of
+ * them are generated only to be tried by a search and thrown away. Instead a
+ * name is rendered by a <code>MoveFormatter</code> only when one is asked for,
+ * typically by an {@link Observer}. <code>Move.toString</code> uses
+ * {@link EnglishMoveFormatter}.
+ * 
+ * <p>
+ * Some notations depend on the position, for instance to tell apart two pieces
+ * that can reach the same square. Their formatters take the game from the
+ * moving piece, and say whether the <code>Move</code> must be formatted
+ * before or after it is done.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface MoveFormatter {
+
+  /**
+   * Returns the name of the provided <code>Move</code>.
+   * 
+   * @param move
+   * @return the name of the <code>Move</code>
+   */
+  public String format(Move move);
+
+}
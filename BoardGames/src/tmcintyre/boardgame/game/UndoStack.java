@@ -0,0 +1,136 @@
+package tmcintyre.boardgame.game;
+
+import java.util.Arrays;
+
+/**
+ * The moves done in an {@link AbstractGame}, each with the state needed to
+ * take it back: whose turn it was, the position key and one <tt>int</tt> of
+ * game-specific state, such as the en passant square in chess.
+ * 
+ * <p>
+ * The records are held in parallel arrays, which grow as needed but are never
+ * shrunk, so that pushing and popping in a search allocates nothing and takes
+ * no locks. Taking a move back restores the saved state as it was, rather than
+ * working it out again from the move.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class UndoStack {
+
+  private Move[] moves;
+  private Move[] lastSteps;
+  private int[] playerIndexes;
+  private int[] nextPlayerIndexes;
+  private long[] positionKeys;
+  private int[] states;
+  private int size;
+
+  UndoStack(int capacity) {
+    moves = new Move[capacity];
+    lastSteps = new Move[capacity];
+    playerIndexes = new int[capacity];
+    nextPlayerIndexes = new int[capacity];
+    positionKeys = new long[capacity];
+    states = new int[capacity];
+  }
+
+  /**
+   * Pushes a record for a move about to be done.
+   * 
+   * @param move
+   *          the first <code>Move</code> of the chain
+   * @param playerIndex
+   *          the index of the player to move
+   * @param nextPlayerIndex
+   *          the index of the player whose turn is next
+   * @param positionKey
+   *          the position key before the move
+   * @param state
+   *          the game-specific state before the move
+   */
+  void push(Move move, int playerIndex, int nextPlayerIndex, long positionKey, int state) {
+    if (size == moves.length) grow();
+    moves[size] = move;
+    lastSteps[size] = move;
+    playerIndexes[size] = playerIndex;
+    nextPlayerIndexes[size] = nextPlayerIndex;
+    positionKeys[size] = positionKey;
+    states[size] = state;
+    size++;
+  }
+
+  /**
+   * Records the last <code>Move</code> of the chain of a record, once the chain
+   * has been done, so that it can be taken back from the end without walking
+   * it.
+   * 
+   * @param index
+   * @param step
+   */
+  void setLastStep(int index, Move step) {
+    lastSteps[index] = step;
+  }
+
+  /**
+   * Removes the record on top of the stack.
+   */
+  void pop() {
+    size--;
+    moves[size] = null;
+    lastSteps[size] = null;
+  }
+
+  private void grow() {
+    int length = moves.length * 2;
+    moves = Arrays.copyOf(moves, length);
+    lastSteps = Arrays.copyOf(lastSteps, length);
+    playerIndexes = Arrays.copyOf(playerIndexes, length);
+    nextPlayerIndexes = Arrays.copyOf(nextPlayerIndexes, length);
+    positionKeys = Arrays.copyOf(positionKeys, length);
+    states = Arrays.copyOf(states, length);
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the first <code>Move</code> of the chain on top of the stack, or
+   * <code>null</code> if the stack is empty.
+   * 
+   * @return the last move done
+   */
+  Move peek() {
+    return size == 0 ? null : moves[size - 1];
+  }
+
+  Move move(int index) {
+    return moves[index];
+  }
+
+  Move lastStep(int index) {
+    return lastSteps[index];
+  }
+
+  int playerIndex(int index) {
+    return playerIndexes[index];
+  }
+
+  int nextPlayerIndex(int index) {
+    return nextPlayerIndexes[index];
+  }
+
+  long positionKey(int index) {
+    return positionKeys[index];
+  }
+
+  int state(int index) {
+    return states[index];
+  }
+
+}
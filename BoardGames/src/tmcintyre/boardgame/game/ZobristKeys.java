@@ -0,0 +1,95 @@
+package tmcintyre.boardgame.game;
+
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * The random keys from which a {@link Game}'s position key is built.
+ * 
+ * <p>
+ * There is one key for each combination of player, <code>PieceType</code> and
+ * square, and one for each player to move. The position key is the sum of the
+ * keys of everything in the position, so it can be kept up to date as pieces
+ * are added and removed, rather than recomputed from the whole board. Summing
+ * is used in place of the usual exclusive or because some games let identical
+ * pieces share a square, and their keys must not cancel each other out.
+ * 
+ * <p>
+ * The keys are generated from a fixed seed, so two games with the same number
+ * of players and squares always use the same keys, and their position keys can
+ * be stored and compared between runs.
+ * 
+ * @author Tom McIntyre
+ * @see AbstractGame#getPositionKey
+ * 
+ */
+public final class ZobristKeys {
+
+  private static final long SEED = 0x2545f4914f6cdd1dL;
+  private static final int TYPES = PieceType.values().length;
+
+  private final int squares;
+  private final long[] pieceKeys;
+  private final long[] playerKeys;
+
+  /**
+   * Creates the keys for a game with the given number of players and squares.
+   * 
+   * @param players
+   * @param squares
+   */
+  public ZobristKeys(int players, int squares) {
+    this.squares = squares;
+    pieceKeys = randomKeys(players * TYPES * squares, 0);
+    playerKeys = randomKeys(players, 1);
+  }
+
+  /**
+   * Returns the key for a piece of the given player and type on the given
+   * square.
+   * 
+   * @param player
+   *          the index of the player
+   * @param type
+   * @param square
+   *          the square, numbered <code>row * boardWidth + col</code>
+   * @return the key for the piece
+   */
+  public long piece(int player, PieceType type, int square) {
+    return pieceKeys[(player * TYPES + type.ordinal()) * squares + square];
+  }
+
+  /**
+   * Returns the key for the given player being the one to move.
+   * 
+   * @param player
+   *          the index of the player
+   * @return the key for the player to move
+   */
+  public long player(int player) {
+    return playerKeys[player];
+  }
+
+  /**
+   * Returns an array of random keys, for games to describe state other than
+   * the pieces and the player to move. Each stream number gives a different,
+   * fixed sequence of keys; streams 0 and 1 are used by this class.
+   * 
+   * @param count
+   *          the number of keys
+   * @param stream
+   * @return the keys
+   */
+  public static long[] randomKeys(int count, int stream) {
+    long[] keys = new long[count];
+    // SplitMix64, which gives well mixed keys from any starting state
+    long state = SEED + stream * 0x632be59bd9b4e019L;
+    for (int i = 0; i < count; i++) {
+      long z = state += 0x9e3779b97f4a7c15L;
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      keys[i] = z ^ (z >>> 31);
+    }
+    return keys;
+  }
+
+}
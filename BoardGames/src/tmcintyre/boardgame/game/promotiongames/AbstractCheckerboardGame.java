@@ -65,13 +65,13 @@ public abstract class AbstractCheckerboardGame extends AbstractPromotionGame {
   @Override
   public void doMove(Move move, boolean isDummy) {
     super.doMove(move, isDummy);
-    if (!isDummy) currentPlayer.updateLegalMoves();
+    if (!isDummy) updateLegalMoves(currentPlayer);
   }
 
   @Override
   public void undoMove(boolean isDummy) {
     super.undoMove(isDummy);
-    if (!isDummy) currentPlayer.updateLegalMoves();
+    if (!isDummy) updateLegalMoves(currentPlayer);
   }
 
   @Override
@@ -34,6 +34,11 @@ public abstract class AbstractPromotionGame extends AbstractGame implements Prom
    * Overridden super method.
    * 
    * <p>
+   * If the <code>Move</code> carries a promotion type the promotion is done to
+   * that type straight away. Otherwise, for real moves, the observers are
+   * notified so that one of them can choose the promotion.
+   * 
+   * <p>
    * This way the promotion <code>Move</code> is added to the original
    * <code>Move</code> before the moves are processed by
    * <code>AbstractGame.doMove</code>. The result is that the promotion is
@@ -41,9 +46,13 @@ public abstract class AbstractPromotionGame extends AbstractGame implements Prom
    */
   @Override
   public void doMove(Move move, boolean dummy) {
-    if (!dummy && checkPromotion(move)) {
-      for (Observer o : observers) {
-        o.notifyOnPromotion(move);
+    if (checkPromotion(move)) {
+      if (move.getPromotionType() != null) {
+        doPromotion(move, move.getPromotionType());
+      } else if (!dummy) {
+        for (Observer o : observers) {
+          o.notifyOnPromotion(move);
+        }
       }
     }
     super.doMove(move, dummy);
@@ -67,11 +76,9 @@ public abstract class AbstractPromotionGame extends AbstractGame implements Prom
     int row = move.destRow();
     int col = move.destCol();
 
-    String moveName = pieceBeforePromotion.getColor().toString() + " "
-        + pieceBeforePromotion.getType() + " promoted to " + newType;
     Piece pieceAfterPromotion = newType.newInstance(this,pieceBeforePromotion.getPlayer());
 
-    Move promotionMove = new Move(pieceAfterPromotion, row, col, pieceBeforePromotion, moveName);
+    Move promotionMove = new Move(pieceAfterPromotion, row, col, pieceBeforePromotion);
     promotionMove.setDestroyMovingPieceOnUndo(true);
     move.setNextMove(promotionMove);
   }
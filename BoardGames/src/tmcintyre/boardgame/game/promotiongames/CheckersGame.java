@@ -2,6 +2,7 @@ package tmcintyre.boardgame.game.promotiongames;
 
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,12 +54,13 @@ public class CheckersGame extends AbstractCheckerboardGame {
    * 
    * <p>
    * The current player has won if the opponent player has no legal moves.
+   * These are kept for the opponent's turn.
    * 
    */
   @Override
   public boolean checkWinConditions() {
     updateCurrentPlayerToNext();
-    currentPlayer.updateLegalMoves();
+    updateLegalMoves(currentPlayer);
     boolean canMove = currentPlayer.getAllLegalMoves().size() != 0;
     updateCurrentPlayerToPrev();
     return !canMove;
@@ -88,9 +90,12 @@ public class CheckersGame extends AbstractCheckerboardGame {
     if (move.getCapturedPiece().getPlayer() == move.getMovingPiece().getPlayer()) return true;
 
     // Otherwise this piece can keep going as long
-    // as there are pieces that can be captured
-    move.getMovingPiece().updateLegalMoves();
-    return move.getMovingPiece().getLegalMoves().size() == 0;
+    // as there are pieces that can be captured. Its moves are generated
+    // behind its player's back, so the player must not trust those it keeps
+    Piece moving = move.getMovingPiece();
+    moving.updateLegalMoves();
+    moving.getPlayer().invalidateLegalMoves();
+    return moving.getLegalMoves().size() == 0;
   }
 
   @Override
@@ -122,6 +127,61 @@ public class CheckersGame extends AbstractCheckerboardGame {
     return rules;
   }
 
+  /**
+   * Returns a new, started game under the same rules and in the same position
+   * as this one, with its own players and pieces. Nothing is shared with this
+   * game, so the copy can be searched in another thread while this game is
+   * shown or played.
+   * 
+   * <p>
+   * The moves of this game are played again in the copy, so that a chain of
+   * captures part way through must be carried on in the copy just as here. The
+   * copy has no <code>Logger</code>.
+   * 
+   * @return a copy of this game
+   */
+  public CheckersGame copy() {
+    CheckersGame copy = new CheckersGame();
+    copy.rules = rules;
+    copy.setBoardDimensions(boardHeight, boardWidth);
+    List<Player> copyPlayers = new ArrayList<Player>();
+    for (Player player : players) {
+      copyPlayers.add(new Player(player.getColor(), player.getName()));
+    }
+    copy.addPlayers(copyPlayers);
+    copy.setLoggingEnabled(false);
+    copy.start();
+
+    for (Move move : getMoveHistory()) {
+      Move copyMove = copy.findMove(move);
+      if (copyMove == null) throw new IllegalStateException("Cannot copy move " + move);
+      // The copy has no observer to choose the promotion
+      if (copy.checkPromotion(copyMove)) copyMove.setPromotionType(promotionOptions[0]);
+      copy.doMove(copyMove, false);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the legal <code>Move</code> of the player to move that goes
+   * between the same squares as the provided <code>Move</code>, which may be
+   * from another game, such as a copy of this one, or <code>null</code> if
+   * there is none.
+   * 
+   * @param move
+   * @return the matching <code>Move</code>
+   */
+  public Move findMove(Move move) {
+    updateLegalMoves(currentPlayer);
+    for (Move candidate : currentPlayer.getAllLegalMoves()) {
+      if (candidate.startRow() == move.startRow() && candidate.startCol() == move.startCol()
+          && candidate.destRow() == move.destRow() && candidate.destCol() == move.destCol()) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
   @Override
   public Map<String, String[]> getGameSpecificOptions() {
     return gameSpecificOptions;
@@ -0,0 +1,283 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+/**
+ * Precomputed attack tables for the pieces on a {@link ChessBoard}.
+ * 
+ * <p>
+ * Knight, king and pawn attacks depend only on the square the piece stands on
+ * and are looked up directly. Sliding attacks for bishops, rooks and queens
+ * are looked up in 'magic' tables: the occupied squares on the slider's
+ * relevant rays are multiplied by a per-square magic number, and the top bits
+ * of the product index a table holding the attack set for that occupancy. The
+ * magic numbers were found offline by trial of sparse random numbers; the
+ * tables are filled once, when the class is loaded.
+ * 
+ * <p>
+ * The <code>between</code> and <code>line</code> tables describe the geometry
+ * of pairs of squares, and are used to build the check evasion and pin masks
+ * in {@link LegalMoveMasks}.
+ * 
+ * <p>
+ * All squares use the <code>ChessBoard</code> numbering.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class ChessAttacks {
+
+  // Row and column steps for each ray direction. The first four directions
+  // increase the square index, the last four decrease it.
+  private static final int[] ROW_STEPS = { 0, 1, 1, 1, 0, -1, -1, -1 };
+  private static final int[] COL_STEPS = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+  private static final long[][] RAYS = new long[8][ChessBoard.SQUARES];
+  private static final long[] KNIGHT = new long[ChessBoard.SQUARES];
+  private static final long[] KING = new long[ChessBoard.SQUARES];
+  private static final long[][] PAWN = new long[2][ChessBoard.SQUARES];
+  private static final long[][] BETWEEN = new long[ChessBoard.SQUARES][ChessBoard.SQUARES];
+  private static final long[][] LINE = new long[ChessBoard.SQUARES][ChessBoard.SQUARES];
+
+  private static final int[] BISHOP_DIRECTIONS = { 1, 3, 5, 7 };
+  private static final int[] ROOK_DIRECTIONS = { 0, 2, 4, 6 };
+
+  private static final long[] BISHOP_MASKS = new long[ChessBoard.SQUARES];
+  private static final long[] BISHOP_MAGICS = {
+      0x48081010008A2A80L, 0x000948110C0B2081L, 0x0944140400500000L, 0x4984104A00000101L,
+      0x4004030818283008L, 0x0206012462000121L, 0x1A02013008040001L, 0x0001008044200440L,
+      0x0000312208080880L, 0x0220021002009900L, 0x8080880801082000L, 0x000C11040080102AL,
+      0x1402440421000210L, 0x0010120802080A81L, 0x0080084202104028L, 0x1100002082082082L,
+      0x0008403429080820L, 0x8104868204040412L, 0x6424084043060030L, 0x1108000420401000L,
+      0x9004101202020240L, 0x0032400608200412L, 0x0001009610822080L, 0x0008403429080820L,
+      0x0008068340104200L, 0x0010102858090121L, 0x81004C0018080313L, 0x4048080004820002L,
+      0x000900401C004049L, 0x0009420121C1101CL, 0x4828504005040211L, 0x4828504005040211L,
+      0x0041041381202000L, 0x01008C1005601680L, 0x01D010900002040AL, 0x4040020080080080L,
+      0x4801080200802200L, 0x4801080200802200L, 0x0010046108108080L, 0x90409090810A0220L,
+      0x8004020242201020L, 0x8004020242201020L, 0x0202010028020480L, 0x0000041144000801L,
+      0x00002000A4021080L, 0x0504090045040200L, 0x8182041102094400L, 0x0550008100480101L,
+      0xC002080404040400L, 0x0382004108292000L, 0x12000100A8040020L, 0xA005020442088020L,
+      0x2000001102020300L, 0x000021E0420C8808L, 0x3060200484888400L, 0x01280101021A0802L,
+      0x1030820110010500L, 0x0080012608025800L, 0x0002810084008800L, 0x800080000C208800L,
+      0xA408002140028204L, 0x0010006020322084L, 0x0210401044110050L, 0x40106000A1160020L };
+  private static final int[] BISHOP_SHIFTS = new int[ChessBoard.SQUARES];
+  private static final long[][] BISHOP_TABLE = new long[ChessBoard.SQUARES][];
+
+  private static final long[] ROOK_MASKS = new long[ChessBoard.SQUARES];
+  private static final long[] ROOK_MAGICS = {
+      0x0480046281400010L, 0x80C0200010004000L, 0x8780200008300180L, 0x8880060800100080L,
+      0x2100030010080084L, 0x0100040001000802L, 0x0200040800810200L, 0x0580008002407100L,
+      0x1000800080400020L, 0x0080401000402001L, 0x800C802002100880L, 0x800A002200884010L,
+      0x2046002008108600L, 0x0222009002000804L, 0x100B000421001200L, 0x0240800100004080L,
+      0x4540008020408006L, 0x8010054020084002L, 0x7D10010100200040L, 0x1408008010000882L,
+      0x4408010005000810L, 0x001E008004000280L, 0x0230040001080210L, 0x0000020004004081L,
+      0x0100400080208001L, 0x1000842300400100L, 0x1060100080200082L, 0x3219004B00100020L,
+      0x9010080080800400L, 0x8440020080800400L, 0x6008010080800200L, 0x4123008200010044L,
+      0x0280002001400240L, 0x0220100040400020L, 0x0060801003802008L, 0x0008100080800800L,
+      0x0105000801001004L, 0x100B000803000400L, 0x0000024814001021L, 0x00408000C2802100L,
+      0x4C40004020808002L, 0x4410500420024000L, 0x00C0100020008080L, 0x0000100008008080L,
+      0x8002000804220011L, 0x0802000804010100L, 0x0243100201040008L, 0x0000009100420014L,
+      0x1000400280022480L, 0x0020200040100040L, 0x00A000100800C140L, 0x0410001408008080L,
+      0x0000080004008080L, 0x0100020004008080L, 0x0303000200040300L, 0x1480006104008200L,
+      0x00008002204A1101L, 0x1040090010224081L, 0x4300C0200011000DL, 0x8002041001002009L,
+      0x2005000800020411L, 0x110A008408100102L, 0x0006000108008402L, 0x0200002900884402L };
+  private static final int[] ROOK_SHIFTS = new int[ChessBoard.SQUARES];
+  private static final long[][] ROOK_TABLE = new long[ChessBoard.SQUARES][];
+
+  static {
+    int[][] knightSteps = { { 2, 1 }, { 2, -1 }, { 1, 2 }, { 1, -2 }, { -1, 2 }, { -1, -2 },
+        { -2, 1 }, { -2, -1 } };
+
+    for (int sq = 0; sq < ChessBoard.SQUARES; sq++) {
+      int row = ChessBoard.row(sq);
+      int col = ChessBoard.col(sq);
+
+      for (int[] step : knightSteps) {
+        KNIGHT[sq] |= bitIfOnBoard(row + step[0], col + step[1]);
+      }
+      for (int dir = 0; dir < 8; dir++) {
+        KING[sq] |= bitIfOnBoard(row + ROW_STEPS[dir], col + COL_STEPS[dir]);
+        int r = row + ROW_STEPS[dir];
+        int c = col + COL_STEPS[dir];
+        while (ChessBoard.onBoard(r, c)) {
+          RAYS[dir][sq] |= ChessBoard.bit(r, c);
+          r += ROW_STEPS[dir];
+          c += COL_STEPS[dir];
+        }
+      }
+      // White pawns move up the board (decreasing row), black pawns down.
+      PAWN[ChessBoard.WHITE][sq] = bitIfOnBoard(row - 1, col - 1) | bitIfOnBoard(row - 1, col + 1);
+      PAWN[ChessBoard.BLACK][sq] = bitIfOnBoard(row + 1, col - 1) | bitIfOnBoard(row + 1, col + 1);
+    }
+
+    for (int from = 0; from < ChessBoard.SQUARES; from++) {
+      for (int dir = 0; dir < 8; dir++) {
+        long ray = RAYS[dir][from];
+        long fullLine = ray | RAYS[(dir + 4) & 7][from] | (1L << from);
+        while (ray != 0) {
+          int to = Long.numberOfTrailingZeros(ray);
+          ray &= ray - 1;
+          BETWEEN[from][to] = RAYS[dir][from] & RAYS[(dir + 4) & 7][to];
+          LINE[from][to] = fullLine;
+        }
+      }
+    }
+
+    initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+    initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+  }
+
+  private ChessAttacks() {
+  }
+
+  private static long bitIfOnBoard(int row, int col) {
+    return ChessBoard.onBoard(row, col) ? ChessBoard.bit(row, col) : 0L;
+  }
+
+  private static long slide(int square, long occupied, int dir) {
+    long ray = RAYS[dir][square];
+    long blockers = ray & occupied;
+    if (blockers == 0) return ray;
+    int first = dir < 4 ? Long.numberOfTrailingZeros(blockers)
+        : 63 - Long.numberOfLeadingZeros(blockers);
+    return ray ^ RAYS[dir][first];
+  }
+
+  /**
+   * Fills the attack table of each square.
+   * 
+   * <p>
+   * The relevant occupancy mask of a square is its rays without their final
+   * squares, since a piece on the edge of the board blocks nothing further.
+   * Every subset of the mask is enumerated and its attack set stored at the
+   * index given by the square's magic number.
+   */
+  private static void initMagics(int[] directions, long[] masks, long[] magics, int[] shifts,
+      long[][] table) {
+    for (int sq = 0; sq < ChessBoard.SQUARES; sq++) {
+      long mask = 0;
+      for (int dir : directions) {
+        long ray = RAYS[dir][sq];
+        if (ray == 0) continue;
+        int last = dir < 4 ? 63 - Long.numberOfLeadingZeros(ray)
+            : Long.numberOfTrailingZeros(ray);
+        mask |= ray & ~(1L << last);
+      }
+      int bits = Long.bitCount(mask);
+      masks[sq] = mask;
+      shifts[sq] = 64 - bits;
+      table[sq] = new long[1 << bits];
+
+      long subset = 0;
+      do {
+        long attacks = 0;
+        for (int dir : directions) {
+          attacks |= slide(sq, subset, dir);
+        }
+        int index = (int) ((subset * magics[sq]) >>> shifts[sq]);
+        if (table[sq][index] != 0 && table[sq][index] != attacks) {
+          throw new AssertionError("Bad magic number for square " + sq);
+        }
+        table[sq][index] = attacks;
+        subset = (subset - mask) & mask;
+      } while (subset != 0);
+    }
+  }
+
+  /**
+   * Returns the squares attacked by a knight on the given square.
+   * 
+   * @param square
+   * @return the squares attacked by a knight on the given square
+   */
+  public static long knightAttacks(int square) {
+    return KNIGHT[square];
+  }
+
+  /**
+   * Returns the squares attacked by a king on the given square.
+   * 
+   * @param square
+   * @return the squares attacked by a king on the given square
+   */
+  public static long kingAttacks(int square) {
+    return KING[square];
+  }
+
+  /**
+   * Returns the squares attacked by a pawn of the given side standing on the
+   * given square.
+   * 
+   * @param side
+   * @param square
+   * @return the squares attacked by a pawn of the given side
+   */
+  public static long pawnAttacks(int side, int square) {
+    return PAWN[side][square];
+  }
+
+  /**
+   * Returns the squares attacked by a bishop on the given square, given the
+   * provided occupancy. The first occupied square in each direction is
+   * included.
+   * 
+   * @param square
+   * @param occupied
+   * @return the squares attacked by a bishop on the given square
+   */
+  public static long bishopAttacks(int square, long occupied) {
+    long relevant = occupied & BISHOP_MASKS[square];
+    int index = (int) ((relevant * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+    return BISHOP_TABLE[square][index];
+  }
+
+  /**
+   * Returns the squares attacked by a rook on the given square, given the
+   * provided occupancy. The first occupied square in each direction is
+   * included.
+   * 
+   * @param square
+   * @param occupied
+   * @return the squares attacked by a rook on the given square
+   */
+  public static long rookAttacks(int square, long occupied) {
+    long relevant = occupied & ROOK_MASKS[square];
+    int index = (int) ((relevant * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+    return ROOK_TABLE[square][index];
+  }
+
+  /**
+   * Returns the squares attacked by a queen on the given square, given the
+   * provided occupancy.
+   * 
+   * @param square
+   * @param occupied
+   * @return the squares attacked by a queen on the given square
+   */
+  public static long queenAttacks(int square, long occupied) {
+    return bishopAttacks(square, occupied) | rookAttacks(square, occupied);
+  }
+
+  /**
+   * Returns the squares strictly between two squares that share a row,
+   * column or diagonal, or 0 if they do not.
+   * 
+   * @param from
+   * @param to
+   * @return the squares strictly between the two squares
+   */
+  public static long between(int from, int to) {
+    return BETWEEN[from][to];
+  }
+
+  /**
+   * Returns the whole row, column or diagonal passing through two squares, or
+   * 0 if they do not share one.
+   * 
+   * @param from
+   * @param to
+   * @return the line through both squares
+   */
+  public static long line(int from, int to) {
+    return LINE[from][to];
+  }
+
+}
@@ -0,0 +1,278 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * A bitboard representation of the pieces on a chess board.
+ * 
+ * <p>
+ * Each square of the 8x8 board is mapped to one bit of a <code>long</code>,
+ * with square index <code>row * 8 + col</code>. So row 0 (the black back rank)
+ * occupies bits 0 to 7, and row 7 (the white back rank) occupies bits 56 to 63.
+ * One <code>long</code> is kept for each combination of side and piece type,
+ * together with an occupancy mask for each side and for the whole board. A
+ * 64-element array of <code>Piece</code>s (the 'mailbox') gives constant-time
+ * access to the <code>Piece</code> on any square.
+ * 
+ * <p>
+ * A <code>ChessBoard</code> is owned and kept up to date by its
+ * {@link ChessGame}; it is exposed so that pieces and other chess-specific
+ * code can answer questions about the board with a few bitwise operations
+ * rather than by walking the lists of pieces on each square.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class ChessBoard {
+
+  public static final int WHITE = 0;
+  public static final int BLACK = 1;
+
+  public static final int PAWN = 0;
+  public static final int KNIGHT = 1;
+  public static final int BISHOP = 2;
+  public static final int ROOK = 3;
+  public static final int QUEEN = 4;
+  public static final int KING = 5;
+
+  public static final int SIZE = 8;
+  public static final int SQUARES = SIZE * SIZE;
+
+  private static final PieceType[] TYPES = { PieceType.PAWN, PieceType.KNIGHT, PieceType.BISHOP,
+      PieceType.ROOK, PieceType.QUEEN, PieceType.KING };
+
+  private final long[][] pieces = new long[2][6];
+  private final long[] sides = new long[2];
+  private long occupied;
+
+  private final Piece[] mailbox = new Piece[SQUARES];
+
+  private int modCount;
+
+  /**
+   * Returns the index of the square at the specified position.
+   * 
+   * @param row
+   * @param col
+   * @return the index of the square at the specified position
+   */
+  public static int square(int row, int col) {
+    return (row << 3) | col;
+  }
+
+  /**
+   * Returns the row of the square with the specified index.
+   * 
+   * @param square
+   * @return the row of the square
+   */
+  public static int row(int square) {
+    return square >>> 3;
+  }
+
+  /**
+   * Returns the column of the square with the specified index.
+   * 
+   * @param square
+   * @return the column of the square
+   */
+  public static int col(int square) {
+    return square & 7;
+  }
+
+  /**
+   * Returns a <code>long</code> with only the bit for the specified position
+   * set.
+   * 
+   * @param row
+   * @param col
+   * @return the bit for the specified position
+   */
+  public static long bit(int row, int col) {
+    return 1L << square(row, col);
+  }
+
+  /**
+   * Returns <tt>true</tt> if the specified position lies on the board.
+   * 
+   * @param row
+   * @param col
+   * @return <tt>true</tt> if the specified position lies on the board
+   */
+  public static boolean onBoard(int row, int col) {
+    return row >= 0 && row < SIZE && col >= 0 && col < SIZE;
+  }
+
+  /**
+   * Returns the bitboard type index (<code>PAWN</code> to <code>KING</code>)
+   * for the provided <code>PieceType</code>.
+   * 
+   * @param type
+   * @return the bitboard type index for the provided <code>PieceType</code>
+   * @throws IllegalArgumentException
+   *           if the <code>PieceType</code> is not a chess piece
+   */
+  public static int typeIndex(PieceType type) {
+    switch (type) {
+    case PAWN:
+      return PAWN;
+    case KNIGHT:
+      return KNIGHT;
+    case BISHOP:
+      return BISHOP;
+    case ROOK:
+      return ROOK;
+    case QUEEN:
+      return QUEEN;
+    case KING:
+      return KING;
+    default:
+      throw new IllegalArgumentException(type + " is not a chess piece");
+    }
+  }
+
+  /**
+   * Returns the <code>PieceType</code> for the provided bitboard type index.
+   * 
+   * @param type
+   *          one of the bitboard type indices, <code>PAWN</code> to
+   *          <code>KING</code>
+   * @return the <code>PieceType</code> for the type index
+   */
+  public static PieceType pieceType(int type) {
+    return TYPES[type];
+  }
+
+  /**
+   * Places the <code>Piece</code> on the specified square.
+   * 
+   * @param square
+   * @param side
+   *          <code>WHITE</code> or <code>BLACK</code>
+   * @param piece
+   * @throws IllegalStateException
+   *           if the square is already occupied
+   */
+  public void put(int square, int side, Piece piece) {
+    if (mailbox[square] != null) {
+      throw new IllegalStateException("Square " + square + " is already occupied");
+    }
+    long bit = 1L << square;
+    pieces[side][typeIndex(piece.getType())] |= bit;
+    sides[side] |= bit;
+    occupied |= bit;
+    mailbox[square] = piece;
+    modCount++;
+  }
+
+  /**
+   * Removes whichever <code>Piece</code> occupies the specified square.
+   * 
+   * @param square
+   * @param side
+   *          the side of the <code>Piece</code> being removed
+   */
+  public void remove(int square, int side) {
+    Piece piece = mailbox[square];
+    if (piece == null) return;
+    long bit = ~(1L << square);
+    pieces[side][typeIndex(piece.getType())] &= bit;
+    sides[side] &= bit;
+    occupied &= bit;
+    mailbox[square] = null;
+    modCount++;
+  }
+
+  /**
+   * Returns the <code>Piece</code> on the specified square, or
+   * <code>null</code> if the square is empty.
+   * 
+   * @param square
+   * @return the <code>Piece</code> on the specified square, if any
+   */
+  public Piece pieceAt(int square) {
+    return mailbox[square];
+  }
+
+  /**
+   * Returns the bitboard of the pieces of the given side and type.
+   * 
+   * @param side
+   * @param type
+   *          one of the bitboard type indices, <code>PAWN</code> to
+   *          <code>KING</code>
+   * @return the bitboard of the pieces of the given side and type
+   */
+  public long getPieces(int side, int type) {
+    return pieces[side][type];
+  }
+
+  /**
+   * Returns the bitboard of all the squares occupied by the given side.
+   * 
+   * @param side
+   * @return the bitboard of all the squares occupied by the given side
+   */
+  public long getOccupancy(int side) {
+    return sides[side];
+  }
+
+  /**
+   * Returns the bitboard of all the occupied squares.
+   * 
+   * @return the bitboard of all the occupied squares
+   */
+  public long getOccupied() {
+    return occupied;
+  }
+
+  /**
+   * Returns the bitboard of the pieces of the given side that attack the
+   * specified square, with sliding attacks blocked by the provided occupancy.
+   * 
+   * <p>
+   * The occupancy is a parameter so that callers can ask what would be
+   * attacked once pieces have moved, for example with the king lifted off its
+   * square when testing where it may go.
+   * 
+   * @param square
+   * @param side
+   *          the attacking side
+   * @param occupied
+   * @return the bitboard of the attacking pieces
+   */
+  public long attackersTo(int square, int side, long occupied) {
+    long[] own = pieces[side];
+    long diagonal = own[BISHOP] | own[QUEEN];
+    long straight = own[ROOK] | own[QUEEN];
+    return (ChessAttacks.pawnAttacks(side ^ 1, square) & own[PAWN])
+        | (ChessAttacks.knightAttacks(square) & own[KNIGHT])
+        | (ChessAttacks.kingAttacks(square) & own[KING])
+        | (diagonal != 0 ? ChessAttacks.bishopAttacks(square, occupied) & diagonal : 0)
+        | (straight != 0 ? ChessAttacks.rookAttacks(square, occupied) & straight : 0);
+  }
+
+  /**
+   * Returns the square of the given side's king, or -1 if it has none.
+   * 
+   * @param side
+   * @return the square of the given side's king
+   */
+  public int kingSquare(int side) {
+    long king = pieces[side][KING];
+    return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+  }
+
+  /**
+   * Returns a counter that is incremented every time a piece is put on or
+   * removed from the board. Callers can use this to tell whether anything they
+   * derived from the board is still up to date.
+   * 
+   * @return the modification count of this board
+   */
+  public int getModCount() {
+    return modCount;
+  }
+
+}
@@ -1,7 +1,15 @@
 package tmcintyre.boardgame.game.promotiongames;
 
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import tmcintyre.boardgame.game.GameType;
 import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.ZobristKeys;
+import tmcintyre.boardgame.pieces.Piece;
 import tmcintyre.boardgame.pieces.PieceType;
 import tmcintyre.boardgame.pieces.chess.Bishop;
 import tmcintyre.boardgame.pieces.chess.King;
@@ -14,19 +22,617 @@ import tmcintyre.boardgame.player.Player;
 /**
  * A chess game.
  * 
+ * <p>
+ * The position of the pieces is held in a {@link ChessBoard} rather than in
+ * the per-square lists of <code>AbstractGame</code>, so that pieces can test
+ * squares and look up their occupants in constant time. The
+ * <code>getPieceAt</code> and <code>getPiecesAt</code> methods are answered
+ * from the same board.
+ * 
+ * <p>
+ * The game also tracks the en passant square - the square skipped by a pawn
+ * that has just moved two squares - and keeps a {@link LegalMoveMasks} for
+ * each side, which the pieces use to filter their line-of-sight moves down to
+ * the legal ones. Whether a square is attacked, as for check and castling, is
+ * answered from the board with <code>isSquareAttacked</code> and
+ * <code>attackersOf</code>, without looking at any legal moves.
+ * 
+ * <p>
+ * Besides the <code>Move</code> objects of the <code>Game</code> API, the game
+ * can generate and play moves packed into <tt>int</tt>s (see
+ * {@link ChessMove}), which is how the engine and perft search it without
+ * creating objects. A packed move is played with <code>doPackedMove</code> and
+ * must be taken back with <code>undoPackedMove</code> before any
+ * <code>Move</code> is made or taken back. <code>toMove</code> turns a packed
+ * move into a <code>Move</code> when it is to be played for real.
+ * 
  * @author Tom McIntyre
  */
 public class ChessGame extends AbstractCheckerboardGame {
 
+  public static final int WHITE_KINGSIDE = 1;
+  public static final int WHITE_QUEENSIDE = 2;
+  public static final int BLACK_KINGSIDE = 4;
+  public static final int BLACK_QUEENSIDE = 8;
+
   private static final int CHESS_BOARD_SIZE = 8;
-  private static final PieceType[] promotionOptions = new PieceType[] { PieceType.PAWN,
-      PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN };
+  private static final long[] castlingKeys = ZobristKeys.randomKeys(16, 2);
+  private static final long[] enPassantKeys = ZobristKeys.randomKeys(CHESS_BOARD_SIZE, 3);
+  private static final PieceType[] promotionOptions = new PieceType[] { PieceType.KNIGHT,
+      PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN };
+
+  private final ChessBoard board = new ChessBoard();
+  private final LegalMoveMasks[] legalMoveMasks = new LegalMoveMasks[] {
+      new LegalMoveMasks(board, ChessBoard.WHITE), new LegalMoveMasks(board, ChessBoard.BLACK) };
+
+  private int enPassantSquare = -1;
+  // Set while a move is being done, when the state key is out of the position key
+  private boolean moving;
+  private int halfmoveClock;
+  private int fullmoveNumber = 1;
+
+  private Fen startingPosition;
+  private ChessGame copySource;
+
+  // What each packed move still on the board took, to be put back on undo
+  private int packedDepth;
+  private Piece[] packedMoving = new Piece[64];
+  private Piece[] packedCaptured = new Piece[64];
+  private int[] packedState = new int[64];
+  // Promoted pieces are reused by later promotions at the same depth
+  private Piece[][][] promotedPieces = new Piece[2][64][];
 
   public ChessGame() {
     super(GameType.CHESS);
     setBoardDimensions(CHESS_BOARD_SIZE, CHESS_BOARD_SIZE);
   }
 
+  /**
+   * Creates and starts a game between two new players, set up from the
+   * provided FEN record. No <code>Logger</code> is attached, so the game can
+   * be driven headlessly through <code>doMove</code> and <code>undoMove</code>.
+   * 
+   * @param fen
+   * @return the started game
+   * @throws IllegalArgumentException
+   *           if the record is not valid FEN
+   */
+  public static ChessGame fromFen(String fen) {
+    return fromFen(Fen.parse(fen));
+  }
+
+  /**
+   * Creates and starts a game between two new players, set up from the
+   * provided position.
+   * 
+   * @param fen
+   * @return the started game
+   * @see #fromFen(String)
+   */
+  public static ChessGame fromFen(Fen fen) {
+    ChessGame game = new ChessGame();
+    game.addPlayers(Arrays.asList(new Player(Color.WHITE, "White"), new Player(Color.BLACK,
+        "Black")));
+    game.setStartingPosition(fen);
+    game.setLoggingEnabled(false);
+    game.start();
+    return game;
+  }
+
+  /**
+   * Returns a new, started game in the same position as this one, with its
+   * own players and pieces. Nothing is shared with this game, so the copy can
+   * be searched in another thread while this game is searched or played.
+   * 
+   * <p>
+   * The copy has the same position key and generates the same legal moves as
+   * this game, but has no move history, and no <code>Logger</code>.
+   * 
+   * @return a copy of this game
+   */
+  public ChessGame copy() {
+    ChessGame copy = new ChessGame();
+    List<Player> copyPlayers = new ArrayList<Player>();
+    for (Player player : players) {
+      copyPlayers.add(new Player(player.getColor(), player.getName()));
+    }
+    copy.addPlayers(copyPlayers);
+    copy.copySource = this;
+    copy.enPassantSquare = enPassantSquare;
+    copy.halfmoveClock = halfmoveClock;
+    copy.fullmoveNumber = fullmoveNumber;
+    copy.setLoggingEnabled(false);
+    copy.start();
+    copy.copySource = null;
+    copy.startingPosition = getFen();
+    return copy;
+  }
+
+  /**
+   * Sets the position the game starts from, in place of the usual starting
+   * position. Must be called before <code>start</code>.
+   * 
+   * <p>
+   * Move counts are given to the pieces so that castling and en passant work as
+   * described by the FEN record: pawns off their starting row have moved, and
+   * kings and rooks have moved unless they keep a castling right.
+   * 
+   * @param fen
+   */
+  public void setStartingPosition(Fen fen) {
+    startingPosition = fen;
+    enPassantSquare = fen.getEnPassantSquare();
+    halfmoveClock = fen.getHalfmoveClock();
+    fullmoveNumber = fen.getFullmoveNumber();
+  }
+
+  /**
+   * Returns the position the game started from, which for a copy is the
+   * position of the game it was copied from.
+   * 
+   * @return the starting position
+   */
+  public Fen getStartingPosition() {
+    return startingPosition != null ? startingPosition : Fen.parse(Fen.START_POSITION);
+  }
+
+  /**
+   * Returns the current position as a FEN record. Together with
+   * <code>setStartingPosition</code> this lets a position be saved and set up
+   * again without replaying the moves that led to it.
+   * 
+   * <p>
+   * The en passant square is given after every pawn move of two squares,
+   * whether or not a pawn is there to capture.
+   * 
+   * @return the current position
+   */
+  public Fen getFen() {
+    char[] squares = new char[ChessBoard.SQUARES];
+    for (int square = 0; square < ChessBoard.SQUARES; square++) {
+      Piece piece = board.pieceAt(square);
+      if (piece == null) continue;
+      char letter = Fen.pieceLetter(piece.getType());
+      squares[square] = getSide(piece) == ChessBoard.WHITE ? letter : Character
+          .toLowerCase(letter);
+    }
+    return new Fen(squares, getSide(currentPlayer) == ChessBoard.WHITE, getCastlingRights(),
+        enPassantSquare, halfmoveClock, fullmoveNumber);
+  }
+
+  @Override
+  public void addPieceAt(int row, int col, Piece piece) {
+    if (piece == null) return;
+    int side = getSide(piece);
+    int from = ChessBoard.square(piece.getRow(), piece.getCol());
+    if (board.pieceAt(from) == piece) {
+      board.remove(from, side);
+      removeFromPositionKey(piece, piece.getRow(), piece.getCol());
+    }
+    board.put(ChessBoard.square(row, col), side, piece);
+    addToPositionKey(piece, row, col);
+
+    piece.setRow(row);
+    piece.setCol(col);
+  }
+
+  @Override
+  public void removePiece(Piece piece) {
+    if (piece == null) return;
+    piece.getPlayer().removePiece(piece);
+    int square = ChessBoard.square(piece.getRow(), piece.getCol());
+    if (board.pieceAt(square) == piece) {
+      board.remove(square, getSide(piece));
+      removeFromPositionKey(piece, piece.getRow(), piece.getCol());
+    }
+  }
+
+  @Override
+  public Piece getPieceAt(int row, int col) {
+    if (!ChessBoard.onBoard(row, col)) return null;
+    return board.pieceAt(ChessBoard.square(row, col));
+  }
+
+  @Override
+  public List<Piece> getPiecesAt(int row, int col) {
+    if (!ChessBoard.onBoard(row, col)) return null;
+    Piece piece = board.pieceAt(ChessBoard.square(row, col));
+    if (piece == null) return Collections.emptyList();
+    return Collections.singletonList(piece);
+  }
+
+  @Override
+  public void doMove(Move move, boolean isDummy) {
+    super.doMove(move, isDummy);
+    addToPositionKey(getStateKey());
+    moving = false;
+  }
+
+  @Override
+  protected void startMove(Move move) {
+    // The en passant square must be up to date before the legal moves for the
+    // next turn are generated as part of the move.
+    removeFromPositionKey(getStateKey());
+    moving = true;
+    enPassantSquare = -1;
+    if (move.getMovingPiece().getType() == PieceType.PAWN
+        && Math.abs(move.destRow() - move.startRow()) == 2) {
+      enPassantSquare = ChessBoard.square((move.startRow() + move.destRow()) / 2, move.startCol());
+    }
+    countMove(move.getMovingPiece().getType() == PieceType.PAWN
+        || move.getCapturedPiece() != null);
+  }
+
+  /**
+   * Advances the move counters for a move by the player to move.
+   * 
+   * @param resetsClock
+   *          <tt>true</tt> for a pawn move or a capture, after which the
+   *          halfmove clock starts again
+   */
+  private void countMove(boolean resetsClock) {
+    halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+    if (getSide(currentPlayer) == ChessBoard.BLACK) fullmoveNumber++;
+  }
+
+  /**
+   * The state key is left out of the position key while a move is being done,
+   * and only added back once the castling rights after the move are known.
+   */
+  @Override
+  protected long getLegalMovesKey() {
+    return moving ? getPositionKey() + getStateKey() : getPositionKey();
+  }
+
+  /**
+   * Saves the en passant square and the halfmove clock. The castling rights
+   * need not be saved, as they follow from the move counts of the kings and
+   * rooks, which the pieces put back themselves. The fullmove number goes back
+   * by one when a move of black's is taken back.
+   */
+  @Override
+  protected int saveUndoState() {
+    return halfmoveClock << 7 | enPassantSquare + 1;
+  }
+
+  @Override
+  protected void restoreUndoState(int state) {
+    enPassantSquare = (state & 127) - 1;
+    halfmoveClock = state >>> 7;
+    if (getSide(currentPlayer) == ChessBoard.BLACK) fullmoveNumber--;
+  }
+
+  /**
+   * Writes the legal moves of the player to move into the provided array, as
+   * packed <code>ChessMove</code>s.
+   * 
+   * @param moves
+   *          an array of at least <code>ChessMove.MAX_MOVES</code> elements
+   * @return the number of moves written
+   */
+  public int generateMoves(int[] moves) {
+    return ChessMoveGenerator.generate(this, getSide(currentPlayer), moves);
+  }
+
+  /**
+   * Plays a packed move, which must be legal in the current position. No
+   * <code>Move</code> is created, no observers are notified and the move is
+   * not added to the move history.
+   * 
+   * @param move
+   *          a packed <code>ChessMove</code>
+   */
+  public void doPackedMove(int move) {
+    ensurePackedCapacity();
+    int from = ChessMove.from(move);
+    int to = ChessMove.to(move);
+    int side = getSide(currentPlayer);
+
+    removeFromPositionKey(getStateKey());
+    packedState[packedDepth] = saveUndoState();
+
+    Piece captured = null;
+    if (ChessMove.isCapture(move)) {
+      captured = board.pieceAt(ChessMove.capturedSquare(move));
+      removePiece(captured);
+    }
+    packedCaptured[packedDepth] = captured;
+
+    Piece moving = board.pieceAt(from);
+    packedMoving[packedDepth] = moving;
+    addPieceAt(ChessBoard.row(to), ChessBoard.col(to), moving);
+    addToMoveCount(moving, 1);
+
+    if (ChessMove.isCastling(move)) {
+      int row = ChessBoard.row(from);
+      Piece rook = board.pieceAt(ChessBoard.square(row, to > from ? boardWidth - 1 : 0));
+      addPieceAt(row, (from + to) / 2 % ChessBoard.SIZE, rook);
+      addToMoveCount(rook, 1);
+    }
+
+    if (ChessMove.isPromotion(move)) {
+      Piece promoted = promotedPiece(side, ChessMove.promotion(move));
+      removePiece(moving);
+      addPieceAt(ChessBoard.row(to), ChessBoard.col(to), promoted);
+    }
+
+    enPassantSquare = ChessMove.isDoublePush(move) ? (from + to) / 2 : -1;
+    countMove(ChessMove.piece(move) == ChessBoard.PAWN || ChessMove.isCapture(move));
+    packedDepth++;
+    updateCurrentPlayerToNext();
+    addToPositionKey(getStateKey());
+  }
+
+  /**
+   * Takes back the packed move played last.
+   * 
+   * @param move
+   *          the packed <code>ChessMove</code> last played with
+   *          <code>doPackedMove</code>
+   */
+  public void undoPackedMove(int move) {
+    removeFromPositionKey(getStateKey());
+    updateCurrentPlayerToPrev();
+    packedDepth--;
+    int from = ChessMove.from(move);
+    int to = ChessMove.to(move);
+
+    Piece moving = packedMoving[packedDepth];
+    if (ChessMove.isPromotion(move)) {
+      removePiece(board.pieceAt(to));
+      moving.getPlayer().addPiece(moving);
+    }
+    addPieceAt(ChessBoard.row(from), ChessBoard.col(from), moving);
+    addToMoveCount(moving, -1);
+
+    if (ChessMove.isCastling(move)) {
+      int row = ChessBoard.row(from);
+      Piece rook = board.pieceAt(ChessBoard.square(row, (from + to) / 2 % ChessBoard.SIZE));
+      addPieceAt(row, to > from ? boardWidth - 1 : 0, rook);
+      addToMoveCount(rook, -1);
+    }
+
+    Piece captured = packedCaptured[packedDepth];
+    if (captured != null) {
+      captured.getPlayer().addPiece(captured);
+      addPieceAt(captured.getRow(), captured.getCol(), captured);
+      packedCaptured[packedDepth] = null;
+    }
+
+    restoreUndoState(packedState[packedDepth]);
+    addToPositionKey(getStateKey());
+  }
+
+  /**
+   * Returns the legal <code>Move</code> of the player to move matching the
+   * provided packed move, to be played with <code>doMove</code>, or
+   * <code>null</code> if there is none.
+   * 
+   * @param move
+   *          a packed <code>ChessMove</code>
+   * @return the matching <code>Move</code>
+   */
+  public Move toMove(int move) {
+    int from = ChessMove.from(move);
+    int to = ChessMove.to(move);
+    PieceType promotion = ChessMove.isPromotion(move) ? ChessBoard.pieceType(ChessMove
+        .promotion(move)) : null;
+    updateLegalMoves(currentPlayer);
+    for (Move candidate : currentPlayer.getAllLegalMoves()) {
+      if (ChessBoard.square(candidate.startRow(), candidate.startCol()) == from
+          && ChessBoard.square(candidate.destRow(), candidate.destCol()) == to
+          && candidate.getPromotionType() == promotion) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the legal packed move of the player to move matching the provided
+   * <code>Move</code>, or 0 if there is none. A promotion matches the type the
+   * <code>Move</code> carries or, once played, the type it promoted to; a
+   * promotion whose type has not been chosen matches the promotion to a queen.
+   * 
+   * @param move
+   * @return the matching packed <code>ChessMove</code>
+   * @see #toMove(int)
+   */
+  public int packMove(Move move) {
+    int from = ChessBoard.square(move.startRow(), move.startCol());
+    int to = ChessBoard.square(move.destRow(), move.destCol());
+    PieceType promotionType = move.getPromotionType();
+    if (promotionType == null && move.getNextMove() != null
+        && move.getNextMove().destroyMovingPieceOnUndo()) {
+      // Promoted to the type chosen when the move was played
+      promotionType = move.getNextMove().getMovingPiece().getType();
+    }
+    int promotion = promotionType != null ? ChessBoard.typeIndex(promotionType)
+        : ChessBoard.QUEEN;
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    int count = generateMoves(moves);
+    for (int i = 0; i < count; i++) {
+      int candidate = moves[i];
+      if (ChessMove.from(candidate) == from && ChessMove.to(candidate) == to
+          && (!ChessMove.isPromotion(candidate) || ChessMove.promotion(candidate) == promotion)) {
+        return candidate;
+      }
+    }
+    return 0;
+  }
+
+  private void ensurePackedCapacity() {
+    if (packedDepth < packedMoving.length) return;
+    int length = packedMoving.length * 2;
+    packedMoving = Arrays.copyOf(packedMoving, length);
+    packedCaptured = Arrays.copyOf(packedCaptured, length);
+    packedState = Arrays.copyOf(packedState, length);
+    for (int side = 0; side < promotedPieces.length; side++) {
+      promotedPieces[side] = Arrays.copyOf(promotedPieces[side], length);
+    }
+  }
+
+  private Piece promotedPiece(int side, int type) {
+    Piece[] pieces = promotedPieces[side][packedDepth];
+    if (pieces == null) {
+      pieces = new Piece[ChessBoard.KING];
+      promotedPieces[side][packedDepth] = pieces;
+    }
+    Player player = players.get(side);
+    if (pieces[type] == null) {
+      // A new piece adds itself to its player's pieces
+      pieces[type] = ChessBoard.pieceType(type).newInstance(this, player);
+    } else {
+      player.addPiece(pieces[type]);
+    }
+    return pieces[type];
+  }
+
+  private static void addToMoveCount(Piece piece, int count) {
+    switch (piece.getType()) {
+    case PAWN:
+      ((Pawn) piece).setMoveCount(((Pawn) piece).getMoveCount() + count);
+      break;
+    case KING:
+      ((King) piece).setMoveCount(((King) piece).getMoveCount() + count);
+      break;
+    case ROOK:
+      ((Rook) piece).setMoveCount(((Rook) piece).getMoveCount() + count);
+      break;
+    default:
+      break;
+    }
+  }
+
+  /**
+   * Returns the part of the position key for the castling rights and the en
+   * passant square, which the pieces and the player to move do not show. The en
+   * passant file only counts when a pawn is there to capture, so that the same
+   * position reached with and without a double pawn push has the same key.
+   */
+  private long getStateKey() {
+    long key = castlingKeys[getCastlingRights()];
+    if (enPassantSquare >= 0) {
+      int side = getSide(currentPlayer);
+      if ((ChessAttacks.pawnAttacks(side ^ 1, enPassantSquare)
+          & board.getPieces(side, ChessBoard.PAWN)) != 0) {
+        key += enPassantKeys[ChessBoard.col(enPassantSquare)];
+      }
+    }
+    return key;
+  }
+
+  /**
+   * Returns the square a pawn may move to when capturing en passant, or -1 if
+   * no en passant capture is available. This is the square skipped by a pawn
+   * that moved two squares in the last move.
+   * 
+   * @return the en passant square, or -1 if there is none
+   */
+  public int getEnPassantSquare() {
+    return enPassantSquare;
+  }
+
+  /**
+   * Returns the <code>LegalMoveMasks</code> for the given side, brought up to
+   * date with the current position.
+   * 
+   * @param side
+   *          <code>ChessBoard.WHITE</code> or <code>ChessBoard.BLACK</code>
+   * @return the <code>LegalMoveMasks</code> for the given side
+   */
+  public LegalMoveMasks getLegalMoveMasks(int side) {
+    LegalMoveMasks masks = legalMoveMasks[side];
+    masks.refresh();
+    return masks;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided <code>Player</code>'s king is in
+   * check.
+   * 
+   * @param player
+   * @return <tt>true</tt> if the provided <code>Player</code>'s king is in
+   *         check
+   */
+  public boolean isInCheck(Player player) {
+    int side = getSide(player);
+    int king = board.kingSquare(side);
+    return king >= 0 && isSquareAttacked(ChessBoard.row(king), ChessBoard.col(king), side ^ 1);
+  }
+
+  /**
+   * Returns <tt>true</tt> if any piece of the given side attacks the specified
+   * square, whether or not the square is empty and whether or not the
+   * attacking piece is pinned.
+   * 
+   * @param row
+   * @param col
+   * @param side
+   *          the attacking side, <code>ChessBoard.WHITE</code> or
+   *          <code>ChessBoard.BLACK</code>
+   * @return <tt>true</tt> if the square is attacked by the side
+   * @see #attackersOf(int, int, int)
+   */
+  public boolean isSquareAttacked(int row, int col, int side) {
+    return attackersOf(row, col, side) != 0;
+  }
+
+  /**
+   * Returns the bitboard of the pieces of the given side that attack the
+   * specified square, as <code>ChessBoard</code> square bits.
+   * 
+   * <p>
+   * The attackers are found by looking out from the square itself: a knight
+   * or king of the side stands a knight's or king's move away, a pawn stands
+   * where it would capture onto the square, and a slider stands at the end of
+   * a ray from the square of its kind. This takes constant time with the
+   * precomputed attack tables, and does not depend on any legal moves having
+   * been generated.
+   * 
+   * @param row
+   * @param col
+   * @param side
+   *          the attacking side, <code>ChessBoard.WHITE</code> or
+   *          <code>ChessBoard.BLACK</code>
+   * @return the bitboard of the attacking pieces
+   */
+  public long attackersOf(int row, int col, int side) {
+    return board.attackersTo(ChessBoard.square(row, col), side, board.getOccupied());
+  }
+
+  /**
+   * Returns the <code>ChessBoard</code> holding the current position.
+   * 
+   * @return the <code>ChessBoard</code> holding the current position
+   */
+  public ChessBoard getBoard() {
+    return board;
+  }
+
+  /**
+   * Returns the <code>ChessBoard</code> side (<code>WHITE</code> or
+   * <code>BLACK</code>) of the provided <code>Player</code>. White is always
+   * the first player in the game.
+   * 
+   * @param player
+   * @return the side of the provided <code>Player</code>
+   */
+  public int getSide(Player player) {
+    return player == players.get(0) ? ChessBoard.WHITE : ChessBoard.BLACK;
+  }
+
+  /**
+   * Returns the <code>ChessBoard</code> side (<code>WHITE</code> or
+   * <code>BLACK</code>) of the provided <code>Piece</code>.
+   * 
+   * @param piece
+   * @return the side of the provided <code>Piece</code>
+   */
+  public int getSide(Piece piece) {
+    return getSide(piece.getPlayer());
+  }
+
   @Override
   public boolean checkPromotion(Move move) {
     if (move.getMovingPiece().getType() != PieceType.PAWN) return false;
@@ -39,13 +645,14 @@ public class ChessGame extends AbstractCheckerboardGame {
    * 
    * <p>
    * The current player has won if the opponent player has no legal moves.
+   * These are kept for the opponent's turn.
    * 
    */
   @Override
   public boolean checkWinConditions() {
     // TODO: implement stalemate
     updateCurrentPlayerToNext();
-    currentPlayer.updateLegalMoves();
+    updateLegalMoves(currentPlayer);
     boolean canMove = currentPlayer.getAllLegalMoves().size() != 0;
     updateCurrentPlayerToPrev();
     return !canMove;
@@ -61,8 +668,31 @@ public class ChessGame extends AbstractCheckerboardGame {
     return move.getNextMove() == null;
   }
 
+  @Override
+  protected void initializePlayers() {
+    super.initializePlayers();
+    boolean blackToMove;
+    if (copySource != null) {
+      blackToMove = copySource.getSide(copySource.currentPlayer) == ChessBoard.BLACK;
+    } else {
+      blackToMove = startingPosition != null && !startingPosition.isWhiteToMove();
+    }
+    if (blackToMove) updateCurrentPlayerToNext();
+    // The pieces have all been placed, so the castling rights are now known
+    addToPositionKey(getStateKey());
+  }
+
   @Override
   protected void addInitialPieces(Player player) {
+    if (copySource != null) {
+      addPiecesFromCopySource(player);
+      return;
+    }
+    if (startingPosition != null) {
+      addPiecesFromStartingPosition(player);
+      return;
+    }
+
     int mainRow;
     int pawnRow;
 
@@ -90,4 +720,99 @@ public class ChessGame extends AbstractCheckerboardGame {
     }
   }
 
-}
\ No newline at end of file
+  private void addPiecesFromCopySource(Player player) {
+    Player original = copySource.players.get(players.indexOf(player));
+    // Pieces are added in board order, so copies of copies list them alike
+    for (int square = 0; square < ChessBoard.SQUARES; square++) {
+      Piece piece = copySource.board.pieceAt(square);
+      if (piece == null || piece.getPlayer() != original) continue;
+
+      Piece copy = piece.getType().newInstance(this, player);
+      addPieceAt(ChessBoard.row(square), ChessBoard.col(square), copy);
+      switch (piece.getType()) {
+      case PAWN:
+        ((Pawn) copy).setMoveCount(((Pawn) piece).getMoveCount());
+        break;
+      case KING:
+        ((King) copy).setMoveCount(((King) piece).getMoveCount());
+        break;
+      case ROOK:
+        ((Rook) copy).setMoveCount(((Rook) piece).getMoveCount());
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private void addPiecesFromStartingPosition(Player player) {
+    int side = getSide(player);
+    int homeRow = side == ChessBoard.WHITE ? boardHeight - 1 : 0;
+    int pawnRow = side == ChessBoard.WHITE ? boardHeight - 2 : 1;
+    int rights = startingPosition.getCastlingRights();
+    int kingside = side == ChessBoard.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+    int queenside = side == ChessBoard.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+
+    for (int square = 0; square < ChessBoard.SQUARES; square++) {
+      char letter = startingPosition.pieceAt(square);
+      if (letter == 0) continue;
+      int pieceSide = Character.isUpperCase(letter) ? ChessBoard.WHITE : ChessBoard.BLACK;
+      if (pieceSide != side) continue;
+
+      int row = ChessBoard.row(square);
+      int col = ChessBoard.col(square);
+      Piece piece = Fen.pieceType(letter).newInstance(this, player);
+      addPieceAt(row, col, piece);
+
+      switch (piece.getType()) {
+      case PAWN:
+        ((Pawn) piece).setMoveCount(row == pawnRow ? 0 : 1);
+        break;
+      case KING:
+        ((King) piece).setMoveCount((rights & (kingside | queenside)) != 0 ? 0 : 1);
+        break;
+      case ROOK:
+        boolean castles = row == homeRow
+            && ((col == 0 && (rights & queenside) != 0)
+            || (col == boardWidth - 1 && (rights & kingside) != 0));
+        ((Rook) piece).setMoveCount(castles ? 0 : 1);
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the castling rights still held, as a combination of the
+   * <code>WHITE_KINGSIDE</code>, <code>WHITE_QUEENSIDE</code>,
+   * <code>BLACK_KINGSIDE</code> and <code>BLACK_QUEENSIDE</code> constants. A
+   * right is held while the king and the rook on that side have not moved.
+   * 
+   * @return the castling rights still held
+   */
+  public int getCastlingRights() {
+    return castlingRights(ChessBoard.WHITE, WHITE_KINGSIDE, WHITE_QUEENSIDE)
+        | castlingRights(ChessBoard.BLACK, BLACK_KINGSIDE, BLACK_QUEENSIDE);
+  }
+
+  private int castlingRights(int side, int kingside, int queenside) {
+    int row = side == ChessBoard.WHITE ? boardHeight - 1 : 0;
+    Piece king = board.pieceAt(ChessBoard.square(row, 4));
+    if (king == null || king.getType() != PieceType.KING || getSide(king) != side) return 0;
+    if (((King) king).getMoveCount() != 0) return 0;
+
+    int rights = 0;
+    if (isUnmovedRook(board.pieceAt(ChessBoard.square(row, boardWidth - 1)), side)) {
+      rights |= kingside;
+    }
+    if (isUnmovedRook(board.pieceAt(ChessBoard.square(row, 0)), side)) rights |= queenside;
+    return rights;
+  }
+
+  private boolean isUnmovedRook(Piece piece, int side) {
+    if (piece == null || piece.getType() != PieceType.ROOK) return false;
+    return getSide(piece) == side && ((Rook) piece).getMoveCount() == 0;
+  }
+
+}
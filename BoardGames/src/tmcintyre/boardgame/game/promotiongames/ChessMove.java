@@ -0,0 +1,136 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+/**
+ * Packs a chess move into an <tt>int</tt>, so that moves can be generated,
+ * stored and searched without creating <code>Move</code> objects.
+ * 
+ * <p>
+ * The bits of a packed move are, from the lowest:
+ * <ul>
+ * <li>0-5: the start square, as a {@link ChessBoard} square index;</li>
+ * <li>6-11: the destination square;</li>
+ * <li>12-14: the type of the moving piece, a <code>ChessBoard</code> type
+ * index;</li>
+ * <li>15-17: the type of the captured piece plus one, or 0 for none;</li>
+ * <li>18-20: the type promoted to plus one, or 0 for none;</li>
+ * <li>21-23: flags for a double pawn push, an en passant capture and
+ * castling.</li>
+ * </ul>
+ * A packed move is never 0, since its start and destination differ, so 0 can
+ * stand for no move.
+ * 
+ * <p>
+ * Packed moves are generated by {@link ChessGame#generateMoves} and played by
+ * {@link ChessGame#doPackedMove}.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class ChessMove {
+
+  /** The most legal moves any chess position has is 218. */
+  public static final int MAX_MOVES = 256;
+
+  public static final int DOUBLE_PUSH = 1 << 21;
+  public static final int EN_PASSANT = 1 << 22;
+  public static final int CASTLING = 1 << 23;
+
+  private static final int TO_SHIFT = 6;
+  private static final int PIECE_SHIFT = 12;
+  private static final int CAPTURED_SHIFT = 15;
+  private static final int PROMOTION_SHIFT = 18;
+
+  private ChessMove() {
+
+  }
+
+  /**
+   * Packs a move.
+   * 
+   * @param from
+   *          the start square
+   * @param to
+   *          the destination square
+   * @param piece
+   *          the type index of the moving piece
+   * @param captured
+   *          the type index of the captured piece, or -1 for none
+   * @param promotion
+   *          the type index promoted to, or -1 for none
+   * @param flags
+   *          any of <code>DOUBLE_PUSH</code>, <code>EN_PASSANT</code> and
+   *          <code>CASTLING</code>
+   * @return the packed move
+   */
+  public static int encode(int from, int to, int piece, int captured, int promotion, int flags) {
+    return from | to << TO_SHIFT | piece << PIECE_SHIFT | (captured + 1) << CAPTURED_SHIFT
+        | (promotion + 1) << PROMOTION_SHIFT | flags;
+  }
+
+  public static int from(int move) {
+    return move & 63;
+  }
+
+  public static int to(int move) {
+    return move >>> TO_SHIFT & 63;
+  }
+
+  public static int piece(int move) {
+    return move >>> PIECE_SHIFT & 7;
+  }
+
+  /**
+   * Returns the type index of the captured piece, or -1 if the move is not a
+   * capture.
+   * 
+   * @param move
+   * @return the type index of the captured piece
+   */
+  public static int captured(int move) {
+    return (move >>> CAPTURED_SHIFT & 7) - 1;
+  }
+
+  /**
+   * Returns the type index promoted to, or -1 if the move is not a promotion.
+   * 
+   * @param move
+   * @return the type index promoted to
+   */
+  public static int promotion(int move) {
+    return (move >>> PROMOTION_SHIFT & 7) - 1;
+  }
+
+  public static boolean isCapture(int move) {
+    return (move & 7 << CAPTURED_SHIFT) != 0;
+  }
+
+  public static boolean isPromotion(int move) {
+    return (move & 7 << PROMOTION_SHIFT) != 0;
+  }
+
+  public static boolean isDoublePush(int move) {
+    return (move & DOUBLE_PUSH) != 0;
+  }
+
+  public static boolean isEnPassant(int move) {
+    return (move & EN_PASSANT) != 0;
+  }
+
+  public static boolean isCastling(int move) {
+    return (move & CASTLING) != 0;
+  }
+
+  /**
+   * Returns the square of the piece captured by the provided move, which is
+   * the destination square except for en passant.
+   * 
+   * @param move
+   *          a capture
+   * @return the square of the captured piece
+   */
+  public static int capturedSquare(int move) {
+    if (!isEnPassant(move)) return to(move);
+    return ChessBoard.square(ChessBoard.row(from(move)), ChessBoard.col(to(move)));
+  }
+
+}
@@ -0,0 +1,219 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.pieces.Piece;
+
+/**
+ * Generates the legal moves of a {@link ChessGame} as packed {@link ChessMove}s
+ * straight from its {@link ChessBoard}, without creating any objects.
+ * 
+ * <p>
+ * Legality is decided as the moves are generated, with the side's
+ * {@link LegalMoveMasks}: a piece other than the king may only move into the
+ * check mask, and a pinned piece only along its pin ray. King moves, castling
+ * and en passant are tested against the board's attack tables.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class ChessMoveGenerator {
+
+  private static final int[] PROMOTIONS = { ChessBoard.QUEEN, ChessBoard.ROOK,
+      ChessBoard.BISHOP, ChessBoard.KNIGHT };
+
+  private ChessMoveGenerator() {
+
+  }
+
+  /**
+   * Writes the legal moves of the given side into the provided array.
+   * 
+   * @param game
+   * @param side
+   * @param moves
+   *          an array of at least <code>ChessMove.MAX_MOVES</code> elements
+   * @return the number of moves written
+   */
+  static int generate(ChessGame game, int side, int[] moves) {
+    ChessBoard board = game.getBoard();
+    LegalMoveMasks masks = game.getLegalMoveMasks(side);
+    int them = side ^ 1;
+    long own = board.getOccupancy(side);
+    long occupied = board.getOccupied();
+    int count = 0;
+
+    int king = board.kingSquare(side);
+    if (king >= 0) {
+      long lifted = occupied ^ (1L << king);
+      long targets = ChessAttacks.kingAttacks(king) & ~own;
+      while (targets != 0) {
+        int to = Long.numberOfTrailingZeros(targets);
+        targets &= targets - 1;
+        // The king must not shield the destination from a slider behind it
+        if (board.attackersTo(to, them, lifted) == 0) {
+          moves[count++] = ChessMove.encode(king, to, ChessBoard.KING, typeAt(board, to), -1, 0);
+        }
+      }
+    }
+
+    long checkMask = masks.getCheckMask();
+    if (checkMask == 0) return count;
+    long pinned = masks.getPinned();
+    long targets = ~own & checkMask;
+
+    long knights = board.getPieces(side, ChessBoard.KNIGHT) & ~pinned;
+    while (knights != 0) {
+      int from = Long.numberOfTrailingZeros(knights);
+      knights &= knights - 1;
+      count = addMoves(board, from, ChessBoard.KNIGHT, ChessAttacks.knightAttacks(from) & targets,
+          moves, count);
+    }
+
+    for (int type = ChessBoard.BISHOP; type <= ChessBoard.QUEEN; type++) {
+      long sliders = board.getPieces(side, type);
+      while (sliders != 0) {
+        int from = Long.numberOfTrailingZeros(sliders);
+        sliders &= sliders - 1;
+        long attacks;
+        if (type == ChessBoard.BISHOP) {
+          attacks = ChessAttacks.bishopAttacks(from, occupied);
+        } else if (type == ChessBoard.ROOK) {
+          attacks = ChessAttacks.rookAttacks(from, occupied);
+        } else {
+          attacks = ChessAttacks.queenAttacks(from, occupied);
+        }
+        attacks &= targets;
+        if ((pinned & 1L << from) != 0) attacks &= masks.getPinRay(from);
+        count = addMoves(board, from, type, attacks, moves, count);
+      }
+    }
+
+    count = addPawnMoves(game, side, masks, moves, count);
+
+    if (king >= 0 && !masks.isInCheck()) count = addCastling(game, side, king, moves, count);
+    return count;
+  }
+
+  private static int addMoves(ChessBoard board, int from, int type, long targets, int[] moves,
+      int count) {
+    while (targets != 0) {
+      int to = Long.numberOfTrailingZeros(targets);
+      targets &= targets - 1;
+      moves[count++] = ChessMove.encode(from, to, type, typeAt(board, to), -1, 0);
+    }
+    return count;
+  }
+
+  private static int addPawnMoves(ChessGame game, int side, LegalMoveMasks masks, int[] moves,
+      int count) {
+    ChessBoard board = game.getBoard();
+    long occupied = board.getOccupied();
+    long enemies = board.getOccupancy(side ^ 1);
+    long checkMask = masks.getCheckMask();
+    long pinned = masks.getPinned();
+    int forward = side == ChessBoard.WHITE ? -ChessBoard.SIZE : ChessBoard.SIZE;
+    int startRow = side == ChessBoard.WHITE ? ChessBoard.SIZE - 2 : 1;
+    int enPassant = game.getEnPassantSquare();
+
+    long pawns = board.getPieces(side, ChessBoard.PAWN);
+    while (pawns != 0) {
+      int from = Long.numberOfTrailingZeros(pawns);
+      pawns &= pawns - 1;
+      long allowed = checkMask;
+      if ((pinned & 1L << from) != 0) allowed &= masks.getPinRay(from);
+
+      int to = from + forward;
+      if ((occupied & 1L << to) == 0) {
+        if ((allowed & 1L << to) != 0) count = addPawnMove(from, to, -1, moves, count);
+        int twice = to + forward;
+        if (ChessBoard.row(from) == startRow && (occupied & 1L << twice) == 0
+            && (allowed & 1L << twice) != 0) {
+          moves[count++] = ChessMove.encode(from, twice, ChessBoard.PAWN, -1, -1,
+              ChessMove.DOUBLE_PUSH);
+        }
+      }
+
+      long attacks = ChessAttacks.pawnAttacks(side, from);
+      long captures = attacks & enemies & allowed;
+      while (captures != 0) {
+        to = Long.numberOfTrailingZeros(captures);
+        captures &= captures - 1;
+        count = addPawnMove(from, to, typeAt(board, to), moves, count);
+      }
+
+      if (enPassant >= 0 && (attacks & 1L << enPassant) != 0
+          && isLegalEnPassant(board, side, from, enPassant)) {
+        moves[count++] = ChessMove.encode(from, enPassant, ChessBoard.PAWN, ChessBoard.PAWN, -1,
+            ChessMove.EN_PASSANT);
+      }
+    }
+    return count;
+  }
+
+  private static int addPawnMove(int from, int to, int captured, int[] moves, int count) {
+    int row = ChessBoard.row(to);
+    if (row != 0 && row != ChessBoard.SIZE - 1) {
+      moves[count++] = ChessMove.encode(from, to, ChessBoard.PAWN, captured, -1, 0);
+      return count;
+    }
+    for (int promotion : PROMOTIONS) {
+      moves[count++] = ChessMove.encode(from, to, ChessBoard.PAWN, captured, promotion, 0);
+    }
+    return count;
+  }
+
+  /**
+   * En passant removes two pieces from the king's lines at once, so the
+   * position after the capture is tested directly.
+   */
+  private static boolean isLegalEnPassant(ChessBoard board, int side, int from, int to) {
+    int king = board.kingSquare(side);
+    if (king < 0) return true;
+    long captured = 1L << ChessBoard.square(ChessBoard.row(from), ChessBoard.col(to));
+    long after = (board.getOccupied() ^ 1L << from ^ captured) | 1L << to;
+    return (board.attackersTo(king, side ^ 1, after) & ~captured) == 0;
+  }
+
+  /**
+   * Castling: not out of, through or into check, with the squares between the
+   * king and the rook empty.
+   */
+  private static int addCastling(ChessGame game, int side, int king, int[] moves, int count) {
+    int rights = game.getCastlingRights();
+    int kingside = side == ChessBoard.WHITE ? ChessGame.WHITE_KINGSIDE : ChessGame.BLACK_KINGSIDE;
+    int queenside = side == ChessBoard.WHITE ? ChessGame.WHITE_QUEENSIDE
+        : ChessGame.BLACK_QUEENSIDE;
+    if ((rights & (kingside | queenside)) == 0) return count;
+
+    ChessBoard board = game.getBoard();
+    long occupied = board.getOccupied();
+    int them = side ^ 1;
+    int row = ChessBoard.row(king);
+    int col = ChessBoard.col(king);
+
+    if ((rights & kingside) != 0) {
+      int rook = ChessBoard.square(row, ChessBoard.SIZE - 1);
+      if ((ChessAttacks.between(king, rook) & occupied) == 0
+          && !game.isSquareAttacked(row, col + 1, them)
+          && !game.isSquareAttacked(row, col + 2, them)) {
+        moves[count++] = ChessMove.encode(king, king + 2, ChessBoard.KING, -1, -1,
+            ChessMove.CASTLING);
+      }
+    }
+    if ((rights & queenside) != 0) {
+      int rook = ChessBoard.square(row, 0);
+      if ((ChessAttacks.between(king, rook) & occupied) == 0
+          && !game.isSquareAttacked(row, col - 1, them)
+          && !game.isSquareAttacked(row, col - 2, them)) {
+        moves[count++] = ChessMove.encode(king, king - 2, ChessBoard.KING, -1, -1,
+            ChessMove.CASTLING);
+      }
+    }
+    return count;
+  }
+
+  private static int typeAt(ChessBoard board, int square) {
+    Piece piece = board.pieceAt(square);
+    return piece == null ? -1 : ChessBoard.typeIndex(piece.getType());
+  }
+
+}
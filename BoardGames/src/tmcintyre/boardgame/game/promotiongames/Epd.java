@@ -0,0 +1,180 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A chess position described in Extended Position Description (EPD).
+ * 
+ * <p>
+ * An EPD record starts with the first four fields of a {@link Fen} record,
+ * followed by any number of operations, each an opcode and its operands ended
+ * by a semicolon, eg <tt>bm Nf3; id "WAC.001";</tt>. Operands in double quotes
+ * may contain spaces and semicolons. The move counters of the position are
+ * taken from the <tt>hmvc</tt> and <tt>fmvn</tt> operations, or from two
+ * numbers after the four fields, as in a full FEN record.
+ * 
+ * <p>
+ * An <code>Epd</code> is immutable. Files of them are read one at a time with
+ * an {@link EpdReader}.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class Epd {
+
+  private final Fen fen;
+  private final Map<String, String> operations;
+
+  private Epd(Fen fen, Map<String, String> operations) {
+    this.fen = fen;
+    this.operations = Collections.unmodifiableMap(operations);
+  }
+
+  /**
+   * Parses the provided EPD record.
+   * 
+   * @param epd
+   * @return the parsed record
+   * @throws IllegalArgumentException
+   *           if the record is not valid EPD
+   */
+  public static Epd parse(String epd) {
+    int end = 0;
+    for (int field = 0; field < 4; field++) {
+      end = skipField(epd, skipSpaces(epd, end));
+    }
+    String position = epd.substring(0, end);
+
+    // Move counters given as in FEN
+    String counters = "";
+    for (int field = 0; field < 2; field++) {
+      int start = skipSpaces(epd, end);
+      int next = skipField(epd, start);
+      if (start == next || !isNumber(epd.substring(start, next))) break;
+      counters += " " + epd.substring(start, next);
+      end = next;
+    }
+
+    // Each operation runs to the next semicolon outside quotes
+    Map<String, String> operations = new LinkedHashMap<String, String>();
+    boolean quoted = false;
+    int start = end;
+    for (int i = end; i < epd.length(); i++) {
+      char c = epd.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ';' && !quoted) {
+        addOperation(operations, epd.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    if (quoted) throw new IllegalArgumentException("Unterminated EPD string: " + epd);
+    addOperation(operations, epd.substring(start).trim());
+
+    String halfmove = operations.get("hmvc");
+    String fullmove = operations.get("fmvn");
+    if (halfmove != null || fullmove != null) {
+      counters = " " + (halfmove == null ? "0" : halfmove) + " "
+          + (fullmove == null ? "1" : fullmove);
+    }
+    return new Epd(Fen.parse(position + counters), operations);
+  }
+
+  private static void addOperation(Map<String, String> operations, String operation) {
+    if (operation.length() == 0) return;
+    int end = skipField(operation, 0);
+    operations.put(operation.substring(0, end), operation.substring(end).trim());
+  }
+
+  private static int skipSpaces(String s, int i) {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipField(String s, int i) {
+    while (i < s.length() && !Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isNumber(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!Character.isDigit(s.charAt(i))) return false;
+    }
+    return s.length() > 0;
+  }
+
+  /**
+   * Returns the position of the record.
+   * 
+   * @return the position
+   */
+  public Fen getFen() {
+    return fen;
+  }
+
+  /**
+   * Returns the operands of the operation with the given opcode, without the
+   * semicolon, or <code>null</code> if the record has no such operation.
+   * Quoted operands keep their quotes.
+   * 
+   * @param opcode
+   * @return the operands of the operation
+   */
+  public String getOperation(String opcode) {
+    return operations.get(opcode);
+  }
+
+  /**
+   * Returns the operands of a string operation such as <tt>id</tt> without
+   * their quotes, or <code>null</code> if the record has no such operation.
+   * 
+   * @param opcode
+   * @return the unquoted operand
+   */
+  public String getString(String opcode) {
+    String operand = operations.get(opcode);
+    if (operand == null) return null;
+    if (operand.length() >= 2 && operand.startsWith("\"") && operand.endsWith("\"")) {
+      return operand.substring(1, operand.length() - 1);
+    }
+    return operand;
+  }
+
+  /**
+   * Returns all the operations of the record, by opcode, in the order they
+   * were given.
+   * 
+   * @return the operations of the record
+   */
+  public Map<String, String> getOperations() {
+    return operations;
+  }
+
+  /**
+   * Creates and starts a game set up from the position of the record.
+   * 
+   * @return the started game
+   * @see ChessGame#fromFen(Fen)
+   */
+  public ChessGame newGame() {
+    return ChessGame.fromFen(fen);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder epd = new StringBuilder(fen.getPosition());
+    for (Map.Entry<String, String> operation : operations.entrySet()) {
+      epd.append(' ').append(operation.getKey());
+      if (operation.getValue().length() > 0) epd.append(' ').append(operation.getValue());
+      epd.append(';');
+    }
+    return epd.toString();
+  }
+
+}
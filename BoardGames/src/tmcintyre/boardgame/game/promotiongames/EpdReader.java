@@ -0,0 +1,97 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Reads {@link Epd} records one line at a time, so that files of millions of
+ * positions can be worked through in constant memory. Blank lines, and lines
+ * starting with <tt>#</tt>, are skipped.
+ * 
+ * <pre>
+ * EpdReader reader = new EpdReader(file);
+ * try {
+ *   for (Epd epd = reader.read(); epd != null; epd = reader.read()) {
+ *     ChessGame game = epd.newGame();
+ *     ...
+ *   }
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class EpdReader implements Closeable {
+
+  private final BufferedReader in;
+  private int lineNumber;
+
+  /**
+   * Creates a reader of the provided characters.
+   * 
+   * @param in
+   */
+  public EpdReader(Reader in) {
+    this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+  }
+
+  /**
+   * Creates a reader of the provided file, which is read as ASCII text.
+   * 
+   * @param file
+   * @throws IOException
+   *           if the file cannot be opened
+   */
+  public EpdReader(File file) throws IOException {
+    this(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+  }
+
+  /**
+   * Reads the next record.
+   * 
+   * @return the next record, or <code>null</code> at the end of the input
+   * @throws IOException
+   *           if the input cannot be read
+   * @throws IllegalArgumentException
+   *           if the next line is not valid EPD. The message gives the line
+   *           number, and reading may carry on with the line after
+   */
+  public Epd read() throws IOException {
+    String line;
+    do {
+      line = in.readLine();
+      if (line == null) return null;
+      lineNumber++;
+      line = line.trim();
+    } while (line.length() == 0 || line.startsWith("#"));
+
+    try {
+      return Epd.parse(line);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the number of the line the last record was read from, counting
+   * from 1.
+   * 
+   * @return the number of the last line read
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+}
@@ -0,0 +1,297 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * A chess position described in Forsyth-Edwards Notation (FEN).
+ * 
+ * <p>
+ * A FEN record has six space-separated fields: the piece placement (rank 8
+ * first, which is row 0 of a {@link ChessBoard}), the side to move, the
+ * castling rights, the en passant square, the halfmove clock and the fullmove
+ * number. The last two fields may be omitted.
+ * 
+ * <p>
+ * A <code>Fen</code> is immutable. It is given to a {@link ChessGame} before
+ * the game starts, using <code>ChessGame.setStartingPosition</code>, to set up
+ * the position the game starts from. <code>ChessGame.getFen</code> describes
+ * the current position of a game, and <code>toString</code> writes the record
+ * back out.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class Fen {
+
+  public static final String START_POSITION =
+      "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+  private final char[] squares = new char[ChessBoard.SQUARES];
+  private final boolean whiteToMove;
+  private final int castlingRights;
+  private final int enPassantSquare;
+  private final int halfmoveClock;
+  private final int fullmoveNumber;
+
+  private Fen(String fen) {
+    String[] fields = fen.trim().split("\\s+");
+    if (fields.length < 4) throw new IllegalArgumentException("Incomplete FEN: " + fen);
+
+    String[] rows = fields[0].split("/");
+    if (rows.length != ChessBoard.SIZE) throw new IllegalArgumentException("Bad FEN board: " + fen);
+    for (int row = 0; row < ChessBoard.SIZE; row++) {
+      int col = 0;
+      for (char c : rows[row].toCharArray()) {
+        if (c >= '1' && c <= '8') {
+          col += c - '0';
+        } else {
+          if (col >= ChessBoard.SIZE) {
+            throw new IllegalArgumentException("Bad FEN row: " + rows[row]);
+          }
+          pieceType(c); // Validates the character
+          squares[ChessBoard.square(row, col++)] = c;
+        }
+      }
+      if (col != ChessBoard.SIZE) throw new IllegalArgumentException("Bad FEN row: " + rows[row]);
+    }
+
+    if (fields[1].equals("w")) {
+      whiteToMove = true;
+    } else if (fields[1].equals("b")) {
+      whiteToMove = false;
+    } else {
+      throw new IllegalArgumentException("Bad FEN side to move: " + fields[1]);
+    }
+
+    int rights = 0;
+    if (!fields[2].equals("-")) {
+      for (char c : fields[2].toCharArray()) {
+        switch (c) {
+        case 'K':
+          rights |= ChessGame.WHITE_KINGSIDE;
+          break;
+        case 'Q':
+          rights |= ChessGame.WHITE_QUEENSIDE;
+          break;
+        case 'k':
+          rights |= ChessGame.BLACK_KINGSIDE;
+          break;
+        case 'q':
+          rights |= ChessGame.BLACK_QUEENSIDE;
+          break;
+        default:
+          throw new IllegalArgumentException("Bad FEN castling rights: " + fields[2]);
+        }
+      }
+    }
+    castlingRights = rights;
+
+    enPassantSquare = fields[3].equals("-") ? -1 : parseSquare(fields[3]);
+    halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+    fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+  }
+
+  /**
+   * Creates the description of a position. The squares hold the FEN letter of
+   * the piece on each square, or 0 if it is empty. They are copied, so the
+   * caller may go on using the array.
+   */
+  Fen(char[] squares, boolean whiteToMove, int castlingRights, int enPassantSquare,
+      int halfmoveClock, int fullmoveNumber) {
+    System.arraycopy(squares, 0, this.squares, 0, ChessBoard.SQUARES);
+    this.whiteToMove = whiteToMove;
+    this.castlingRights = castlingRights;
+    this.enPassantSquare = enPassantSquare;
+    this.halfmoveClock = halfmoveClock;
+    this.fullmoveNumber = fullmoveNumber;
+  }
+
+  /**
+   * Parses the provided FEN record.
+   * 
+   * @param fen
+   * @return the parsed position
+   * @throws IllegalArgumentException
+   *           if the record is not valid FEN
+   */
+  public static Fen parse(String fen) {
+    try {
+      return new Fen(fen);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Bad FEN move counters: " + fen);
+    }
+  }
+
+  /**
+   * Returns the <code>ChessBoard</code> square named in algebraic notation,
+   * eg <tt>e3</tt>.
+   * 
+   * @param name
+   * @return the index of the named square
+   * @throws IllegalArgumentException
+   *           if the name is not a square on the board
+   */
+  public static int parseSquare(String name) {
+    if (name.length() != 2) throw new IllegalArgumentException("Bad square: " + name);
+    int col = name.charAt(0) - 'a';
+    int row = ChessBoard.SIZE - (name.charAt(1) - '0');
+    if (!ChessBoard.onBoard(row, col)) throw new IllegalArgumentException("Bad square: " + name);
+    return ChessBoard.square(row, col);
+  }
+
+  /**
+   * Returns the algebraic name of a <code>ChessBoard</code> square, eg
+   * <tt>e3</tt>.
+   * 
+   * @param square
+   * @return the name of the square
+   * @see #parseSquare(String)
+   */
+  public static String squareName(int square) {
+    return new String(new char[] { (char) ('a' + ChessBoard.col(square)),
+        (char) ('0' + ChessBoard.SIZE - ChessBoard.row(square)) });
+  }
+
+  /**
+   * Returns the upper case FEN letter for a chess <code>PieceType</code>, as
+   * used for white pieces.
+   * 
+   * @param type
+   * @return the letter for the type
+   * @throws IllegalArgumentException
+   *           if the type is not a chess piece
+   * @see #pieceType(char)
+   */
+  public static char pieceLetter(PieceType type) {
+    switch (type) {
+    case PAWN:
+      return 'P';
+    case KNIGHT:
+      return 'N';
+    case BISHOP:
+      return 'B';
+    case ROOK:
+      return 'R';
+    case QUEEN:
+      return 'Q';
+    case KING:
+      return 'K';
+    default:
+      throw new IllegalArgumentException("Not a chess piece: " + type);
+    }
+  }
+
+  /**
+   * Returns the <code>PieceType</code> for a FEN piece letter. Upper case
+   * letters are white pieces and lower case letters black ones.
+   * 
+   * @param c
+   * @return the <code>PieceType</code> for the letter
+   * @throws IllegalArgumentException
+   *           if the letter does not name a chess piece
+   */
+  public static PieceType pieceType(char c) {
+    switch (Character.toLowerCase(c)) {
+    case 'p':
+      return PieceType.PAWN;
+    case 'n':
+      return PieceType.KNIGHT;
+    case 'b':
+      return PieceType.BISHOP;
+    case 'r':
+      return PieceType.ROOK;
+    case 'q':
+      return PieceType.QUEEN;
+    case 'k':
+      return PieceType.KING;
+    default:
+      throw new IllegalArgumentException("Bad FEN piece: " + c);
+    }
+  }
+
+  /**
+   * Returns the FEN letter of the piece on the given square, or 0 if the
+   * square is empty.
+   * 
+   * @param square
+   * @return the FEN letter of the piece on the square
+   */
+  public char pieceAt(int square) {
+    return squares[square];
+  }
+
+  public boolean isWhiteToMove() {
+    return whiteToMove;
+  }
+
+  /**
+   * Returns the castling rights as a combination of the
+   * <code>ChessGame</code> castling constants.
+   * 
+   * @return the castling rights
+   */
+  public int getCastlingRights() {
+    return castlingRights;
+  }
+
+  /**
+   * Returns the en passant square, or -1 if there is none.
+   * 
+   * @return the en passant square
+   */
+  public int getEnPassantSquare() {
+    return enPassantSquare;
+  }
+
+  public int getHalfmoveClock() {
+    return halfmoveClock;
+  }
+
+  public int getFullmoveNumber() {
+    return fullmoveNumber;
+  }
+
+  /**
+   * Returns the first four fields of the FEN record: the position without the
+   * move counters. This is how an EPD record starts.
+   * 
+   * @return the piece placement, side to move, castling rights and en passant
+   *         square
+   */
+  public String getPosition() {
+    StringBuilder fen = new StringBuilder(64);
+    for (int row = 0; row < ChessBoard.SIZE; row++) {
+      if (row > 0) fen.append('/');
+      int empty = 0;
+      for (int col = 0; col < ChessBoard.SIZE; col++) {
+        char c = squares[ChessBoard.square(row, col)];
+        if (c == 0) {
+          empty++;
+          continue;
+        }
+        if (empty > 0) fen.append((char) ('0' + empty));
+        empty = 0;
+        fen.append(c);
+      }
+      if (empty > 0) fen.append((char) ('0' + empty));
+    }
+
+    fen.append(whiteToMove ? " w " : " b ");
+    if (castlingRights == 0) fen.append('-');
+    if ((castlingRights & ChessGame.WHITE_KINGSIDE) != 0) fen.append('K');
+    if ((castlingRights & ChessGame.WHITE_QUEENSIDE) != 0) fen.append('Q');
+    if ((castlingRights & ChessGame.BLACK_KINGSIDE) != 0) fen.append('k');
+    if ((castlingRights & ChessGame.BLACK_QUEENSIDE) != 0) fen.append('q');
+    fen.append(' ').append(enPassantSquare < 0 ? "-" : squareName(enPassantSquare));
+    return fen.toString();
+  }
+
+  /**
+   * Returns the full FEN record, with all six fields.
+   */
+  @Override
+  public String toString() {
+    return getPosition() + " " + halfmoveClock + " " + fullmoveNumber;
+  }
+
+}
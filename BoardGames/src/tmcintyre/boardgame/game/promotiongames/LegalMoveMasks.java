@@ -0,0 +1,204 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * The check and pin information for one side of a {@link ChessBoard}, used to
+ * decide which of a chess piece's line-of-sight moves are legal.
+ * 
+ * <p>
+ * The masks are computed once per position rather than once per move:
+ * <ul>
+ * <li>the <i>checkers</i> are the opposing pieces attacking the king;</li>
+ * <li>the <i>check mask</i> holds the squares a piece other than the king may
+ * move to while in check - the checking piece itself, and the squares between
+ * it and the king. It is full when not in check and empty in double check;</li>
+ * <li>the <i>pinned</i> pieces are those standing alone between the king and an
+ * opposing slider, and each has a <i>pin ray</i> it may not leave.</li>
+ * </ul>
+ * With these a move by any piece other than the king is legal exactly when its
+ * destination lies in the check mask and, if the piece is pinned, on its pin
+ * ray. King moves, castling and en passant change the lines through the king's
+ * square and are tested directly against the board's attack tables.
+ * 
+ * <p>
+ * The masks are recomputed lazily, whenever the board has changed since they
+ * were last used.
+ * 
+ * @author Tom McIntyre
+ * @see ChessGame#getLegalMoveMasks
+ * 
+ */
+public final class LegalMoveMasks {
+
+  private final ChessBoard board;
+  private final int side;
+
+  private int modCount = -1;
+
+  private int kingSquare;
+  private long checkers;
+  private long checkMask;
+  private long pinned;
+  private final long[] pinRays = new long[ChessBoard.SQUARES];
+
+  LegalMoveMasks(ChessBoard board, int side) {
+    this.board = board;
+    this.side = side;
+  }
+
+  /**
+   * Recomputes the masks if the board has changed since they were last
+   * computed.
+   */
+  void refresh() {
+    if (modCount == board.getModCount()) return;
+    modCount = board.getModCount();
+
+    pinned = 0;
+    kingSquare = board.kingSquare(side);
+    if (kingSquare < 0) {
+      // Without a king nothing can be in check or pinned
+      checkers = 0;
+      checkMask = ~0L;
+      return;
+    }
+
+    int them = side ^ 1;
+    long occupied = board.getOccupied();
+    checkers = board.attackersTo(kingSquare, them, occupied);
+
+    if (checkers == 0) {
+      checkMask = ~0L;
+    } else if ((checkers & (checkers - 1)) == 0) {
+      checkMask = checkers | ChessAttacks.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+    } else {
+      // Double check: only the king can move
+      checkMask = 0;
+    }
+
+    long queens = board.getPieces(them, ChessBoard.QUEEN);
+    long snipers = (ChessAttacks.rookAttacks(kingSquare, 0)
+        & (board.getPieces(them, ChessBoard.ROOK) | queens))
+        | (ChessAttacks.bishopAttacks(kingSquare, 0)
+            & (board.getPieces(them, ChessBoard.BISHOP) | queens));
+    long own = board.getOccupancy(side);
+
+    while (snipers != 0) {
+      int sniper = Long.numberOfTrailingZeros(snipers);
+      snipers &= snipers - 1;
+      long between = ChessAttacks.between(kingSquare, sniper);
+      long blockers = between & occupied;
+      if (blockers == 0 || (blockers & (blockers - 1)) != 0) continue;
+      if ((blockers & own) == 0) continue;
+      pinned |= blockers;
+      pinRays[Long.numberOfTrailingZeros(blockers)] = between | (1L << sniper);
+    }
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided line-of-sight <code>Move</code> by a
+   * piece of this side is legal, ie does not leave its own king in check.
+   * 
+   * @param move
+   * @return <tt>true</tt> if the <code>Move</code> is legal
+   */
+  public boolean isLegal(Move move) {
+    refresh();
+    if (kingSquare < 0) return true;
+
+    int from = ChessBoard.square(move.startRow(), move.startCol());
+    int to = ChessBoard.square(move.destRow(), move.destCol());
+    long occupied = board.getOccupied();
+    int them = side ^ 1;
+
+    if (from == kingSquare) {
+      if (Math.abs(move.destCol() - move.startCol()) == 2) {
+        // Castling: not out of, through or into check
+        if (checkers != 0) return false;
+        int passed = (from + to) >> 1;
+        return board.attackersTo(passed, them, occupied) == 0
+            && board.attackersTo(to, them, occupied) == 0;
+      }
+      // The king must not shield the destination from a slider behind it
+      return board.attackersTo(to, them, occupied ^ (1L << from)) == 0;
+    }
+
+    if (checkMask == 0) return false;
+
+    long fromBit = 1L << from;
+    long toBit = 1L << to;
+
+    Piece captured = move.getCapturedPiece();
+    if (captured != null && captured.getType() == PieceType.PAWN
+        && (captured.getRow() != move.destRow() || captured.getCol() != move.destCol())) {
+      // En passant removes two pieces from the king's lines at once, so the
+      // position after the capture is tested directly.
+      long capturedBit = ChessBoard.bit(captured.getRow(), captured.getCol());
+      long after = (occupied ^ fromBit ^ capturedBit) | toBit;
+      return (board.attackersTo(kingSquare, them, after) & ~capturedBit) == 0;
+    }
+
+    if ((checkMask & toBit) == 0) return false;
+    if ((pinned & fromBit) != 0 && (pinRays[from] & toBit) == 0) return false;
+    return true;
+  }
+
+  /**
+   * Returns the bitboard of the opposing pieces giving check to this side's
+   * king.
+   * 
+   * @return the bitboard of the checking pieces
+   */
+  public long getCheckers() {
+    refresh();
+    return checkers;
+  }
+
+  /**
+   * Returns the bitboard of this side's pieces that are pinned to its king.
+   * 
+   * @return the bitboard of the pinned pieces
+   */
+  public long getPinned() {
+    refresh();
+    return pinned;
+  }
+
+  /**
+   * Returns the squares a piece other than the king may move to: all of them
+   * when not in check, the checking piece and the squares between it and the
+   * king when in check, and none in double check.
+   * 
+   * @return the bitboard of the check mask
+   */
+  long getCheckMask() {
+    refresh();
+    return checkMask;
+  }
+
+  /**
+   * Returns the squares the pinned piece on the given square may move to: the
+   * line from the king up to and including the pinning piece.
+   * 
+   * @param square
+   *          the square of a pinned piece
+   * @return the bitboard of the pin ray
+   */
+  long getPinRay(int square) {
+    refresh();
+    return pinRays[square];
+  }
+
+  /**
+   * Returns <tt>true</tt> if this side's king is in check.
+   * 
+   * @return <tt>true</tt> if this side's king is in check
+   */
+  public boolean isInCheck() {
+    return getCheckers() != 0;
+  }
+
+}
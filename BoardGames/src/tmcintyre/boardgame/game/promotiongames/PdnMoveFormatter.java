@@ -0,0 +1,50 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.MoveFormatter;
+
+/**
+ * Names draughts moves in the numeric notation of Portable Draughts Notation
+ * (PDN): the numbers of the start and destination squares, joined by
+ * <tt>-</tt> for a plain move or <tt>x</tt> for a capture, eg <tt>11-15</tt>
+ * or <tt>15x24</tt>.
+ * 
+ * <p>
+ * Only the dark squares, on which the pieces stand, are numbered: from 1 at
+ * the left of the top row, left to right and then row by row down the board,
+ * so on an 8x8 board the pieces starting at the top stand on 1 to 12. Each
+ * jump of a chain of captures is its own <code>Move</code>, and is named on
+ * its own.
+ * 
+ * <p>
+ * The name does not depend on the position, so a <code>Move</code> may be
+ * formatted at any time.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class PdnMoveFormatter implements MoveFormatter {
+
+  @Override
+  public String format(Move move) {
+    int width = move.getMovingPiece().getGame().getBoardWidth();
+    return squareNumber(width, move.startRow(), move.startCol())
+        + (move.getCapturedPiece() != null ? "x" : "-")
+        + squareNumber(width, move.destRow(), move.destCol());
+  }
+
+  /**
+   * Returns the PDN number of a dark square on a board of the given width.
+   * 
+   * @param width
+   *          the width of the board, as given by <code>Game.getBoardWidth</code>
+   * @param row
+   * @param col
+   * @return the number of the square
+   */
+  public static int squareNumber(int width, int row, int col) {
+    // Every row has half its squares dark
+    return row * (width / 2) + col / 2 + 1;
+  }
+
+}
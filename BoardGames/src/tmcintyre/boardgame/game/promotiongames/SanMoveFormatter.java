@@ -0,0 +1,188 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.MoveFormatter;
+
+/**
+ * Names chess moves in Standard Algebraic Notation (SAN), as used in PGN, eg
+ * <tt>Nbd7</tt>, <tt>exd6</tt>, <tt>O-O</tt> or <tt>e8=Q+</tt>.
+ * 
+ * <p>
+ * SAN names a move only as precisely as its position requires, and marks
+ * check and mate, so a <code>Move</code> must be formatted while it is legal
+ * in the position of its {@link ChessGame}, before it is done. The move is
+ * tried with <code>ChessGame.doPackedMove</code> to see whether it gives check
+ * or mate, and taken back.
+ * 
+ * <p>
+ * <code>parse</code> reads SAN back, finding the legal move it names.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class SanMoveFormatter implements MoveFormatter {
+
+  /**
+   * @throws IllegalArgumentException
+   *           if the <code>Move</code> is not legal in the position of its game
+   */
+  @Override
+  public String format(Move move) {
+    ChessGame game = (ChessGame) move.getMovingPiece().getGame();
+    int packed = game.packMove(move);
+    if (packed == 0) throw new IllegalArgumentException("Not a legal move: " + move);
+    return format(game, packed);
+  }
+
+  /**
+   * Returns the SAN name of a packed move.
+   * 
+   * @param game
+   * @param move
+   *          a packed <code>ChessMove</code>, legal in the current position of
+   *          the game
+   * @return the SAN name of the move
+   */
+  public String format(ChessGame game, int move) {
+    StringBuilder san = new StringBuilder(7);
+    int from = ChessMove.from(move);
+    int to = ChessMove.to(move);
+    int[] moves = new int[ChessMove.MAX_MOVES];
+
+    if (ChessMove.isCastling(move)) {
+      san.append(to > from ? "O-O" : "O-O-O");
+    } else {
+      int piece = ChessMove.piece(move);
+      if (piece == ChessBoard.PAWN) {
+        if (ChessMove.isCapture(move)) san.append(Fen.squareName(from).charAt(0));
+      } else {
+        san.append(Fen.pieceLetter(ChessBoard.pieceType(piece)));
+        appendDisambiguation(san, move, moves, game.generateMoves(moves));
+      }
+      if (ChessMove.isCapture(move)) san.append('x');
+      san.append(Fen.squareName(to));
+      if (ChessMove.isPromotion(move)) {
+        san.append('=').append(Fen.pieceLetter(ChessBoard.pieceType(ChessMove.promotion(move))));
+      }
+    }
+
+    game.doPackedMove(move);
+    if (game.isInCheck(game.getCurrentPlayer())) {
+      san.append(game.generateMoves(moves) == 0 ? '#' : '+');
+    }
+    game.undoPackedMove(move);
+    return san.toString();
+  }
+
+  /**
+   * Returns the legal move of the player to move named by the provided SAN.
+   * Check and mate marks and annotations such as <tt>!?</tt> are ignored, and
+   * castling may be written with zeros. A promotion must name the piece
+   * promoted to.
+   * 
+   * @param game
+   * @param san
+   * @return the packed <code>ChessMove</code> named
+   * @throws IllegalArgumentException
+   *           if the SAN names no legal move, or more than one
+   */
+  public int parse(ChessGame game, String san) {
+    int end = san.length();
+    while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+      end--;
+    }
+    String name = san.substring(0, end).replace('0', 'O');
+
+    int piece = ChessBoard.KING;
+    int to = -1;
+    int fromCol = -1;
+    int fromRow = -1;
+    int promotion = -1;
+    boolean castling = name.equals("O-O") || name.equals("O-O-O");
+    if (!castling) {
+      int start = 0;
+      piece = ChessBoard.PAWN;
+      if (name.length() > 0 && "NBRQK".indexOf(name.charAt(0)) >= 0) {
+        piece = ChessBoard.typeIndex(Fen.pieceType(name.charAt(0)));
+        start = 1;
+      }
+      int promotionAt = name.indexOf('=');
+      if (promotionAt >= 0) {
+        if (promotionAt != name.length() - 2) throw new IllegalArgumentException("Bad SAN: " + san);
+        promotion = ChessBoard.typeIndex(Fen.pieceType(name.charAt(promotionAt + 1)));
+        end = promotionAt;
+      } else {
+        end = name.length();
+      }
+      if (end - start < 2) throw new IllegalArgumentException("Bad SAN: " + san);
+      to = Fen.parseSquare(name.substring(end - 2, end));
+
+      // What is left names the start square, in part or in full
+      for (int i = start; i < end - 2; i++) {
+        char c = name.charAt(i);
+        if (c >= 'a' && c <= 'h') {
+          fromCol = c - 'a';
+        } else if (c >= '1' && c <= '8') {
+          fromRow = ChessBoard.SIZE - (c - '0');
+        } else if (c != 'x') {
+          throw new IllegalArgumentException("Bad SAN: " + san);
+        }
+      }
+    }
+
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    int count = game.generateMoves(moves);
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      if (castling) {
+        if (!ChessMove.isCastling(move)
+            || (ChessMove.to(move) > ChessMove.from(move)) != name.equals("O-O")) {
+          continue;
+        }
+      } else if (ChessMove.piece(move) != piece || ChessMove.to(move) != to
+          || ChessMove.isCastling(move)
+          || (ChessMove.isPromotion(move) ? ChessMove.promotion(move) : -1) != promotion
+          || (fromCol >= 0 && ChessBoard.col(ChessMove.from(move)) != fromCol)
+          || (fromRow >= 0 && ChessBoard.row(ChessMove.from(move)) != fromRow)) {
+        continue;
+      }
+      if (found != 0) throw new IllegalArgumentException("Ambiguous SAN: " + san);
+      found = move;
+    }
+    if (found == 0) throw new IllegalArgumentException("Not a legal move: " + san);
+    return found;
+  }
+
+  /**
+   * Adds the file, the rank or both of the start square if other pieces of the
+   * same type can also move to the destination.
+   */
+  private static void appendDisambiguation(StringBuilder san, int move, int[] moves, int count) {
+    int from = ChessMove.from(move);
+    boolean ambiguous = false;
+    boolean sameCol = false;
+    boolean sameRow = false;
+    for (int i = 0; i < count; i++) {
+      int other = moves[i];
+      if (ChessMove.piece(other) != ChessMove.piece(move)
+          || ChessMove.to(other) != ChessMove.to(move) || ChessMove.from(other) == from) {
+        continue;
+      }
+      ambiguous = true;
+      if (ChessBoard.col(ChessMove.from(other)) == ChessBoard.col(from)) sameCol = true;
+      if (ChessBoard.row(ChessMove.from(other)) == ChessBoard.row(from)) sameRow = true;
+    }
+    if (!ambiguous) return;
+
+    String square = Fen.squareName(from);
+    if (!sameCol) {
+      san.append(square.charAt(0));
+    } else if (!sameRow) {
+      san.append(square.charAt(1));
+    } else {
+      san.append(square);
+    }
+  }
+
+}
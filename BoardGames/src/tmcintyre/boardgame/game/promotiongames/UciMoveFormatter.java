@@ -0,0 +1,52 @@
+package tmcintyre.boardgame.game.promotiongames;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.MoveFormatter;
+import tmcintyre.boardgame.pieces.PieceType;
+
+/**
+ * Names chess moves in the coordinate notation of the Universal Chess
+ * Interface (UCI), as also used by perft tools: the start and destination
+ * squares, followed by the promotion piece if any, eg <tt>e2e4</tt>,
+ * <tt>e1g1</tt> for castling or <tt>a7a8q</tt>.
+ * 
+ * <p>
+ * The name does not depend on the position, so a <code>Move</code> may be
+ * formatted at any time.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class UciMoveFormatter implements MoveFormatter {
+
+  @Override
+  public String format(Move move) {
+    StringBuilder name = new StringBuilder(5);
+    name.append(Fen.squareName(ChessBoard.square(move.startRow(), move.startCol())));
+    name.append(Fen.squareName(ChessBoard.square(move.destRow(), move.destCol())));
+    appendPromotion(name, move.getPromotionType());
+    return name.toString();
+  }
+
+  /**
+   * Returns the UCI name of a packed move.
+   * 
+   * @param move
+   *          a packed <code>ChessMove</code>
+   * @return the UCI name of the move
+   */
+  public String format(int move) {
+    StringBuilder name = new StringBuilder(5);
+    name.append(Fen.squareName(ChessMove.from(move)));
+    name.append(Fen.squareName(ChessMove.to(move)));
+    if (ChessMove.isPromotion(move)) {
+      appendPromotion(name, ChessBoard.pieceType(ChessMove.promotion(move)));
+    }
+    return name.toString();
+  }
+
+  private static void appendPromotion(StringBuilder name, PieceType promotion) {
+    if (promotion != null) name.append(Character.toLowerCase(Fen.pieceLetter(promotion)));
+  }
+
+}
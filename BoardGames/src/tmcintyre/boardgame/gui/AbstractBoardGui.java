@@ -67,7 +67,7 @@ public abstract class AbstractBoardGui extends JPanel implements Observer {
   private static final Border selectedBorder = BorderFactory.createLineBorder(Color.YELLOW, 5);
   private static final ImageIcon winIcon = new ImageIcon("files/win.png");
 
-  private final Map<Square, Move> legalMoves = new HashMap<Square, Move>();
+  private final Map<Square, List<Move>> legalMoves = new HashMap<Square, List<Move>>();
   private JFrame frame;
 
   private boolean showAvailableMoves = true;
@@ -202,10 +202,32 @@ public abstract class AbstractBoardGui extends JPanel implements Observer {
   private void updateLegalMoveSquaresForSelectedPiece() {
     legalMoves.clear();
     for (Move move : selectedPiece.getLegalMoves()) {
-      legalMoves.put(squares[move.destRow()][move.destCol()], move);
+      Square square = squares[move.destRow()][move.destCol()];
+      List<Move> moves = legalMoves.get(square);
+      if (moves == null) {
+        moves = new LinkedList<Move>();
+        legalMoves.put(square, moves);
+      }
+      moves.add(move);
     }
   }
 
+  /**
+   * Chooses which of several legal <code>Move</code>s to the same square to
+   * do, for example when a pawn can promote to different pieces.
+   * 
+   * <p>
+   * The default implementation simply returns the first candidate.
+   * Subclasses may override this to ask the user.
+   * 
+   * @param candidates
+   *          the legal <code>Move</code>s to the selected square; never empty
+   * @return the <code>Move</code> to do, or <code>null</code> to do nothing
+   */
+  protected Move chooseMove(List<Move> candidates) {
+    return candidates.get(0);
+  }
+
   private void initialiseSquares() {
     squares = new Square[getGame().getBoardHeight()][getGame().getBoardWidth()];
     for (int row = 0; row < squares.length; row++) {
@@ -242,7 +264,8 @@ public abstract class AbstractBoardGui extends JPanel implements Observer {
         JOptionPane.showMessageDialog(AbstractBoardGui.this, "Invalid move!", "Error",
             JOptionPane.ERROR_MESSAGE);
       } else {
-        getGame().doMove(legalMoves.get(square), false);
+        Move move = chooseMove(legalMoves.get(square));
+        if (move != null) getGame().doMove(move, false);
       }
     }
 
@@ -20,6 +20,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JToolBar;
 import javax.swing.WindowConstants;
 
+import tmcintyre.boardgame.engine.EnginePlayer;
 import tmcintyre.boardgame.game.Game;
 import tmcintyre.boardgame.game.GameType;
 import tmcintyre.boardgame.player.Player;
@@ -82,7 +83,13 @@ public class MainFrame {
 
     Color color = getPlayerColorFromUser();
 
-    playersAddedThisSession.add(new Player(color, name));
+    int computer = JOptionPane.showConfirmDialog(frame, "Should the computer play for " + name
+        + "?", "Setup", JOptionPane.YES_NO_OPTION);
+    if (computer == JOptionPane.YES_OPTION) {
+      playersAddedThisSession.add(new EnginePlayer(color, name));
+    } else {
+      playersAddedThisSession.add(new Player(color, name));
+    }
   }
 
   private static void initialiseFrame() {
@@ -172,6 +179,12 @@ public class MainFrame {
 
     board.setFrame(frame);
     board.getGame().addPlayers(playersThisGame);
+    if (gameType == GameType.CHESS || gameType == GameType.CHECKERS) {
+      // The engine only plays two-player games without dice
+      for (Player player : playersThisGame) {
+        if (player instanceof EnginePlayer) ((EnginePlayer) player).joinGame(board.getGame());
+      }
+    }
     board.start();
     frame.getContentPane().add(board, BorderLayout.CENTER);
     frame.setVisible(true);
@@ -1,6 +1,9 @@
 package tmcintyre.boardgame.gui;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.swing.JOptionPane;
 
 import tmcintyre.boardgame.game.Game;
@@ -32,6 +35,26 @@ public class PromotionGameBoardGui extends AbstractBoardGui {
     repaint();
   }
 
+  /**
+   * Overridden super method.
+   * 
+   * <p>
+   * Moves that carry their promotion type are offered to the user as a choice
+   * of promotion.
+   */
+  @Override
+  protected Move chooseMove(List<Move> candidates) {
+    if (candidates.size() == 1) return candidates.get(0);
+    List<PieceType> options = new ArrayList<PieceType>();
+    for (Move move : candidates) {
+      options.add(move.getPromotionType());
+    }
+    Object choice = JOptionPane.showInputDialog(this, "Select Promotion", "You got promoted!",
+        JOptionPane.PLAIN_MESSAGE, null, options.toArray(), null);
+    if (choice == null) return null;
+    return candidates.get(options.indexOf(choice));
+  }
+
   @Override
   public Game getGame() {
     return game;
@@ -9,8 +9,10 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import tmcintyre.boardgame.game.EnglishMoveFormatter;
 import tmcintyre.boardgame.game.Game;
 import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.MoveFormatter;
 import tmcintyre.boardgame.game.Observer;
 import tmcintyre.boardgame.player.Player;
 
@@ -22,6 +24,11 @@ import tmcintyre.boardgame.player.Player;
  * The name of the log file is generated automatically based on the time and
  * date of creation.
  * 
+ * <p>
+ * Moves are written as they are done, named by a {@link MoveFormatter}, in
+ * English unless another is given. A formatter that needs the position before
+ * the move is done, such as SAN, cannot be used.
+ * 
  * @author Tom McIntyre
  * 
  */
@@ -32,6 +39,7 @@ public class Logger implements Observer {
   private final static File logDir = new File(logDirName);
 
   private final Game game;
+  private final MoveFormatter formatter;
 
   private final File logFile;
 
@@ -40,7 +48,12 @@ public class Logger implements Observer {
   }
 
   public Logger(Game game) {
+    this(game, new EnglishMoveFormatter());
+  }
+
+  public Logger(Game game, MoveFormatter formatter) {
     this.game = game;
+    this.formatter = formatter;
     if (!createLogDir()) throw new RuntimeException("Error creating log directories");
     Date date = new Date();
     logFile = new File(logDirName + "/" + dateFormat.format(date));
@@ -48,7 +61,7 @@ public class Logger implements Observer {
 
   @Override
   public void notifyOnMove(Move move) {
-    write(move + "\n");
+    write(formatter.format(move) + "\n");
   }
 
   @Override
@@ -0,0 +1,153 @@
+package tmcintyre.boardgame.perft;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import tmcintyre.boardgame.game.AbstractGame;
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.pieces.Piece;
+import tmcintyre.boardgame.player.Player;
+
+/**
+ * Checks that the legal moves a <code>Player</code> keeps between turns are
+ * still right after a move is done and undone, as the GUI's undo button does.
+ * 
+ * <p>
+ * Random games are played through <code>doMove</code>. Before each move, a
+ * random legal move is done and undone, and then the moves of each of the
+ * current player's pieces are compared with those the piece generates from
+ * scratch. Perft cannot check this, as it only generates the moves of the
+ * positions it reaches, and not those kept from earlier ones.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class LegalMoveCheck {
+
+  private final GameType type;
+  private final Map<String, String> options;
+  private final List<String> mismatches = new ArrayList<String>();
+  private long positions;
+
+  /**
+   * Creates a check of games of the provided type.
+   * 
+   * @param type
+   * @param options
+   *          the game-specific options, or <code>null</code> for the first
+   *          choice of each
+   */
+  public LegalMoveCheck(GameType type, Map<String, String> options) {
+    this.type = type;
+    this.options = options;
+  }
+
+  /**
+   * Plays random games, checking the legal moves at every ply.
+   * 
+   * @param games
+   * @param maxPlies
+   *          the number of moves after which a game is abandoned
+   * @param seed
+   *          chooses the moves
+   * @return the number of pieces whose moves were wrong, over all the
+   *         positions
+   */
+  public int run(int games, int maxPlies, long seed) {
+    Random random = new Random(seed);
+    for (int i = 0; i < games; i++) {
+      Game game = newGame();
+      for (int ply = 0; ply < maxPlies; ply++) {
+        List<Move> moves = game.getCurrentPlayer().getAllLegalMoves();
+        if (moves.isEmpty()) break;
+
+        game.doMove(moves.get(random.nextInt(moves.size())), false);
+        game.undoMove(false);
+        positions++;
+        check(game, i, ply);
+
+        moves = game.getCurrentPlayer().getAllLegalMoves();
+        game.doMove(moves.get(random.nextInt(moves.size())), false);
+      }
+    }
+    return mismatches.size();
+  }
+
+  /**
+   * Returns a description of each piece whose moves were wrong.
+   * 
+   * @return the mismatches found
+   */
+  public List<String> getMismatches() {
+    return mismatches;
+  }
+
+  /**
+   * Returns the number of positions checked.
+   * 
+   * @return the number of positions
+   */
+  public long getPositions() {
+    return positions;
+  }
+
+  private Game newGame() {
+    Game game = type.getNewInstance();
+    if (game instanceof AbstractGame) ((AbstractGame) game).setLoggingEnabled(false);
+    Map<String, String> selected = options;
+    if (selected == null && game.getGameSpecificOptions() != null) {
+      selected = new HashMap<String, String>();
+      for (Map.Entry<String, String[]> option : game.getGameSpecificOptions().entrySet()) {
+        selected.put(option.getKey(), option.getValue()[0]);
+      }
+    }
+    if (selected != null) game.implementSelectedOptions(selected);
+    game.addPlayers(Arrays.asList(new Player(Color.WHITE, "White"), new Player(Color.BLACK,
+        "Black")));
+    game.start();
+    return game;
+  }
+
+  /**
+   * Compares the kept moves of each of the current player's pieces with those
+   * it generates from scratch, and then leaves the player with the correct
+   * moves, so that each position is checked on its own.
+   */
+  private void check(Game game, int gameNumber, int ply) {
+    Player player = game.getCurrentPlayer();
+    List<Piece> pieces = new ArrayList<Piece>(player.getPieces());
+    List<String> kept = new ArrayList<String>();
+    for (Piece piece : pieces) {
+      kept.add(describe(piece.getLegalMoves()));
+    }
+    for (int i = 0; i < pieces.size(); i++) {
+      Piece piece = pieces.get(i);
+      piece.updateLegalMoves();
+      String fresh = describe(piece.getLegalMoves());
+      if (!fresh.equals(kept.get(i))) {
+        mismatches.add("Game " + gameNumber + " ply " + ply + ": piece at " + piece.getRow()
+            + "," + piece.getCol() + " kept [" + kept.get(i) + "] but generates [" + fresh
+            + "]");
+      }
+    }
+    player.invalidateLegalMoves();
+    player.updateLegalMoves();
+  }
+
+  private static String describe(List<Move> moves) {
+    StringBuilder description = new StringBuilder();
+    for (Move move : moves) {
+      if (description.length() > 0) description.append(", ");
+      description.append(move.destRow()).append(',').append(move.destCol());
+    }
+    return description.toString();
+  }
+
+}
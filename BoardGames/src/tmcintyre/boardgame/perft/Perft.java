@@ -0,0 +1,399 @@
+package tmcintyre.boardgame.perft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.ChessMove;
+import tmcintyre.boardgame.game.promotiongames.UciMoveFormatter;
+
+/**
+ * Counts the leaf nodes of the legal move tree of a {@link ChessGame} to a
+ * fixed depth ('perft'), generating packed moves with
+ * <code>generateMoves</code> and playing them with <code>doPackedMove</code>
+ * and <code>undoPackedMove</code> exactly as the engine's search does. The
+ * moves of each ply are written into an array kept for that ply, so nothing is
+ * allocated once the tree is deeper than any searched before.
+ * 
+ * <p>
+ * A <code>Perft</code> may instead be made to play <code>Move</code> objects,
+ * generated by the players' pieces and played with <code>doMove</code> and
+ * <code>undoMove</code>, which is how the GUI and PGN replay drive the game.
+ * Counting the same positions both ways checks that the two paths agree.
+ * 
+ * <p>
+ * Perft counts for well-known positions are published, so comparing against
+ * them (see {@link PerftSuite}) checks the move generator, including the rarer
+ * rules such as castling, en passant and promotion. The time taken measures
+ * the speed of move generation together with making and unmaking moves.
+ * 
+ * <p>
+ * The last ply is counted in bulk: the number of legal moves is added without
+ * playing them. Counts of subtrees may optionally be kept in a hash table, so
+ * that a position reached by several move orders is only counted once. The
+ * static <code>divide</code> method splits the work at the root between
+ * several threads, each with its own copy of the game.
+ * 
+ * <p>
+ * A <code>Perft</code> is not thread-safe.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class Perft {
+
+  private static final int ENTRY_BYTES = 16;
+  private static final UciMoveFormatter UCI = new UciMoveFormatter();
+
+  private final ChessGame game;
+  private final boolean objectMoves;
+  private int[][] moves = new int[0][];
+  private final List<List<Move>> moveLists = new ArrayList<List<Move>>();
+
+  private final long[] hashKeys;
+  private final long[] hashCounts;
+  private final int hashMask;
+
+  /**
+   * Creates a <code>Perft</code> without a hash table.
+   * 
+   * @param game
+   *          a started <code>ChessGame</code>
+   */
+  public Perft(ChessGame game) {
+    this(game, 0);
+  }
+
+  /**
+   * Creates a <code>Perft</code> with a hash table of (at most) the given size.
+   * 
+   * @param game
+   *          a started <code>ChessGame</code>
+   * @param hashMegabytes
+   *          the size of the hash table; 0 for none
+   */
+  public Perft(ChessGame game, int hashMegabytes) {
+    this(game, hashMegabytes, false);
+  }
+
+  /**
+   * Creates a <code>Perft</code> with a hash table of (at most) the given size,
+   * playing either packed moves or <code>Move</code> objects.
+   * 
+   * @param game
+   *          a started <code>ChessGame</code>
+   * @param hashMegabytes
+   *          the size of the hash table; 0 for none
+   * @param objectMoves
+   *          <tt>true</tt> to play <code>Move</code> objects through
+   *          <code>doMove</code> and <code>undoMove</code>
+   */
+  public Perft(ChessGame game, int hashMegabytes, boolean objectMoves) {
+    this.game = game;
+    this.objectMoves = objectMoves;
+    int entries = Integer.highestOneBit((int) Math.min(1 << 30, (long) hashMegabytes << 20)
+        / ENTRY_BYTES);
+    if (entries > 0) {
+      hashKeys = new long[entries];
+      hashCounts = new long[entries];
+      hashMask = entries - 1;
+    } else {
+      hashKeys = null;
+      hashCounts = null;
+      hashMask = 0;
+    }
+  }
+
+  /**
+   * Returns the number of leaf nodes of the legal move tree of the given depth
+   * from the current position.
+   * 
+   * @param depth
+   * @return the number of leaf nodes
+   */
+  public long perft(int depth) {
+    return perft(depth, 0);
+  }
+
+  private long perft(int depth, int ply) {
+    if (depth <= 0) return 1;
+    int[] moves = null;
+    List<Move> list = null;
+    int count;
+    if (objectMoves) {
+      list = moveList(ply);
+      count = list.size();
+    } else {
+      moves = moves(ply);
+      count = game.generateMoves(moves);
+    }
+    if (depth == 1) return count;
+
+    long key = 0;
+    int index = 0;
+    if (hashKeys != null) {
+      key = game.getPositionKey() ^ depth;
+      index = (int) key & hashMask;
+      if (hashKeys[index] == key) return hashCounts[index];
+    }
+
+    long nodes = 0;
+    for (int i = 0; i < count; i++) {
+      if (objectMoves) {
+        game.doMove(list.get(i), true);
+        nodes += perft(depth - 1, ply + 1);
+        game.undoMove(true);
+      } else {
+        game.doPackedMove(moves[i]);
+        nodes += perft(depth - 1, ply + 1);
+        game.undoPackedMove(moves[i]);
+      }
+    }
+
+    if (hashKeys != null) {
+      hashKeys[index] = key;
+      hashCounts[index] = nodes;
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns the perft count below each legal move from the current position,
+   * keyed by the name of the move as given by <code>moveName</code>.
+   * 
+   * @param depth
+   *          the depth of the tree, including the root move
+   * @return the counts for each root move, in move generation order
+   */
+  public Map<String, Long> divide(int depth) {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    if (objectMoves) {
+      for (Move move : legalMoveObjects(game)) {
+        game.doMove(move, true);
+        counts.put(moveName(move), perft(depth - 1, 1));
+        game.undoMove(true);
+      }
+      return counts;
+    }
+    int[] moves = legalMoves(game);
+    for (int move : moves) {
+      game.doPackedMove(move);
+      counts.put(moveName(move), perft(depth - 1, 1));
+      game.undoPackedMove(move);
+    }
+    return counts;
+  }
+
+  /**
+   * Returns the array for the moves of the given ply, creating it the first
+   * time the ply is reached.
+   */
+  private int[] moves(int ply) {
+    if (ply >= moves.length) moves = Arrays.copyOf(moves, ply + 1);
+    if (moves[ply] == null) moves[ply] = new int[ChessMove.MAX_MOVES];
+    return moves[ply];
+  }
+
+  /**
+   * Returns the legal <code>Move</code>s of the given ply, copied into the
+   * list kept for it, because the player's list is reused further down the
+   * tree.
+   */
+  private List<Move> moveList(int ply) {
+    while (moveLists.size() <= ply) {
+      moveLists.add(new ArrayList<Move>());
+    }
+    List<Move> list = moveLists.get(ply);
+    list.clear();
+    game.getCurrentPlayer().updateLegalMoves();
+    list.addAll(game.getCurrentPlayer().getAllLegalMoves());
+    return list;
+  }
+
+  /**
+   * Returns the perft count below each legal move from the position described
+   * by the provided FEN record, sharing the root moves between several
+   * threads.
+   * 
+   * <p>
+   * Each thread sets up its own <code>ChessGame</code> and, if requested, its
+   * own hash table of <code>hashMegabytes / threads</code>. The root moves are
+   * handed out one at a time, so a thread that finishes a small subtree moves
+   * straight on to the next.
+   * 
+   * @param fen
+   * @param depth
+   *          the depth of the tree, including the root move
+   * @param threads
+   * @param hashMegabytes
+   *          the total size of the hash tables; 0 for none
+   * @return the counts for each root move, in move generation order
+   */
+  public static Map<String, Long> divide(String fen, int depth, int threads, int hashMegabytes) {
+    return divide(fen, depth, threads, hashMegabytes, false);
+  }
+
+  /**
+   * Returns the perft count below each legal move from the position described
+   * by the provided FEN record, as <code>divide(String, int, int, int)</code>
+   * does, playing either packed moves or <code>Move</code> objects.
+   * 
+   * @param fen
+   * @param depth
+   *          the depth of the tree, including the root move
+   * @param threads
+   * @param hashMegabytes
+   *          the total size of the hash tables; 0 for none
+   * @param objectMoves
+   *          <tt>true</tt> to play <code>Move</code> objects
+   * @return the counts for each root move, in move generation order
+   */
+  public static Map<String, Long> divide(final String fen, final int depth, int threads,
+      int hashMegabytes, final boolean objectMoves) {
+    ChessGame root = ChessGame.fromFen(fen);
+    final int rootCount = objectMoves ? legalMoveObjects(root).size() : legalMoves(root).length;
+    final long[] counts = new long[rootCount];
+    final AtomicInteger next = new AtomicInteger();
+    final int threadHash = hashMegabytes / threads;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            ChessGame game = ChessGame.fromFen(fen);
+            Perft perft = new Perft(game, threadHash, objectMoves);
+            // Every copy of the game generates its root moves in the same order
+            int[] moves = objectMoves ? null : legalMoves(game);
+            List<Move> list = objectMoves ? legalMoveObjects(game) : null;
+            int i;
+            while ((i = next.getAndIncrement()) < rootCount) {
+              if (objectMoves) {
+                game.doMove(list.get(i), true);
+                counts[i] = perft.perft(depth - 1, 1);
+                game.undoMove(true);
+              } else {
+                game.doPackedMove(moves[i]);
+                counts[i] = perft.perft(depth - 1, 1);
+                game.undoPackedMove(moves[i]);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    if (objectMoves) {
+      List<Move> rootMoves = legalMoveObjects(root);
+      for (int i = 0; i < counts.length; i++) {
+        result.put(moveName(rootMoves.get(i)), counts[i]);
+      }
+    } else {
+      int[] rootMoves = legalMoves(root);
+      for (int i = 0; i < counts.length; i++) {
+        result.put(moveName(rootMoves[i]), counts[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the perft count for the position described by the provided FEN
+   * record, sharing the root moves between several threads.
+   * 
+   * @param fen
+   * @param depth
+   * @param threads
+   * @param hashMegabytes
+   *          the total size of the hash tables; 0 for none
+   * @return the number of leaf nodes
+   * @see #divide(String, int, int, int)
+   */
+  public static long perft(String fen, int depth, int threads, int hashMegabytes) {
+    return perft(fen, depth, threads, hashMegabytes, false);
+  }
+
+  /**
+   * Returns the perft count for the position described by the provided FEN
+   * record, playing either packed moves or <code>Move</code> objects.
+   * 
+   * @param fen
+   * @param depth
+   * @param threads
+   * @param hashMegabytes
+   *          the total size of the hash tables; 0 for none
+   * @param objectMoves
+   *          <tt>true</tt> to play <code>Move</code> objects
+   * @return the number of leaf nodes
+   * @see #divide(String, int, int, int, boolean)
+   */
+  public static long perft(String fen, int depth, int threads, int hashMegabytes,
+      boolean objectMoves) {
+    if (depth <= 1) return new Perft(ChessGame.fromFen(fen), 0, objectMoves).perft(depth);
+    long nodes = 0;
+    for (long count : divide(fen, depth, threads, hashMegabytes, objectMoves).values()) {
+      nodes += count;
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns the name of the provided <code>Move</code> in coordinate notation,
+   * as used by perft tools: the start and destination squares, followed by the
+   * promotion piece if any, eg <tt>e2e4</tt> or <tt>a7a8q</tt>.
+   * 
+   * @param move
+   * @return the name of the <code>Move</code>
+   */
+  public static String moveName(Move move) {
+    return UCI.format(move);
+  }
+
+  /**
+   * Returns the name of the provided packed move in coordinate notation.
+   * 
+   * @param move
+   *          a packed <code>ChessMove</code>
+   * @return the name of the move
+   * @see #moveName(Move)
+   */
+  public static String moveName(int move) {
+    return UCI.format(move);
+  }
+
+  private static int[] legalMoves(ChessGame game) {
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    return Arrays.copyOf(moves, game.generateMoves(moves));
+  }
+
+  private static List<Move> legalMoveObjects(ChessGame game) {
+    game.getCurrentPlayer().updateLegalMoves();
+    // Copied, because the player's list is reused further down the tree
+    return new ArrayList<Move>(game.getCurrentPlayer().getAllLegalMoves());
+  }
+
+}
@@ -0,0 +1,67 @@
+package tmcintyre.boardgame.perft;
+
+import tmcintyre.boardgame.game.promotiongames.Fen;
+
+/**
+ * The standard perft test positions, with their published node counts.
+ * 
+ * <p>
+ * Between them the positions exercise every chess rule the move generator has
+ * to get right: castling through and out of check, en passant captures that
+ * expose the king, promotions with and without capture, and pins.
+ * 
+ * @author Tom McIntyre
+ * @see Perft
+ * 
+ */
+public enum PerftSuite {
+
+  START_POSITION(Fen.START_POSITION, 20, 400, 8902, 197281, 4865609, 119060324),
+
+  KIWIPETE("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 48, 2039,
+      97862, 4085603, 193690690),
+
+  ENDGAME("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14, 191, 2812, 43238, 674624, 11030083),
+
+  PROMOTIONS("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 6, 264, 9467,
+      422333, 15833292),
+
+  DISCOVERED_CHECKS("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 44, 1486,
+      62379, 2103487, 89941194),
+
+  MIDDLEGAME("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 46,
+      2079, 89890, 3894594);
+
+  private final String fen;
+  private final long[] nodes;
+
+  private PerftSuite(String fen, long... nodes) {
+    this.fen = fen;
+    this.nodes = nodes;
+  }
+
+  public String getFen() {
+    return fen;
+  }
+
+  /**
+   * Returns the greatest depth for which the node count is known.
+   * 
+   * @return the greatest known depth
+   */
+  public int getMaxDepth() {
+    return nodes.length;
+  }
+
+  /**
+   * Returns the expected perft count at the given depth.
+   * 
+   * @param depth
+   *          from 1 to <code>getMaxDepth()</code>
+   * @return the expected number of leaf nodes
+   */
+  public long getNodes(int depth) {
+    return nodes[depth - 1];
+  }
+
+}
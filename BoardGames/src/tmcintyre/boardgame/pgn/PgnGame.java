@@ -0,0 +1,141 @@
+package tmcintyre.boardgame.pgn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.Fen;
+import tmcintyre.boardgame.game.promotiongames.SanMoveFormatter;
+
+/**
+ * One game of a Portable Game Notation (PGN) file: its tag pairs, the moves of
+ * its main line in Standard Algebraic Notation, and its result.
+ * 
+ * <p>
+ * Comments, annotations and variations are not kept. A game read with a
+ * {@link PgnReader} has not been checked in any way; <code>replay</code> plays
+ * it out to see that its moves are legal.
+ * 
+ * <p>
+ * A <code>PgnGame</code> is immutable.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class PgnGame {
+
+  /**
+   * The tags of the Seven Tag Roster, which every PGN game should have, in the
+   * order they are written.
+   */
+  public static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White",
+      "Black", "Result" };
+
+  private static final SanMoveFormatter SAN = new SanMoveFormatter();
+
+  private final Map<String, String> tags;
+  private final List<String> moves;
+  private final String result;
+
+  /**
+   * Creates a game.
+   * 
+   * @param tags
+   *          the tag pairs, by name
+   * @param moves
+   *          the moves in SAN, without move numbers
+   * @param result
+   *          <tt>1-0</tt>, <tt>0-1</tt>, <tt>1/2-1/2</tt> or <tt>*</tt>
+   */
+  public PgnGame(Map<String, String> tags, List<String> moves, String result) {
+    this.tags = Collections.unmodifiableMap(new LinkedHashMap<String, String>(tags));
+    this.moves = Collections.unmodifiableList(new ArrayList<String>(moves));
+    this.result = result;
+  }
+
+  /**
+   * Creates the record of the moves played so far in the provided game, from
+   * the position it started from.
+   * 
+   * @param game
+   * @param tags
+   *          the tag pairs to give the record. A <tt>FEN</tt> tag is added if
+   *          the game did not start from the usual starting position
+   * @param result
+   * @return the record of the game
+   */
+  public static PgnGame of(ChessGame game, Map<String, String> tags, String result) {
+    Fen start = game.getStartingPosition();
+    Map<String, String> allTags = new LinkedHashMap<String, String>(tags);
+    if (!start.getPosition().equals(Fen.parse(Fen.START_POSITION).getPosition())) {
+      allTags.put("SetUp", "1");
+      allTags.put("FEN", start.toString());
+    }
+
+    // Played again on a new game, as SAN depends on the position before each
+    // move
+    ChessGame replay = ChessGame.fromFen(start);
+    List<String> moves = new ArrayList<String>();
+    for (Move move : game.getMoveHistory()) {
+      int packed = replay.packMove(move);
+      moves.add(SAN.format(replay, packed));
+      replay.doPackedMove(packed);
+    }
+    return new PgnGame(allTags, moves, result);
+  }
+
+  /**
+   * Plays the game out from its starting position, given by its <tt>FEN</tt>
+   * tag if it has one. Each move is done with <code>doMove</code> as a dummy
+   * move, so no observers are notified.
+   * 
+   * @return the game after the last move
+   * @throws IllegalArgumentException
+   *           if a move is not legal, or the <tt>FEN</tt> tag is not valid.
+   *           The message names the move
+   */
+  public ChessGame replay() {
+    String fen = tags.get("FEN");
+    ChessGame game = ChessGame.fromFen(fen != null ? fen : Fen.START_POSITION);
+    for (int i = 0; i < moves.size(); i++) {
+      String san = moves.get(i);
+      int move;
+      try {
+        move = SAN.parse(game, san);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Move " + (i / 2 + 1) + (i % 2 == 0 ? ". " : "... ")
+            + san + ": " + e.getMessage(), e);
+      }
+      game.doMove(game.toMove(move), true);
+    }
+    return game;
+  }
+
+  /**
+   * Returns the value of the tag with the given name, or <code>null</code> if
+   * the game does not have it.
+   * 
+   * @param name
+   * @return the value of the tag
+   */
+  public String getTag(String name) {
+    return tags.get(name);
+  }
+
+  public Map<String, String> getTags() {
+    return tags;
+  }
+
+  public List<String> getMoves() {
+    return moves;
+  }
+
+  public String getResult() {
+    return result;
+  }
+
+}
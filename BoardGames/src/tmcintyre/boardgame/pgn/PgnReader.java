@@ -0,0 +1,300 @@
+package tmcintyre.boardgame.pgn;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads {@link PgnGame}s one at a time from a PGN file, so that databases of
+ * millions of games can be worked through in constant memory. The file is read
+ * through a fixed size buffer and decoded as ISO-8859-1, the character set PGN
+ * is defined in.
+ * 
+ * <p>
+ * The reader is lenient: move numbers, comments, numeric annotation glyphs,
+ * <tt>!</tt> and <tt>?</tt> suffixes, <tt>e.p.</tt> marks, escape lines and
+ * variations are all skipped, and a game with no result ends where the tags of the next one
+ * begin. Moves are not checked; see {@link PgnGame#replay()}.
+ * 
+ * <pre>
+ * PgnReader reader = new PgnReader(file);
+ * try {
+ *   for (PgnGame game = reader.read(); game != null; game = reader.read()) {
+ *     ...
+ *   }
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class PgnReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int EOF = -1;
+
+  // The annotation some writers add to an en passant capture
+  private static final String EN_PASSANT = "e.p.";
+
+  private final ReadableByteChannel in;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final StringBuilder token = new StringBuilder();
+  private int lineNumber = 1;
+  private int gameLineNumber;
+  private int peeked = EOF - 1;
+  private boolean lineStart = true;
+
+  /**
+   * Creates a reader of the provided channel.
+   * 
+   * @param in
+   */
+  public PgnReader(ReadableByteChannel in) {
+    this.in = in;
+    buffer.flip();
+  }
+
+  /**
+   * Creates a reader of the provided file.
+   * 
+   * @param file
+   * @throws IOException
+   *           if the file cannot be opened
+   */
+  public PgnReader(File file) throws IOException {
+    this(new FileInputStream(file).getChannel());
+  }
+
+  /**
+   * Reads the next game.
+   * 
+   * @return the next game, or <code>null</code> at the end of the input
+   * @throws IOException
+   *           if the input cannot be read
+   * @throws IllegalArgumentException
+   *           if a tag pair is not valid PGN. The message gives the line
+   *           number. The rest of the game is skipped, so reading may carry on
+   *           with the next game
+   */
+  public PgnGame read() throws IOException {
+    Map<String, String> tags = new LinkedHashMap<String, String>();
+    List<String> moves = new ArrayList<String>();
+    String result = null;
+    IllegalArgumentException badTag = null;
+    boolean started = false;
+
+    for (;;) {
+      int c = skipSpaces();
+      if (c == EOF) break;
+      if (!started) {
+        started = true;
+        gameLineNumber = lineNumber;
+      }
+
+      if (c == '[') {
+        // Tags of the next game end one with no result
+        if (!moves.isEmpty()) break;
+        next();
+        try {
+          readTag(tags);
+        } catch (IllegalArgumentException e) {
+          // Read on to the end of the game, so that the next read starts with
+          // the next game rather than with the rest of this one
+          if (badTag == null) badTag = e;
+        }
+      } else if (c == '{') {
+        skipTo('}');
+      } else if (c == ';') {
+        skipTo('\n');
+      } else if (c == '%' && lineStart) {
+        skipTo('\n');
+      } else if (c == '(') {
+        skipVariation();
+      } else if (c == ')') {
+        next();
+      } else if (c == '$') {
+        next();
+        readSymbol();
+      } else {
+        String symbol = readSymbol();
+        if (symbol.length() == 0) {
+          // A character that cannot start anything, such as a stray '!'
+          next();
+        } else if (isResult(symbol)) {
+          result = symbol;
+          break;
+        } else {
+          String move = stripMoveNumber(symbol);
+          // An en passant capture may be marked, on its own or run into the move
+          if (move.endsWith(EN_PASSANT)) {
+            move = move.substring(0, move.length() - EN_PASSANT.length());
+          }
+          if (move.length() > 0) moves.add(move);
+        }
+      }
+    }
+
+    if (badTag != null) throw badTag;
+    // Only comments after the last game
+    if (!started || tags.isEmpty() && moves.isEmpty() && result == null) return null;
+    if (result == null) {
+      result = tags.containsKey("Result") ? tags.get("Result") : "*";
+    }
+    return new PgnGame(tags, moves, result);
+  }
+
+  /**
+   * Returns the number of the line the last game read started on, counting
+   * from 1.
+   * 
+   * @return the first line of the last game
+   */
+  public int getLineNumber() {
+    return gameLineNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private void readTag(Map<String, String> tags) throws IOException {
+    skipSpaces();
+    String name = readSymbol();
+    int c = skipSpaces();
+    if (name.length() == 0 || c != '"') {
+      skipTo(']');
+      throw new IllegalArgumentException("Line " + lineNumber + ": Bad PGN tag");
+    }
+    next();
+    token.setLength(0);
+    while ((c = next()) != '"') {
+      if (c == EOF || c == '\n') {
+        throw new IllegalArgumentException("Line " + lineNumber + ": Unterminated PGN string");
+      }
+      if (c == '\\') {
+        c = next();
+        if (c == EOF) break;
+      }
+      token.append((char) c);
+    }
+    tags.put(name, token.toString());
+    if (skipSpaces() == ']') next();
+  }
+
+  private void skipVariation() throws IOException {
+    int depth = 0;
+    for (;;) {
+      int c = next();
+      if (c == EOF) return;
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        if (--depth == 0) return;
+      } else if (c == '{') {
+        skipTo('}');
+      } else if (c == ';') {
+        skipTo('\n');
+      }
+    }
+  }
+
+  /**
+   * Reads a run of the characters that make up moves, move numbers, results
+   * and tag names, then skips any annotation suffix.
+   */
+  private String readSymbol() throws IOException {
+    token.setLength(0);
+    for (int c = peek(); isSymbolChar(c); c = peek()) {
+      token.append((char) next());
+    }
+    for (int c = peek(); c == '!' || c == '?'; c = peek()) {
+      next();
+    }
+    return token.toString();
+  }
+
+  private static boolean isSymbolChar(int c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'
+        || c == '+' || c == '#' || c == '=' || c == ':' || c == '-' || c == '/' || c == '*'
+        || c == '.';
+  }
+
+  /**
+   * Returns the provided symbol without any move number, which may be run into
+   * the move after it. Only digits followed by a '.' are a move number, so
+   * castling written with zeros, <tt>0-0</tt>, is left alone.
+   */
+  private static String stripMoveNumber(String symbol) {
+    int digits = 0;
+    while (digits < symbol.length() && Character.isDigit(symbol.charAt(digits))) {
+      digits++;
+    }
+    if (digits == 0 || digits == symbol.length() || symbol.charAt(digits) != '.') return symbol;
+    int start = digits;
+    while (start < symbol.length() && symbol.charAt(start) == '.') {
+      start++;
+    }
+    return symbol.substring(start);
+  }
+
+  private static boolean isResult(String symbol) {
+    return symbol.equals("1-0") || symbol.equals("0-1") || symbol.equals("1/2-1/2")
+        || symbol.equals("*");
+  }
+
+  private void skipTo(char end) throws IOException {
+    int c;
+    do {
+      c = next();
+    } while (c != end && c != EOF);
+  }
+
+  private int skipSpaces() throws IOException {
+    int c = peek();
+    while (c != EOF && Character.isWhitespace(c)) {
+      next();
+      c = peek();
+    }
+    return c;
+  }
+
+  private int peek() throws IOException {
+    if (peeked < EOF) peeked = read1();
+    return peeked;
+  }
+
+  private int next() throws IOException {
+    int c = peek();
+    peeked = EOF - 1;
+    if (c == '\n') {
+      lineNumber++;
+      lineStart = true;
+    } else if (c != '\r') {
+      lineStart = false;
+    }
+    return c;
+  }
+
+  private int read1() throws IOException {
+    while (!buffer.hasRemaining()) {
+      buffer.clear();
+      int n = in.read(buffer);
+      buffer.flip();
+      if (n < 0) return EOF;
+    }
+    // ISO-8859-1 maps each byte to the character with the same value
+    return buffer.get() & 0xff;
+  }
+
+}
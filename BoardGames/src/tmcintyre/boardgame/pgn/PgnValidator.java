@@ -0,0 +1,209 @@
+package tmcintyre.boardgame.pgn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that every game of a PGN file can be played out, by replaying the
+ * games on several threads while the file is read on the calling thread.
+ * 
+ * <p>
+ * The reader hands games to the threads through a queue of fixed size, so
+ * however large the file, only a few games are held in memory at once.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class PgnValidator {
+
+  /**
+   * The most errors a {@link Result} keeps the messages of.
+   */
+  public static final int MAX_ERRORS = 100;
+
+  private static final int GAMES_PER_THREAD = 64;
+
+  // Put on the queue once for each thread to tell it to stop
+  private static final Entry END = new Entry(null, 0);
+
+  private PgnValidator() {
+  }
+
+  /**
+   * The outcome of validating a file.
+   */
+  public static final class Result {
+
+    private final long games;
+    private final long invalid;
+    private final List<String> errors;
+    private final long nanos;
+
+    private Result(long games, long invalid, List<String> errors, long nanos) {
+      this.games = games;
+      this.invalid = invalid;
+      this.errors = Collections.unmodifiableList(errors);
+      this.nanos = nanos;
+    }
+
+    public long getGames() {
+      return games;
+    }
+
+    public long getValidGames() {
+      return games - invalid;
+    }
+
+    public long getInvalidGames() {
+      return invalid;
+    }
+
+    /**
+     * Returns the messages of the first {@link PgnValidator#MAX_ERRORS}
+     * errors, each starting with the line the game was on.
+     * 
+     * @return the error messages
+     */
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public double getGamesPerSecond() {
+      return games * 1e9 / Math.max(1, nanos);
+    }
+
+  }
+
+  private static final class Entry {
+
+    final PgnGame game;
+    final int lineNumber;
+
+    Entry(PgnGame game, int lineNumber) {
+      this.game = game;
+      this.lineNumber = lineNumber;
+    }
+
+  }
+
+  /**
+   * Replays every game of the provided file.
+   * 
+   * @param file
+   * @param threads
+   *          the number of threads to replay games on
+   * @return the number of games, the number that could not be played out, and
+   *         why
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  public static Result validate(File file, int threads) throws IOException {
+    PgnReader reader = new PgnReader(file);
+    try {
+      return validate(reader, threads);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Replays every game the provided reader has left to read.
+   * 
+   * @param reader
+   * @param threads
+   *          the number of threads to replay games on
+   * @return the number of games, the number that could not be played out, and
+   *         why
+   * @throws IOException
+   *           if the input cannot be read
+   */
+  public static Result validate(PgnReader reader, int threads) throws IOException {
+    final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(threads * GAMES_PER_THREAD);
+    final AtomicLong invalid = new AtomicLong();
+    final List<String> errors = new ArrayList<String>();
+    long games = 0;
+    long start = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws InterruptedException {
+            for (Entry entry = queue.take(); entry != END; entry = queue.take()) {
+              try {
+                entry.game.replay();
+              } catch (RuntimeException e) {
+                // Anything a bad game throws must not stop the thread, or the
+                // reader would wait on a full queue for ever
+                invalid.incrementAndGet();
+                addError(errors, entry.lineNumber, String.valueOf(e.getMessage()));
+              }
+            }
+            return null;
+          }
+        }));
+      }
+
+      try {
+        for (;;) {
+          PgnGame game;
+          try {
+            game = reader.read();
+          } catch (IllegalArgumentException e) {
+            // A bad tag spoils the game it is in, but not those after it
+            games++;
+            invalid.incrementAndGet();
+            addError(errors, reader.getLineNumber(), e.getMessage());
+            continue;
+          }
+          if (game == null) break;
+          games++;
+          queue.put(new Entry(game, reader.getLineNumber()));
+        }
+      } finally {
+        for (int i = 0; i < threads; i++) {
+          queue.put(END);
+        }
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    synchronized (errors) {
+      return new Result(games, invalid.get(), new ArrayList<String>(errors), System.nanoTime()
+          - start);
+    }
+  }
+
+  private static void addError(List<String> errors, int lineNumber, String message) {
+    synchronized (errors) {
+      if (errors.size() < MAX_ERRORS) errors.add("Game at line " + lineNumber + ": " + message);
+    }
+  }
+
+}
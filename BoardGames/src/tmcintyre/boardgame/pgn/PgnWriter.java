@@ -0,0 +1,150 @@
+package tmcintyre.boardgame.pgn;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+
+/**
+ * Writes {@link PgnGame}s in the export format of PGN: the Seven Tag Roster
+ * first, with <tt>?</tt> for any tag the game does not have, then its other
+ * tags, then the moves numbered and wrapped at 80 columns, ended by the
+ * result.
+ * 
+ * <pre>
+ * PgnWriter writer = new PgnWriter(file);
+ * try {
+ *   writer.write(PgnGame.of(game, tags, &quot;1-0&quot;));
+ * } finally {
+ *   writer.close();
+ * }
+ * </pre>
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class PgnWriter implements Closeable, Flushable {
+
+  private static final int LINE_LENGTH = 80;
+
+  private final Writer out;
+  private final StringBuilder line = new StringBuilder(LINE_LENGTH);
+
+  /**
+   * Creates a writer to the provided characters.
+   * 
+   * @param out
+   */
+  public PgnWriter(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Creates a writer to the provided file, which is written in ISO-8859-1.
+   * 
+   * @param file
+   * @throws IOException
+   *           if the file cannot be created
+   */
+  public PgnWriter(File file) throws IOException {
+    this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")));
+  }
+
+  /**
+   * Writes the moves played so far in the provided game.
+   * 
+   * @param game
+   * @param tags
+   * @param result
+   * @throws IOException
+   * @see PgnGame#of(ChessGame, Map, String)
+   */
+  public void write(ChessGame game, Map<String, String> tags, String result) throws IOException {
+    write(PgnGame.of(game, tags, result));
+  }
+
+  /**
+   * Writes the provided game, followed by a blank line.
+   * 
+   * @param game
+   * @throws IOException
+   */
+  public void write(PgnGame game) throws IOException {
+    Map<String, String> tags = game.getTags();
+    for (String name : PgnGame.SEVEN_TAG_ROSTER) {
+      String value = name.equals("Result") ? game.getResult() : tags.get(name);
+      writeTag(name, value != null ? value : "?");
+    }
+    for (Map.Entry<String, String> tag : tags.entrySet()) {
+      if (!isRosterTag(tag.getKey())) writeTag(tag.getKey(), tag.getValue());
+    }
+    out.write('\n');
+
+    // Black moves first from a position set up with black to move
+    String fen = tags.get("FEN");
+    String[] fields = fen != null ? fen.trim().split("\\s+") : new String[0];
+    int ply = fields.length > 1 && fields[1].equals("b") ? 1 : 0;
+    int number = fields.length > 5 && fields[5].matches("\\d+") ? Integer.parseInt(fields[5]) : 1;
+
+    line.setLength(0);
+    List<String> moves = game.getMoves();
+    for (int i = 0; i < moves.size(); i++, ply++) {
+      // Numbers are kept on the same line as the move they number
+      if (ply % 2 == 0) {
+        append(number + ". " + moves.get(i));
+      } else if (i == 0) {
+        append(number + "... " + moves.get(i));
+      } else {
+        append(moves.get(i));
+      }
+      if (ply % 2 == 1) number++;
+    }
+    append(game.getResult());
+    out.write(line.toString());
+    out.write("\n\n");
+  }
+
+  private void append(String token) throws IOException {
+    if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+      out.write(line.toString());
+      out.write('\n');
+      line.setLength(0);
+    }
+    if (line.length() > 0) line.append(' ');
+    line.append(token);
+  }
+
+  private void writeTag(String name, String value) throws IOException {
+    out.write('[');
+    out.write(name);
+    out.write(" \"");
+    out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+    out.write("\"]\n");
+  }
+
+  private static boolean isRosterTag(String name) {
+    for (String rosterTag : PgnGame.SEVEN_TAG_ROSTER) {
+      if (rosterTag.equals(name)) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+}
@@ -0,0 +1,48 @@
+package tmcintyre.boardgame.pieces;
+
+import tmcintyre.boardgame.player.Player;
+
+/**
+ * A {@link Piece} whose legal moves depend only on the contents of a few
+ * squares near it, and on a <i>move context</i> that is the same for all the
+ * pieces of its player.
+ * 
+ * <p>
+ * A {@link Player} keeps the legal moves of such a piece from one call of
+ * <code>updateLegalMoves</code> to the next, unless a square it depends on has
+ * changed in between, or the context has. Only those pieces near the squares a
+ * move touched need to generate their moves again, which matters on the large
+ * boards of draughts.
+ * 
+ * <p>
+ * For a checker the context is the piece, if any, that is part way through a
+ * chain of captures: while it is, the other pieces of its player have no legal
+ * moves at all.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface LocalPiece extends Piece {
+
+  /**
+   * Returns <tt>true</tt> if this piece's legal moves may change when a piece
+   * is put on, or taken off, the specified square. This must include the
+   * square the piece stands on. It may return <tt>true</tt> for squares that
+   * turn out not to matter, at the cost of generating the moves again.
+   * 
+   * @param row
+   * @param col
+   * @return <tt>true</tt> if this piece's legal moves depend on the square
+   */
+  public boolean dependsOn(int row, int col);
+
+  /**
+   * Returns the object identifying everything other than the board that this
+   * piece's legal moves depend on. Contexts are compared by identity, and may
+   * be <code>null</code>.
+   * 
+   * @return the move context of this piece
+   */
+  public Object getMoveContext();
+
+}
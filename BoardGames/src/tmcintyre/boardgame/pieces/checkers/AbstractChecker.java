@@ -4,6 +4,7 @@ import tmcintyre.boardgame.game.Game;
 import tmcintyre.boardgame.game.Move;
 import tmcintyre.boardgame.game.promotiongames.CheckersGame;
 import tmcintyre.boardgame.pieces.AbstractPiece;
+import tmcintyre.boardgame.pieces.LocalPiece;
 import tmcintyre.boardgame.pieces.Piece;
 import tmcintyre.boardgame.player.Player;
 
@@ -16,10 +17,14 @@ import tmcintyre.boardgame.player.Player;
  * combinations of methods to use, depending on the piece's abilities and the
  * <code>CheckersRule</code> rules in play.
  * 
+ * <p>
+ * A checker's moves depend only on the squares diagonally next to it and the
+ * squares beyond those, so it is a <code>LocalPiece</code>.
+ * 
  * @author Tom McIntyre
  * 
  */
-public abstract class AbstractChecker extends AbstractPiece {
+public abstract class AbstractChecker extends AbstractPiece implements LocalPiece {
 
   protected final CheckersGame game;
 
@@ -122,6 +127,24 @@ public abstract class AbstractChecker extends AbstractPiece {
     }
   }
 
+  @Override
+  public boolean dependsOn(int row, int col) {
+    int rowDif = Math.abs(row - this.row);
+    return rowDif <= 2 && rowDif == Math.abs(col - this.col);
+  }
+
+  /**
+   * Returns the piece of this checker's player that is part way through a
+   * chain of captures, or <code>null</code> if there is none. This decides
+   * which of the cases of <code>updateLegalMoves</code> applies.
+   */
+  @Override
+  public Object getMoveContext() {
+    Move lastMove = game.getLastMove();
+    if (lastMove == null || lastMove.getMovingPiece().getPlayer() != player) return null;
+    return lastMove.getMovingPiece();
+  }
+
   /**
    * Adds all legal moves available to this piece.
    */
@@ -40,6 +40,15 @@ public final class CrownedChecker extends AbstractChecker {
     addFlyingKingMove(+1, +1, takingOnly);
   }
 
+  /**
+   * A flying king depends on every square of its diagonals.
+   */
+  @Override
+  public boolean dependsOn(int row, int col) {
+    if (!game.getRules().isFlyingKings()) return super.dependsOn(row, col);
+    return Math.abs(row - this.row) == Math.abs(col - this.col);
+  }
+
   @Override
   protected void addAllMoves() {
     if (game.getRules().isFlyingKings()) {
@@ -6,10 +6,12 @@ import java.util.List;
 
 import tmcintyre.boardgame.game.Game;
 import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessAttacks;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
 import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.LegalMoveMasks;
 import tmcintyre.boardgame.pieces.AbstractPiece;
 import tmcintyre.boardgame.pieces.Piece;
-import tmcintyre.boardgame.pieces.PieceType;
 import tmcintyre.boardgame.player.Player;
 
 /**
@@ -22,21 +24,30 @@ import tmcintyre.boardgame.player.Player;
  * Provides several methods for adding certain types of moves, to prevent
  * repeated code in the concrete classes. For example, Queens and Bishops may
  * move diagonally in the same manner, and Queens and Rooks may move linearly in
- * the same manner. Methods for adding such moves if legal are provided here.
+ * the same manner. Methods for adding such moves if legal are provided here;
+ * the sliding moves are read from the precomputed {@link ChessAttacks} tables
+ * in a single lookup rather than by walking each ray square by square.
  * 
  * <p>
  * For a chess piece the question of whether a move is legal does not depend on
  * just whether a piece can physically reach that location; it also depends on
- * whether making that move would leave the King in check. This in turn depends
- * on the moves that will be available to the pieces of the opponent player once
- * the move in question has been carried out. To deal with this situation the
- * piece keeps two lists of moves: one list that contains every move the piece
- * can physically make regardless of check (the 'line of sight' list), and
- * another list containing only those moves that are legal (the 'legal moves'
- * list inherited from <code>AbstractPiece</code>). Updating the legal moves is
- * a two-stage process: first update the line-of-sight moves, then remove the
- * moves that would leave the King in check. This process is transparent to any
- * object that deals with this piece through the <code>Piece</code> interface.
+ * whether making that move would leave the King in check. To deal with this
+ * situation the piece keeps two lists of moves: one list that contains every
+ * move the piece can physically make regardless of check (the 'line of sight'
+ * list), and another list containing only those moves that are legal (the
+ * 'legal moves' list inherited from <code>AbstractPiece</code>). Updating the
+ * legal moves is a two-stage process: first update the line-of-sight moves,
+ * then keep only the moves accepted by the game's {@link LegalMoveMasks} for
+ * this piece's side. The masks hold the pinned pieces, the checking pieces and
+ * the squares that block or capture a check, and are computed once per
+ * position, so no moves need to be played out to test them. This process is
+ * transparent to any object that deals with this piece through the
+ * <code>Piece</code> interface.
+ * 
+ * <p>
+ * Squares are tested against the game's {@link ChessBoard} rather than the
+ * per-square piece lists, so <code>getSquareState</code> costs a couple of
+ * bitwise operations.
  * 
  * @author Tom McIntyre
  * 
@@ -60,8 +71,10 @@ public abstract class AbstractChessPiece extends AbstractPiece {
   public void updateLegalMoves() {
     legalMoves.clear();
     updateLineOfSight();
-    legalMoves.addAll(lineOfSight);
-    removeMovesThatLeaveKingInCheck();
+    LegalMoveMasks masks = game.getLegalMoveMasks(game.getSide(player));
+    for (Move move : lineOfSight) {
+      if (masks.isLegal(move)) legalMoves.add(move);
+    }
   }
 
   /**
@@ -78,69 +91,29 @@ public abstract class AbstractChessPiece extends AbstractPiece {
     moves.add(new Move(this, row, col, taken));
   }
 
-  private void removeMovesThatLeaveKingInCheck() {
-    // Loop over each move potentially available to this piece.
-    for (Move move : lineOfSight) {
-      // Instruct the game to process the move as a dummy move.
-      game.doMove(move, true);
-
-      // Loop over each of the opponent's pieces and update its line of sight
-      // list to reflect the updated game state.
-      PIECES: for (Piece piece : game.getCurrentPlayer().getPieces()) {
-        AbstractChessPiece acp = (AbstractChessPiece) piece;
-        acp.updateLineOfSight();
-
-        // Loop over each of the opponent piece's line of sight moves. If any of
-        // the opponent piece's moves can capture the King then the move by this
-        // piece being tested is not a legal move.
-        for (Move opponentMove : acp.getLineOfSight()) {
-          Piece taken = opponentMove.getCapturedPiece();
-          if (taken == null) continue;
-          if (taken.getType() != PieceType.KING) continue;
-          legalMoves.remove(move);
-          break PIECES;
-        }
-      }
-      // Instruct the game to undo the move.
-      game.undoMove(true);
-    }
-  }
-
   protected void addDiagonalMoves() {
-    // Moving up and to the left
-    for (int i = row - 1, j = col - 1; i >= 0 && j >= 0; i--, j--) {
-      if (addMoveIfValid(i, j, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving down and to the left
-    for (int i = row + 1, j = col - 1; i < 8 && j >= 0; i++, j--) {
-      if (addMoveIfValid(i, j, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving up and to the right
-    for (int i = row - 1, j = col + 1; i >= 0 && j < 8; i--, j++) {
-      if (addMoveIfValid(i, j, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving down and to the right
-    for (int i = row + 1, j = col + 1; i < 8 && j < 8; i++, j++) {
-      if (addMoveIfValid(i, j, lineOfSight) != SquareState.EMPTY) break;
-    }
+    ChessBoard board = game.getBoard();
+    addMovesTo(ChessAttacks.bishopAttacks(ChessBoard.square(row, col), board.getOccupied()));
   }
 
   protected void addLinearMoves() {
-    // Moving down the board
-    for (int i = row + 1; i < 8; i++) {
-      if (addMoveIfValid(i, col, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving up the board
-    for (int i = row - 1; i >= 0; i--) {
-      if (addMoveIfValid(i, col, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving right
-    for (int i = col + 1; i < 8; i++) {
-      if (addMoveIfValid(row, i, lineOfSight) != SquareState.EMPTY) break;
-    }
-    // Moving left
-    for (int i = col - 1; i >= 0; i--) {
-      if (addMoveIfValid(row, i, lineOfSight) != SquareState.EMPTY) break;
+    ChessBoard board = game.getBoard();
+    addMovesTo(ChessAttacks.rookAttacks(ChessBoard.square(row, col), board.getOccupied()));
+  }
+
+  /**
+   * Adds a line-of-sight move to each of the target squares, other than those
+   * occupied by this piece's own side.
+   * 
+   * @param targets
+   *          a bitboard of the squares this piece attacks
+   */
+  private void addMovesTo(long targets) {
+    targets &= ~game.getBoard().getOccupancy(game.getSide(player));
+    while (targets != 0) {
+      int square = Long.numberOfTrailingZeros(targets);
+      targets &= targets - 1;
+      addMove(ChessBoard.row(square), ChessBoard.col(square), lineOfSight);
     }
   }
 
@@ -152,6 +125,16 @@ public abstract class AbstractChessPiece extends AbstractPiece {
     return state;
   }
 
+  @Override
+  protected SquareState getSquareState(int row, int col) {
+    if (!ChessBoard.onBoard(row, col)) return SquareState.OUT_OF_BOUNDS;
+    ChessBoard board = game.getBoard();
+    long bit = ChessBoard.bit(row, col);
+    if ((board.getOccupied() & bit) == 0) return SquareState.EMPTY;
+    if ((board.getOccupancy(game.getSide(player)) & bit) != 0) return SquareState.OWN_COLOR;
+    return SquareState.DIFF_COLOR;
+  }
+
   @Override
   public Game getGame() {
     return game;
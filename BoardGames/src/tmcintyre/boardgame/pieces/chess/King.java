@@ -22,6 +22,25 @@ public final class King extends AbstractChessPiece {
     moveCount++;
   }
 
+  /**
+   * Returns the number of times this piece has moved.
+   * 
+   * @return the number of times this piece has moved
+   */
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  /**
+   * Sets the number of times this piece has moved. Used when setting up a
+   * position part way through a game, where the moves themselves are unknown.
+   * 
+   * @param moveCount
+   */
+  public void setMoveCount(int moveCount) {
+    this.moveCount = moveCount;
+  }
+
   @Override
   public void undoMove(Move move) {
     super.undoMove(move);
@@ -40,6 +59,8 @@ public final class King extends AbstractChessPiece {
       }
     }
 
+    // Whether the king is castling out of, through or into check is decided
+    // along with the legality of its other moves.
     if (moveCount > 0) return;
     castleLeft();
     castleRight();
@@ -50,11 +71,9 @@ public final class King extends AbstractChessPiece {
     for (int i = 1; i < col; i++) {
       if (getSquareState(row, i) != SquareState.EMPTY) return;
     }
-    if (putsInCheck(row, col - 1)) return;
-    if (putsInCheck(row, col - 2)) return;
 
-    Move castleLeftMove = new Move(this, row, col - 2, null, color + " castled to the left");
-    castleLeftMove.setNextMove(new Move(game.getPieceAt(row, 0), row, 3, null, null));
+    Move castleLeftMove = new Move(this, row, col - 2, null);
+    castleLeftMove.setNextMove(new Move(game.getPieceAt(row, 0), row, 3, null));
     lineOfSight.add(castleLeftMove);
   }
 
@@ -63,12 +82,10 @@ public final class King extends AbstractChessPiece {
     for (int i = game.getBoardWidth() - 2; i > col; i--) {
       if (getSquareState(row, i) != SquareState.EMPTY) return;
     }
-    if (putsInCheck(row, col + 1)) return;
-    if (putsInCheck(row, col + 2)) return;
 
-    Move castleRightMove = new Move(this, row, col + 2, null, color + " castled to the right");
+    Move castleRightMove = new Move(this, row, col + 2, null);
     castleRightMove.setNextMove(new Move(game.getPieceAt(row, game.getBoardWidth() - 1), row, 5,
-        null, null));
+        null));
     lineOfSight.add(castleRightMove);
   }
 
@@ -76,22 +93,11 @@ public final class King extends AbstractChessPiece {
     Piece rook = game.getPieceAt(row, col);
     if (rook == null) return false;
     if (rook.getType() != PieceType.ROOK) return false;
+    if (rook.getPlayer() != player) return false;
     return (((Rook) rook).getMoveCount() == 0);
 
   }
 
-  private boolean putsInCheck(int row, int col) {
-    for (Player player : game.getPlayers()) {
-      if (player == this.player) continue;
-      for (Piece p : player.getPieces()) {
-        for (Move m : p.getLegalMoves()) {
-          if (m.destRow() == row && m.destCol() == col) return true;
-        }
-      }
-    }
-    return false;
-  }
-
   @Override
   public PieceType getType() {
     return type;
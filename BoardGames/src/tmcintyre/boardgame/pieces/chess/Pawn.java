@@ -4,6 +4,7 @@ package tmcintyre.boardgame.pieces.chess;
 import java.util.List;
 
 import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
 import tmcintyre.boardgame.game.promotiongames.ChessGame;
 import tmcintyre.boardgame.pieces.Piece;
 import tmcintyre.boardgame.pieces.PieceType;
@@ -25,6 +26,25 @@ public final class Pawn extends AbstractChessPiece {
     moveCount++;
   }
 
+  /**
+   * Returns the number of times this piece has moved.
+   * 
+   * @return the number of times this piece has moved
+   */
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  /**
+   * Sets the number of times this piece has moved. Used when setting up a
+   * position part way through a game, where the moves themselves are unknown.
+   * 
+   * @param moveCount
+   */
+  public void setMoveCount(int moveCount) {
+    this.moveCount = moveCount;
+  }
+
   @Override
   public void undoMove(Move move) {
     super.undoMove(move);
@@ -50,27 +70,41 @@ public final class Pawn extends AbstractChessPiece {
     addMoveIfCanTake(nextRow, col - 1, lineOfSight);
     addMoveIfCanTake(nextRow, col + 1, lineOfSight);
 
-    if (moveCount > 0) {
-      // Check for en-passant
-      int viableRow = isBlack ? 4 : 3;
-      if (row != viableRow) return;
-
-      if (getSquareState(nextRow, col - 1) == SquareState.EMPTY) {
-        Piece left = game.getPieceAt(row, col - 1);
-        if (testEnPassant(left)) lineOfSight.add(new Move(this, nextRow, col - 1, left));
-      }
-      if (getSquareState(nextRow, col + 1) == SquareState.EMPTY) {
-        Piece right = game.getPieceAt(row, col + 1);
-        if (testEnPassant(right)) lineOfSight.add(new Move(this, nextRow, col + 1, right));
+    // Check for en-passant
+    int enPassant = game.getEnPassantSquare();
+    if (enPassant >= 0 && ChessBoard.row(enPassant) == nextRow
+        && Math.abs(ChessBoard.col(enPassant) - col) == 1) {
+      Piece passed = game.getPieceAt(row, ChessBoard.col(enPassant));
+      if (testEnPassant(passed)) {
+        lineOfSight.add(new Move(this, nextRow, ChessBoard.col(enPassant), passed));
       }
+    }
 
-    } else {
+    if (moveCount == 0 && getSquareState(nextRow, col) == SquareState.EMPTY) {
       // Option of moving 2 squares since this is the first move.
       int nextNextRow = isBlack ? 3 : 4;
       addMoveIfCanNotTake(nextNextRow, col, lineOfSight);
     }
   }
 
+  /**
+   * Adds the move to the provided list. A move onto the last row is added
+   * once for each piece the pawn may be promoted to.
+   */
+  @Override
+  protected void addMove(int row, int col, List<Move> moves) {
+    if (row != 0 && row != game.getBoardHeight() - 1) {
+      super.addMove(row, col, moves);
+      return;
+    }
+    Piece taken = game.getPieceAt(row, col);
+    for (PieceType promotionType : game.getPromotionOptions()) {
+      Move move = new Move(this, row, col, taken);
+      move.setPromotionType(promotionType);
+      moves.add(move);
+    }
+  }
+
   private void addMoveIfCanNotTake(int row, int col, List<Move> moves) {
     if (getSquareState(row, col) != SquareState.EMPTY) return;
     addMove(row, col, moves);
@@ -84,9 +118,9 @@ public final class Pawn extends AbstractChessPiece {
   private boolean testEnPassant(Piece piece) {
     if (piece == null) return false;
     if (piece.getType() != PieceType.PAWN) return false;
-    // En-passant only valid if the pawn moved 2 squares in its first turn.
-    if (((Pawn) piece).moveCount != 1) return false;
-    return true;
+    // The game only records an en-passant square after a pawn moved 2 squares
+    // in the last move, so the pawn beside it must be the one that moved.
+    return piece.getPlayer() != player;
   }
 
   @Override
@@ -25,6 +25,16 @@ public final class Rook extends AbstractChessPiece {
     return moveCount;
   }
 
+  /**
+   * Sets the number of times this piece has moved. Used when setting up a
+   * position part way through a game, where the moves themselves are unknown.
+   * 
+   * @param moveCount
+   */
+  public void setMoveCount(int moveCount) {
+    this.moveCount = moveCount;
+  }
+
   @Override
   public void undoMove(Move move) {
     super.undoMove(move);
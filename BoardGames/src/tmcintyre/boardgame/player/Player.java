@@ -2,11 +2,13 @@ package tmcintyre.boardgame.player;
 
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import tmcintyre.boardgame.game.Game;
 import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.pieces.LocalPiece;
 import tmcintyre.boardgame.pieces.Piece;
 
 /**
@@ -23,6 +25,13 @@ import tmcintyre.boardgame.pieces.Piece;
  * to subclass an abstract Player class for each type of game implemented and
  * simplifies having the same <code>Player</code> play in different game types.
  * 
+ * <p>
+ * The legal moves of a {@link LocalPiece} are kept between calls of
+ * <code>updateLegalMoves</code> unless the <code>Game</code> reports, through
+ * <code>squareChanged</code>, a change to a square the piece depends on, or the
+ * pieces' move context changes. The moves of other pieces are generated on
+ * every call.
+ * 
  * @author Tom McIntyre
  * 
  */
@@ -33,9 +42,22 @@ public class Player {
 
   protected final String name;
 
-  protected final List<Piece> pieces = new LinkedList<Piece>();
+  protected final List<Piece> pieces = new ArrayList<Piece>();
   protected final List<Move> allLegalMoves = new LinkedList<Move>();
 
+  // The squares changed since the last update of the legal moves. Beyond
+  // MAX_CHANGES it is quicker to generate every piece's moves again
+  private static final int MAX_CHANGES = 32;
+  private final int[] changedRows = new int[MAX_CHANGES];
+  private final int[] changedCols = new int[MAX_CHANGES];
+  private int changes;
+  private boolean allStale = true;
+  private Object moveContext;
+
+  // The position key the legal moves were last updated for, if valid
+  private long legalMovesKey;
+  private boolean legalMovesKeyValid;
+
   public Player(Color color) {
     this(color, "Player " + defaultPlayerCount++);
   }
@@ -81,6 +103,8 @@ public class Player {
     for (Piece piece : pieces) {
       piece.setColor(color);
     }
+    allStale = true;
+    legalMovesKeyValid = false;
   }
 
   /**
@@ -121,13 +145,103 @@ public class Player {
    * <p>
    * For convenience the <code>Player</code> also keeps track of all the legal
    * moves available to all of its pieces.
+   * 
+   * <p>
+   * A <code>LocalPiece</code> generates its moves again only if a square it
+   * depends on has changed since the last update, or if the move context of
+   * the pieces has. Its <code>getLegalMoves</code> is correct either way.
    */
   public void updateLegalMoves() {
+    legalMovesKeyValid = false;
+    Object context = getMoveContext();
+    if (context != moveContext) allStale = true;
+
     allLegalMoves.clear();
     for (Piece piece : pieces) {
-      piece.updateLegalMoves();
-      allLegalMoves.addAll(piece.getLegalMoves());
+      if (allStale || !(piece instanceof LocalPiece) || isStale((LocalPiece) piece)) {
+        piece.updateLegalMoves();
+      }
+      // Added one by one, as addAll copies each list to an array first
+      for (Move move : piece.getLegalMoves()) {
+        allLegalMoves.add(move);
+      }
+    }
+
+    changes = 0;
+    allStale = false;
+    moveContext = context;
+  }
+
+  /**
+   * Updates the legal moves as <code>updateLegalMoves</code> does, unless they
+   * were last updated by this method for a position with the same key, in
+   * which case they are still up to date.
+   * 
+   * <p>
+   * This lets a <code>Game</code> that has generated a player's moves to see
+   * whether the game is won use them again when that player's turn starts.
+   * The key must describe everything the legal moves depend on, including the
+   * player to move.
+   * 
+   * @param positionKey
+   *          the key of the current position
+   */
+  public void updateLegalMoves(long positionKey) {
+    if (legalMovesKeyValid && positionKey == legalMovesKey) return;
+    updateLegalMoves();
+    legalMovesKey = positionKey;
+    legalMovesKeyValid = true;
+  }
+
+  /**
+   * Informs this <code>Player</code> that a piece has been put on, or taken
+   * off, the specified square. Any <code>LocalPiece</code> that depends on the
+   * square will generate its legal moves again at the next update, even if
+   * the position key is back to the one the moves were kept for, as it is
+   * once a move has been undone.
+   * 
+   * @param row
+   * @param col
+   */
+  public void squareChanged(int row, int col) {
+    legalMovesKeyValid = false;
+    if (allStale) return;
+    if (changes == MAX_CHANGES) {
+      allStale = true;
+      return;
+    }
+    changedRows[changes] = row;
+    changedCols[changes] = col;
+    changes++;
+  }
+
+  /**
+   * Makes every <code>Piece</code> generate its legal moves again at the next
+   * update, for a change that <code>squareChanged</code> cannot describe. A
+   * <code>Game</code> that has a piece generate its moves itself, rather than
+   * through <code>updateLegalMoves</code>, must call this afterwards.
+   */
+  public void invalidateLegalMoves() {
+    allStale = true;
+    legalMovesKeyValid = false;
+  }
+
+  private boolean isStale(LocalPiece piece) {
+    for (int i = 0; i < changes; i++) {
+      if (piece.dependsOn(changedRows[i], changedCols[i])) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the move context of this player's pieces, which is the same for
+   * each <code>LocalPiece</code>.
+   */
+  private Object getMoveContext() {
+    for (Piece piece : pieces) {
+      if (piece instanceof LocalPiece) return ((LocalPiece) piece).getMoveContext();
     }
+    return null;
   }
 
   /**
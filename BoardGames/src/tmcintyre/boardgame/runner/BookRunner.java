@@ -0,0 +1,63 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.File;
+import java.io.IOException;
+
+import tmcintyre.boardgame.engine.OpeningBook;
+import tmcintyre.boardgame.engine.OpeningBookBuilder;
+import tmcintyre.boardgame.pgn.PgnReader;
+
+/**
+ * Builds an {@link OpeningBook} from a PGN file from the command line.
+ * 
+ * <pre>
+ * BookRunner &lt;pgnFile&gt; &lt;bookFile&gt; [--ply n] [--min games]
+ * </pre>
+ * 
+ * The book takes the first <tt>n</tt> moves of each game, by default
+ * <code>OpeningBookBuilder.DEFAULT_MAX_PLY</code>, and keeps the moves played
+ * in at least the given number of games, by default 1.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class BookRunner {
+
+  public static void main(String[] args) {
+    String pgn = null;
+    String book = null;
+    int maxPly = OpeningBookBuilder.DEFAULT_MAX_PLY;
+    int minGames = 1;
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--ply") && i + 1 < args.length) {
+        maxPly = Integer.parseInt(args[++i]);
+      } else if (arg.equals("--min") && i + 1 < args.length) {
+        minGames = Integer.parseInt(args[++i]);
+      } else if (pgn == null) {
+        pgn = arg;
+      } else {
+        book = arg;
+      }
+    }
+    if (book == null) {
+      System.err.println("Usage: BookRunner <pgnFile> <bookFile> [--ply n] [--min games]");
+      System.exit(2);
+    }
+
+    long start = System.nanoTime();
+    OpeningBookBuilder builder = new OpeningBookBuilder(maxPly, minGames);
+    try {
+      builder.addGames(new PgnReader(new File(pgn)));
+      int entries = builder.write(new File(book));
+      System.out.println("Games: " + builder.getGames() + "  Skipped moves: "
+          + builder.getSkippedMoves() + "  Entries: " + entries + "  Time: "
+          + (System.nanoTime() - start) / 1000000 + "ms");
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+    }
+  }
+
+}
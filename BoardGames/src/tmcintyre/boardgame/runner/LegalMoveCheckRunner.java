@@ -0,0 +1,74 @@
+package tmcintyre.boardgame.runner;
+
+import java.util.Collections;
+import java.util.Map;
+
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.perft.LegalMoveCheck;
+
+/**
+ * Runs a {@link LegalMoveCheck} from the command line.
+ * 
+ * <pre>
+ * LegalMoveCheckRunner &lt;game&gt; [--rules name] [--games n] [--max-plies plies] [--seed n]
+ * </pre>
+ * 
+ * The game is a <code>GameType</code>, such as <tt>checkers</tt>, and the
+ * rules are the checkers variant, such as <tt>"American Checkers"</tt>, by
+ * default the first. Prints the first mismatches found, and exits with status
+ * 1 if there were any.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class LegalMoveCheckRunner {
+
+  private static final int DEFAULT_GAMES = 200;
+  private static final int DEFAULT_MAX_PLIES = 300;
+  private static final int MISMATCHES_SHOWN = 10;
+
+  public static void main(String[] args) {
+    GameType type = null;
+    Map<String, String> options = null;
+    int games = DEFAULT_GAMES;
+    int maxPlies = DEFAULT_MAX_PLIES;
+    long seed = System.nanoTime();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        boolean hasValue = i + 1 < args.length;
+        if (arg.equals("--rules") && hasValue) {
+          options = Collections.singletonMap("Checkers Rules", args[++i]);
+        } else if (arg.equals("--games") && hasValue) {
+          games = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--max-plies") && hasValue) {
+          maxPlies = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--seed") && hasValue) {
+          seed = Long.parseLong(args[++i]);
+        } else {
+          type = GameType.valueOf(arg.toUpperCase());
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      type = null;
+    }
+    if (type == null) {
+      System.err.println("Usage: LegalMoveCheckRunner <game> [--rules name] [--games n]"
+          + " [--max-plies plies] [--seed n]");
+      System.exit(2);
+    }
+
+    LegalMoveCheck check = new LegalMoveCheck(type, options);
+    int mismatches = check.run(games, maxPlies, seed);
+    for (String mismatch : check.getMismatches().subList(0, Math.min(MISMATCHES_SHOWN,
+        mismatches))) {
+      System.out.println(mismatch);
+    }
+    System.out.println("Seed: " + seed + "  Positions: " + check.getPositions()
+        + "  Mismatches: " + mismatches);
+    System.exit(mismatches == 0 ? 0 : 1);
+  }
+
+}
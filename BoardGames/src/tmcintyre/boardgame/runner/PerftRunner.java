@@ -0,0 +1,166 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import tmcintyre.boardgame.game.promotiongames.Epd;
+import tmcintyre.boardgame.game.promotiongames.EpdReader;
+import tmcintyre.boardgame.game.promotiongames.Fen;
+import tmcintyre.boardgame.perft.Perft;
+import tmcintyre.boardgame.perft.PerftSuite;
+
+/**
+ * Runs {@link Perft} from the command line.
+ * 
+ * <pre>
+ * PerftRunner &lt;depth&gt; [fen] [--divide] [--threads n] [--hash mb] [--objects]
+ * PerftRunner --suite &lt;maxDepth&gt; [--threads n] [--hash mb] [--objects]
+ * PerftRunner --epd &lt;file&gt; &lt;maxDepth&gt; [--threads n] [--hash mb] [--objects]
+ * </pre>
+ * 
+ * The first form counts a single position, by default the starting position,
+ * optionally printing the count below each root move. The second checks every
+ * position of the {@link PerftSuite} up to the given depth and exits with
+ * status 1 if any count is wrong. The third does the same for each position of
+ * an EPD file, whose expected counts are given by operations <tt>D1</tt>,
+ * <tt>D2</tt> and so on.
+ * 
+ * <p>
+ * Moves are played as packed ints, as the engine plays them, unless
+ * <tt>--objects</tt> is given, in which case <code>Move</code> objects are
+ * played through <code>doMove</code> and <code>undoMove</code>, as the GUI
+ * and PGN replay play them.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class PerftRunner {
+
+  public static void main(String[] args) {
+    int depth = -1;
+    String fen = Fen.START_POSITION;
+    boolean divide = false;
+    boolean suite = false;
+    String epd = null;
+    int threads = 1;
+    int hash = 0;
+    boolean objects = false;
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--divide")) {
+        divide = true;
+      } else if (arg.equals("--objects")) {
+        objects = true;
+      } else if (arg.equals("--suite")) {
+        suite = true;
+      } else if (arg.equals("--epd") && i + 1 < args.length) {
+        epd = args[++i];
+      } else if (arg.equals("--threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (arg.equals("--hash") && i + 1 < args.length) {
+        hash = Integer.parseInt(args[++i]);
+      } else if (depth < 0 && arg.matches("\\d+")) {
+        depth = Integer.parseInt(arg);
+      } else {
+        fen = arg;
+      }
+    }
+    if (depth < 0) {
+      System.err.println("Usage: PerftRunner <depth> [fen] [--divide] [--threads n] [--hash mb]"
+          + " [--objects]");
+      System.err.println("       PerftRunner --suite <maxDepth> [--threads n] [--hash mb]"
+          + " [--objects]");
+      System.err.println("       PerftRunner --epd <file> <maxDepth> [--threads n] [--hash mb]"
+          + " [--objects]");
+      System.exit(2);
+    }
+
+    if (epd != null) {
+      try {
+        System.exit(runEpd(new File(epd), depth, threads, hash, objects) ? 0 : 1);
+      } catch (IOException e) {
+        System.err.println("Cannot read " + epd + ": " + e.getMessage());
+        System.exit(2);
+      }
+    }
+
+    if (suite) {
+      System.exit(runSuite(depth, threads, hash, objects) ? 0 : 1);
+    }
+
+    long start = System.nanoTime();
+    long nodes;
+    if (divide) {
+      nodes = 0;
+      Map<String, Long> counts = Perft.divide(fen, depth, threads, hash, objects);
+      for (Map.Entry<String, Long> entry : counts.entrySet()) {
+        System.out.println(entry.getKey() + ": " + entry.getValue());
+        nodes += entry.getValue();
+      }
+      System.out.println();
+    } else {
+      nodes = Perft.perft(fen, depth, threads, hash, objects);
+    }
+    report(nodes, System.nanoTime() - start);
+  }
+
+  private static boolean runSuite(int maxDepth, int threads, int hash, boolean objects) {
+    boolean passed = true;
+    for (PerftSuite position : PerftSuite.values()) {
+      System.out.println(position + " " + position.getFen());
+      for (int depth = 1; depth <= Math.min(maxDepth, position.getMaxDepth()); depth++) {
+        long start = System.nanoTime();
+        long nodes = Perft.perft(position.getFen(), depth, threads, hash, objects);
+        long time = System.nanoTime() - start;
+        long expected = position.getNodes(depth);
+        System.out.print("  depth " + depth + ": " + (nodes == expected ? "ok   " : "FAIL ")
+            + (nodes == expected ? "" : "(expected " + expected + ") "));
+        report(nodes, time);
+        passed &= nodes == expected;
+      }
+    }
+    System.out.println(passed ? "All positions passed" : "Some positions FAILED");
+    return passed;
+  }
+
+  private static boolean runEpd(File file, int maxDepth, int threads, int hash,
+      boolean objects) throws IOException {
+    boolean passed = true;
+    int positions = 0;
+    long totalNodes = 0;
+    long start = System.nanoTime();
+    EpdReader reader = new EpdReader(file);
+    try {
+      for (Epd position = reader.read(); position != null; position = reader.read()) {
+        positions++;
+        String fen = position.getFen().toString();
+        for (int depth = 1; depth <= maxDepth; depth++) {
+          String expected = position.getOperation("D" + depth);
+          if (expected == null) break;
+          long nodes = Perft.perft(fen, depth, threads, hash, objects);
+          totalNodes += nodes;
+          if (nodes != Long.parseLong(expected)) {
+            System.out.println("Line " + reader.getLineNumber() + " depth " + depth + ": FAIL "
+                + nodes + " (expected " + expected + ") " + fen);
+            passed = false;
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    System.out.println(positions + " positions");
+    report(totalNodes, System.nanoTime() - start);
+    System.out.println(passed ? "All positions passed" : "Some positions FAILED");
+    return passed;
+  }
+
+  private static void report(long nodes, long nanos) {
+    long millis = Math.max(1, nanos / 1000000);
+    System.out.println("Nodes: " + nodes + "  Time: " + millis + "ms  NPS: " + nodes * 1000
+        / millis);
+  }
+
+}
@@ -0,0 +1,59 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.File;
+import java.io.IOException;
+
+import tmcintyre.boardgame.pgn.PgnValidator;
+
+/**
+ * Checks from the command line that every game of a PGN file can be played
+ * out, and reports how many games a second were replayed.
+ * 
+ * <pre>
+ * PgnRunner &lt;file&gt; [--threads n]
+ * </pre>
+ * 
+ * Exits with status 1 if any game is not valid.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class PgnRunner {
+
+  public static void main(String[] args) {
+    String file = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else {
+        file = arg;
+      }
+    }
+    if (file == null) {
+      System.err.println("Usage: PgnRunner <file> [--threads n]");
+      System.exit(2);
+    }
+
+    PgnValidator.Result result;
+    try {
+      result = PgnValidator.validate(new File(file), threads);
+    } catch (IOException e) {
+      System.err.println("Cannot read " + file + ": " + e.getMessage());
+      System.exit(2);
+      return;
+    }
+
+    for (String error : result.getErrors()) {
+      System.out.println(error);
+    }
+    System.out.println("Games: " + result.getGames() + "  Valid: " + result.getValidGames()
+        + "  Invalid: " + result.getInvalidGames());
+    System.out.println("Time: " + Math.max(1, result.getNanos() / 1000000) + "ms  Games/s: "
+        + (long) result.getGamesPerSecond());
+    System.exit(result.getInvalidGames() == 0 ? 0 : 1);
+  }
+
+}
@@ -0,0 +1,121 @@
+package tmcintyre.boardgame.runner;
+
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.tournament.Contestant;
+import tmcintyre.boardgame.tournament.Sprt;
+import tmcintyre.boardgame.tournament.SprtMatch;
+import tmcintyre.boardgame.tournament.Tournament;
+
+/**
+ * Tests from the command line whether a candidate is stronger than a
+ * baseline, playing pairs of games until a sequential probability ratio test
+ * is decided, and prints the difference in Elo with its error.
+ * 
+ * <pre>
+ * SprtRunner &lt;game&gt; &lt;candidate&gt; &lt;baseline&gt; [--elo0 e] [--elo1 e] [--alpha a]
+ *     [--beta b] [--max-pairs n] [--opening plies] [--max-plies plies] [--threads n]
+ *     [--seed n] [--tablebases dir]
+ * </pre>
+ * 
+ * The contestants are described as to <code>TournamentRunner</code>. The
+ * hypotheses default to 0 and 5 Elo, and both chances of error to 5%. Exits
+ * with status 0 if the candidate is accepted as stronger, and 1 if not. Chess
+ * games are adjudicated by the endgame tables in the given directory, if any.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class SprtRunner {
+
+  private static final String USAGE = "Usage: SprtRunner <game> <candidate> <baseline>"
+      + " [--elo0 e] [--elo1 e] [--alpha a] [--beta b] [--max-pairs n] [--opening plies]"
+      + " [--max-plies plies] [--threads n] [--seed n] [--tablebases dir]";
+
+  // Pairs between reports of progress
+  private static final int REPORT_INTERVAL = 100;
+
+  public static void main(String[] args) {
+    GameType type = null;
+    Contestant candidate = null;
+    Contestant baseline = null;
+    double elo0 = 0;
+    double elo1 = 5;
+    double alpha = 0.05;
+    double beta = 0.05;
+    int maxPairs = SprtMatch.DEFAULT_MAX_PAIRS;
+    int openingPlies = Tournament.DEFAULT_OPENING_PLIES;
+    int maxPlies = Tournament.DEFAULT_MAX_PLIES;
+    int threads = Runtime.getRuntime().availableProcessors();
+    long seed = System.nanoTime();
+    String tablebasePath = null;
+    Sprt sprt = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        boolean hasValue = i + 1 < args.length;
+        if (arg.equals("--elo0") && hasValue) {
+          elo0 = Double.parseDouble(args[++i]);
+        } else if (arg.equals("--elo1") && hasValue) {
+          elo1 = Double.parseDouble(args[++i]);
+        } else if (arg.equals("--alpha") && hasValue) {
+          alpha = Double.parseDouble(args[++i]);
+        } else if (arg.equals("--beta") && hasValue) {
+          beta = Double.parseDouble(args[++i]);
+        } else if (arg.equals("--max-pairs") && hasValue) {
+          maxPairs = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--opening") && hasValue) {
+          openingPlies = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--max-plies") && hasValue) {
+          maxPlies = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--threads") && hasValue) {
+          threads = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--seed") && hasValue) {
+          seed = Long.parseLong(args[++i]);
+        } else if (arg.equals("--tablebases") && hasValue) {
+          tablebasePath = args[++i];
+        } else if (type == null) {
+          type = GameType.valueOf(arg.toUpperCase());
+        } else if (candidate == null) {
+          candidate = TournamentRunner.parseContestant(arg, 1);
+        } else {
+          baseline = TournamentRunner.parseContestant(arg, 2);
+        }
+      }
+      sprt = new Sprt(elo0, elo1, alpha, beta);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    if (baseline == null) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    SprtMatch match = new SprtMatch(type, candidate, baseline, sprt);
+    match.setMaxPairs(maxPairs);
+    match.setOpeningPlies(openingPlies);
+    match.setMaxPlies(maxPlies);
+    match.setThreads(threads);
+    match.setSeed(seed);
+    if (tablebasePath != null) match.setTablebases(TournamentRunner.openTablebases(tablebasePath));
+    match.setListener(new SprtMatch.Listener() {
+      @Override
+      public void pairCompleted(Sprt sprt) {
+        if (sprt.getPairs() % REPORT_INTERVAL == 0) System.out.println(sprt);
+      }
+    });
+    System.out.println(candidate.getName() + " vs " + baseline.getName() + ", " + type
+        + ", seed " + seed + ", " + threads + " threads");
+
+    long start = System.nanoTime();
+    Sprt.Status status = match.run();
+    long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+    System.out.println(sprt);
+    System.out.println("Games: " + 2 * sprt.getPairs() + "  Time: " + millis + "ms  Games/s: "
+        + 2000 * sprt.getPairs() / millis);
+    System.exit(status == Sprt.Status.ACCEPT_H1 ? 0 : 1);
+  }
+
+}
@@ -0,0 +1,65 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.File;
+import java.io.IOException;
+
+import tmcintyre.boardgame.tablebase.Material;
+import tmcintyre.boardgame.tablebase.Tablebase;
+import tmcintyre.boardgame.tablebase.TablebaseGenerator;
+
+/**
+ * Makes endgame {@link Tablebase}s from the command line.
+ * 
+ * <pre>
+ * TablebaseRunner &lt;directory&gt; &lt;ending&gt;... [--threads n]
+ * </pre>
+ * 
+ * Each ending is named like <tt>KRPvKR</tt>. The tables of the endings, and of
+ * any endings they lead to, are made in the directory unless already there.
+ * The generator uses one thread per processor by default.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class TablebaseRunner {
+
+  public static void main(String[] args) {
+    String directory = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int first = args.length;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (directory == null) {
+        directory = args[i];
+        first = i + 1;
+      }
+    }
+    if (directory == null || first >= args.length) {
+      System.err.println("Usage: TablebaseRunner <directory> <ending>... [--threads n]");
+      System.exit(2);
+    }
+
+    TablebaseGenerator generator = new TablebaseGenerator(new File(directory), threads);
+    for (int i = first; i < args.length; i++) {
+      if (args[i].equals("--threads")) {
+        i++;
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        Tablebase table = generator.generate(Material.parse(args[i]));
+        System.out.println(table + "  Longest mate: " + table.getLongest() + " plies  Time: "
+            + (System.nanoTime() - start) / 1000000 + "ms");
+      } catch (IllegalArgumentException e) {
+        System.err.println(e.getMessage());
+        System.exit(2);
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+        System.exit(2);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import tmcintyre.boardgame.engine.Engine;
+import tmcintyre.boardgame.engine.MaterialEvaluator;
+import tmcintyre.boardgame.engine.SearchLimits;
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.tablebase.Tablebases;
+import tmcintyre.boardgame.tournament.Contestant;
+import tmcintyre.boardgame.tournament.EngineContestant;
+import tmcintyre.boardgame.tournament.RandomContestant;
+import tmcintyre.boardgame.tournament.Schedule;
+import tmcintyre.boardgame.tournament.Tournament;
+import tmcintyre.boardgame.tournament.TournamentResult;
+
+/**
+ * Plays a tournament from the command line and prints the results.
+ * 
+ * <pre>
+ * TournamentRunner &lt;game&gt; &lt;contestant&gt;... [--games n] [--schedule round_robin|gauntlet]
+ *     [--opening plies] [--max-plies plies] [--threads n] [--seed n] [--tablebases dir]
+ * </pre>
+ * 
+ * The game is a <code>GameType</code>, such as <tt>chess</tt>. Each
+ * contestant is <tt>random</tt>, or <tt>depth:n</tt>, <tt>nodes:n</tt> or
+ * <tt>time:millis</tt> for an engine searching to that limit every move,
+ * followed by <tt>/material</tt> for an engine that counts only material. In
+ * a gauntlet the first contestant plays each of the others. Chess games are
+ * adjudicated by the endgame tables in the given directory, if any.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class TournamentRunner {
+
+  private static final String USAGE = "Usage: TournamentRunner <game> <contestant>... [--games n]"
+      + " [--schedule round_robin|gauntlet] [--opening plies] [--max-plies plies]"
+      + " [--threads n] [--seed n] [--tablebases dir]";
+
+  public static void main(String[] args) {
+    GameType type = null;
+    List<Contestant> contestants = new ArrayList<Contestant>();
+    int games = Tournament.DEFAULT_GAMES_PER_PAIRING;
+    Schedule schedule = Schedule.ROUND_ROBIN;
+    int openingPlies = Tournament.DEFAULT_OPENING_PLIES;
+    int maxPlies = Tournament.DEFAULT_MAX_PLIES;
+    int threads = Runtime.getRuntime().availableProcessors();
+    long seed = System.nanoTime();
+    String tablebasePath = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        boolean hasValue = i + 1 < args.length;
+        if (arg.equals("--games") && hasValue) {
+          games = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--schedule") && hasValue) {
+          schedule = Schedule.valueOf(args[++i].toUpperCase());
+        } else if (arg.equals("--opening") && hasValue) {
+          openingPlies = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--max-plies") && hasValue) {
+          maxPlies = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--threads") && hasValue) {
+          threads = Integer.parseInt(args[++i]);
+        } else if (arg.equals("--seed") && hasValue) {
+          seed = Long.parseLong(args[++i]);
+        } else if (arg.equals("--tablebases") && hasValue) {
+          tablebasePath = args[++i];
+        } else if (type == null) {
+          type = GameType.valueOf(arg.toUpperCase());
+        } else {
+          contestants.add(parseContestant(arg, contestants.size() + 1));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    if (type == null || contestants.size() < 2) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    Tournament tournament = new Tournament(type, contestants);
+    tournament.setGamesPerPairing(games);
+    tournament.setSchedule(schedule);
+    tournament.setOpeningPlies(openingPlies);
+    tournament.setMaxPlies(maxPlies);
+    tournament.setThreads(threads);
+    tournament.setSeed(seed);
+    if (tablebasePath != null) tournament.setTablebases(openTablebases(tablebasePath));
+    System.out.println(type + ", " + schedule + ", seed " + seed + ", " + threads + " threads");
+    TournamentResult result = tournament.run();
+    System.out.print(result);
+  }
+
+  /**
+   * Returns the endgame tables in the provided directory, or exits if they
+   * cannot be read.
+   */
+  static Tablebases openTablebases(String path) {
+    try {
+      Tablebases tablebases = new Tablebases(new File(path));
+      System.out.println("Tablebases: " + tablebases.size());
+      return tablebases;
+    } catch (IOException e) {
+      System.err.println("Cannot read tablebases: " + e.getMessage());
+      System.exit(2);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the contestant described by the provided argument, named by it and
+   * its position so that the same description can be entered twice.
+   */
+  static Contestant parseContestant(String arg, int number) {
+    String name = number + ":" + arg;
+    if (arg.equals("random")) return new RandomContestant(name);
+
+    String limit = arg;
+    boolean material = false;
+    if (arg.endsWith("/material")) {
+      limit = arg.substring(0, arg.length() - "/material".length());
+      material = true;
+    }
+    int colon = limit.indexOf(':');
+    if (colon < 0) throw new IllegalArgumentException("Unknown contestant: " + arg);
+    String kind = limit.substring(0, colon);
+    long value = Long.parseLong(limit.substring(colon + 1));
+    SearchLimits limits = new SearchLimits();
+    if (kind.equals("depth")) {
+      limits.setDepth((int) value);
+    } else if (kind.equals("nodes")) {
+      limits.setNodes(value);
+    } else if (kind.equals("time")) {
+      limits.setSoftTime(value);
+      limits.setHardTime(value);
+    } else {
+      throw new IllegalArgumentException("Unknown contestant: " + arg);
+    }
+    if (!material) return new EngineContestant(name, limits);
+    return new EngineContestant(name, limits) {
+      @Override
+      protected Engine newEngine(int hashMegabytes) {
+        return new Engine(hashMegabytes, new MaterialEvaluator());
+      }
+    };
+  }
+
+}
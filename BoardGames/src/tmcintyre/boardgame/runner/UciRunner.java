@@ -0,0 +1,27 @@
+package tmcintyre.boardgame.runner;
+
+import java.io.IOException;
+
+import tmcintyre.boardgame.engine.UciProtocol;
+
+/**
+ * Runs the engine as a UCI engine on standard input and output, for chess GUIs
+ * and match tools, without opening any windows.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class UciRunner {
+
+  public static void main(String[] args) {
+    // Nothing in the engine needs a display, so none is required
+    System.setProperty("java.awt.headless", "true");
+    try {
+      new UciProtocol(System.in, System.out).run();
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+    }
+  }
+
+}
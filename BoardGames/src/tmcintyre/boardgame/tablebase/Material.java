@@ -0,0 +1,312 @@
+package tmcintyre.boardgame.tablebase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+
+/**
+ * The pieces of a chess ending, such as <tt>KQvKR</tt>: each side has a king
+ * and up to <code>MAX_PIECES</code> pieces in all.
+ *
+ * <p>
+ * The pieces are numbered in a fixed order, by <i>slot</i>: the white king,
+ * the black king, then white's other pieces and then black's, each strongest
+ * first. A {@link Tablebase} lists the squares of a position in this order.
+ *
+ * <p>
+ * An ending and its colour-reversed twin (<tt>KvKQ</tt>) share one table,
+ * made for the <i>canonical</i> of the two, in which white has the stronger
+ * pieces.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public final class Material {
+
+  /** The most pieces, kings included, in an ending that has a table. */
+  public static final int MAX_PIECES = 5;
+
+  private static final String LETTERS = "PNBRQK";
+  private static final int[] VALUES = { 1, 3, 3, 5, 9 };
+  private static final int SIDE_CODES = 216;
+
+  // The type indices of each side's pieces other than the king, strongest first
+  private final int[][] pieces;
+  private final String name;
+
+  private Material(int[] white, int[] black) {
+    pieces = new int[][] { sorted(white), sorted(black) };
+    name = "K" + letters(pieces[0]) + "vK" + letters(pieces[1]);
+  }
+
+  /**
+   * Parses the name of an ending, such as <tt>KRPvKR</tt>. Each side is
+   * given by its pieces' letters, starting with its king, white first.
+   *
+   * @param name
+   * @return the ending
+   * @throws IllegalArgumentException
+   *           if the name is not valid, or has more than
+   *           <code>MAX_PIECES</code> pieces
+   */
+  public static Material parse(String name) {
+    String[] sides = name.toUpperCase().split("V", -1);
+    if (sides.length != 2 || !sides[0].startsWith("K") || !sides[1].startsWith("K")) {
+      throw new IllegalArgumentException("Bad material: " + name);
+    }
+    int[][] pieces = new int[2][];
+    for (int side = 0; side < 2; side++) {
+      String letters = sides[side].substring(1);
+      pieces[side] = new int[letters.length()];
+      for (int i = 0; i < letters.length(); i++) {
+        int type = LETTERS.indexOf(letters.charAt(i));
+        if (type < 0 || type == ChessBoard.KING) {
+          throw new IllegalArgumentException("Bad material: " + name);
+        }
+        pieces[side][i] = type;
+      }
+    }
+    Material material = new Material(pieces[0], pieces[1]);
+    if (material.getPieceCount() > MAX_PIECES) {
+      throw new IllegalArgumentException("Too many pieces: " + name);
+    }
+    return material;
+  }
+
+  /**
+   * Returns the ending with the given pieces, kings included.
+   *
+   * @param types
+   *          the <code>ChessBoard</code> type index of each piece
+   * @param sides
+   *          the side of each piece
+   * @param count
+   *          the number of pieces
+   * @return the ending
+   */
+  static Material of(int[] types, int[] sides, int count) {
+    int[][] pieces = new int[2][count];
+    int[] counts = new int[2];
+    for (int i = 0; i < count; i++) {
+      if (types[i] != ChessBoard.KING) pieces[sides[i]][counts[sides[i]]++] = types[i];
+    }
+    return new Material(Arrays.copyOf(pieces[0], counts[0]), Arrays.copyOf(pieces[1], counts[1]));
+  }
+
+  private static int[] sorted(int[] types) {
+    int[] sorted = types.clone();
+    Arrays.sort(sorted);
+    for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+      int type = sorted[i];
+      sorted[i] = sorted[j];
+      sorted[j] = type;
+    }
+    return sorted;
+  }
+
+  private static String letters(int[] types) {
+    StringBuilder letters = new StringBuilder();
+    for (int type : types) {
+      letters.append(LETTERS.charAt(type));
+    }
+    return letters.toString();
+  }
+
+  /**
+   * Returns the number of pieces, kings included.
+   *
+   * @return the number of pieces
+   */
+  public int getPieceCount() {
+    return 2 + pieces[0].length + pieces[1].length;
+  }
+
+  public boolean hasPawns() {
+    return contains(pieces[0], ChessBoard.PAWN) || contains(pieces[1], ChessBoard.PAWN);
+  }
+
+  private static boolean contains(int[] types, int type) {
+    for (int t : types) {
+      if (t == type) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the type index of the piece in each slot.
+   *
+   * @return the types of the pieces, by slot
+   */
+  int[] getSlotTypes() {
+    int[] types = new int[getPieceCount()];
+    types[0] = ChessBoard.KING;
+    types[1] = ChessBoard.KING;
+    System.arraycopy(pieces[0], 0, types, 2, pieces[0].length);
+    System.arraycopy(pieces[1], 0, types, 2 + pieces[0].length, pieces[1].length);
+    return types;
+  }
+
+  /**
+   * Returns the side of the piece in each slot.
+   *
+   * @return the sides of the pieces, by slot
+   */
+  int[] getSlotSides() {
+    int[] sides = new int[getPieceCount()];
+    sides[1] = ChessBoard.BLACK;
+    Arrays.fill(sides, 2 + pieces[0].length, sides.length, ChessBoard.BLACK);
+    return sides;
+  }
+
+  /**
+   * Returns this ending with the colours reversed.
+   *
+   * @return the colour-reversed ending
+   */
+  public Material flip() {
+    return new Material(pieces[1], pieces[0]);
+  }
+
+  /**
+   * Returns <tt>true</tt> if this is the one of the ending and its
+   * colour-reversed twin that has a table: the one where white has more
+   * material or, with equal material, the stronger pieces.
+   *
+   * @return <tt>true</tt> if this ending is canonical
+   */
+  public boolean isCanonical() {
+    int difference = value(pieces[0]) - value(pieces[1]);
+    if (difference != 0) return difference > 0;
+    if (pieces[0].length != pieces[1].length) return pieces[0].length > pieces[1].length;
+    for (int i = 0; i < pieces[0].length; i++) {
+      if (pieces[0][i] != pieces[1][i]) return pieces[0][i] > pieces[1][i];
+    }
+    return true;
+  }
+
+  private static int value(int[] types) {
+    int value = 0;
+    for (int type : types) {
+      value += VALUES[type];
+    }
+    return value;
+  }
+
+  /**
+   * Returns the canonical one of this ending and its colour-reversed twin.
+   *
+   * @return the canonical ending
+   */
+  public Material canonical() {
+    return isCanonical() ? this : flip();
+  }
+
+  /**
+   * Returns a number, less than <code>getCodeCount()</code>, that is
+   * different for every ending.
+   *
+   * @return the code of this ending
+   */
+  int code() {
+    return sideCode(pieces[0]) * SIDE_CODES + sideCode(pieces[1]);
+  }
+
+  static int getCodeCount() {
+    return SIDE_CODES * SIDE_CODES;
+  }
+
+  /**
+   * Returns the code of the ending with the provided pieces, as
+   * <code>code</code> would for its <code>Material</code>, without making one.
+   * 
+   * @param white
+   *          white's bitboards, by <code>ChessBoard</code> type index
+   * @param black
+   *          black's bitboards
+   * @return the code of the ending
+   */
+  static int code(long[] white, long[] black) {
+    return sideCode(white) * SIDE_CODES + sideCode(black);
+  }
+
+  // Base 6 digits from 1 to 5, so that no two lists of up to three share a code
+  private static int sideCode(int[] types) {
+    int code = 0;
+    for (int type : types) {
+      code = code * 6 + type + 1;
+    }
+    return code;
+  }
+
+  private static int sideCode(long[] pieces) {
+    int code = 0;
+    for (int type = ChessBoard.QUEEN; type >= ChessBoard.PAWN; type--) {
+      for (int count = Long.bitCount(pieces[type]); count > 0; count--) {
+        code = code * 6 + type + 1;
+      }
+    }
+    return code;
+  }
+
+  /**
+   * Returns the canonical endings that a capture or a promotion, or both at
+   * once, leads to from this one. The bare kings are left out, as that ending
+   * is always drawn.
+   *
+   * @return the endings one move away
+   */
+  public List<Material> getChildren() {
+    List<Material> children = new ArrayList<Material>();
+    for (int side = 0; side < 2; side++) {
+      int[] own = pieces[side];
+      int[] other = pieces[1 - side];
+      for (int captured = 0; captured < other.length; captured++) {
+        addChild(children, side, own.clone(), remove(other, captured));
+      }
+      for (int promoted = 0; promoted < own.length; promoted++) {
+        if (own[promoted] != ChessBoard.PAWN) continue;
+        for (int type = ChessBoard.KNIGHT; type <= ChessBoard.QUEEN; type++) {
+          int[] newOwn = own.clone();
+          newOwn[promoted] = type;
+          // Promoting with or without a capture
+          for (int captured = -1; captured < other.length; captured++) {
+            addChild(children, side, newOwn, remove(other, captured));
+          }
+        }
+      }
+    }
+    return children;
+  }
+
+  private static void addChild(List<Material> children, int side, int[] own, int[] other) {
+    Material child = side == ChessBoard.WHITE ? new Material(own, other) : new Material(other, own);
+    child = child.canonical();
+    if (child.getPieceCount() > 2 && !children.contains(child)) children.add(child);
+  }
+
+  private static int[] remove(int[] types, int index) {
+    if (index < 0) return types.clone();
+    int[] removed = new int[types.length - 1];
+    System.arraycopy(types, 0, removed, 0, index);
+    System.arraycopy(types, index + 1, removed, index, removed.length - index);
+    return removed;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Material && ((Material) o).name.equals(name);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
@@ -0,0 +1,212 @@
+package tmcintyre.boardgame.tablebase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The distance to mate of every position of one chess ending, with either
+ * side to move, made by a {@link TablebaseGenerator}.
+ *
+ * <p>
+ * Each position takes one byte, the <i>value</i> of the position for the side
+ * to move: 0 for a draw, <tt>m</tt> for a win with mate in <tt>m</tt> moves,
+ * and <tt>-m - 1</tt> for a loss with mate in <tt>m</tt> moves, so -1 is
+ * already checkmated. Castling and en passant are not part of any position,
+ * and the fifty move rule is not applied.
+ *
+ * <p>
+ * The file starts with a 16-byte header: a magic number, the code of the
+ * ending and the longest distance to mate in the table, in plies. The values
+ * follow, numbered by a {@link TablebaseIndex}: those with white to move, then
+ * those with black to move. A table is mapped into memory rather than read, as
+ * an {@link tmcintyre.boardgame.engine.OpeningBook} is, so it takes no space on
+ * the Java heap and can be shared by any number of threads.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public final class Tablebase {
+
+  /** Returned by a probe of a position that has no table. */
+  public static final int UNKNOWN = Integer.MIN_VALUE;
+
+  /** The file name extension of a table. */
+  public static final String EXTENSION = ".tbl";
+
+  /** Identifies a file as a tablebase, and the version of its format. */
+  static final long MAGIC = 0x4247544142415301L;
+
+  static final int HEADER_BYTES = 16;
+
+  private final Material material;
+  private final TablebaseIndex index;
+  private final ByteBuffer values;
+
+  /**
+   * Creates a table over the provided buffer, which holds the header and the
+   * values.
+   */
+  Tablebase(Material material, TablebaseIndex index, ByteBuffer values) {
+    this.material = material;
+    this.index = index;
+    this.values = values;
+  }
+
+  /**
+   * Opens the provided table file.
+   *
+   * @param file
+   *          a file named after its ending, such as <tt>KRvK.tbl</tt>
+   * @return the table
+   * @throws IOException
+   *           if the file cannot be read, or is not the table it is named for
+   */
+  public static Tablebase open(File file) throws IOException {
+    String name = file.getName();
+    if (!name.endsWith(EXTENSION)) throw new IOException("Not a tablebase: " + file);
+    Material material;
+    try {
+      material = Material.parse(name.substring(0, name.length() - EXTENSION.length()));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Not a tablebase: " + file);
+    }
+    TablebaseIndex index = new TablebaseIndex(material);
+
+    ByteBuffer values;
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = in.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) throw new IOException("Tablebase too large: " + file);
+      values = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    } finally {
+      // The mapping stays valid once the file is closed
+      in.close();
+    }
+    if (values.capacity() < HEADER_BYTES || values.getLong(0) != MAGIC
+        || values.getInt(8) != material.code()) {
+      throw new IOException("Not a tablebase for " + material + ": " + file);
+    }
+    if (values.capacity() != HEADER_BYTES + 2L * index.size()) {
+      throw new IOException("Truncated tablebase: " + file);
+    }
+    return new Tablebase(material, index, values);
+  }
+
+  /**
+   * Writes this table to the provided file.
+   *
+   * @param file
+   * @throws IOException
+   */
+  public void write(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      if (values.hasArray()) {
+        out.write(values.array(), values.arrayOffset(), values.capacity());
+      } else {
+        byte[] buffer = new byte[1 << 16];
+        ByteBuffer source = values.duplicate();
+        source.clear();
+        while (source.hasRemaining()) {
+          int length = Math.min(buffer.length, source.remaining());
+          source.get(buffer, 0, length);
+          out.write(buffer, 0, length);
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public Material getMaterial() {
+    return material;
+  }
+
+  TablebaseIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the longest distance to mate of any position in the table, in
+   * plies.
+   *
+   * @return the longest distance to mate
+   */
+  public int getLongest() {
+    return values.getInt(12);
+  }
+
+  /**
+   * Returns the value of the position with the provided number.
+   *
+   * @param position
+   *          the number of the position, from the <code>TablebaseIndex</code>
+   * @param side
+   *          the side to move
+   * @return the value of the position
+   */
+  int get(int position, int side) {
+    return values.get(HEADER_BYTES + side * index.size() + position);
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided value is a win for the side to move.
+   *
+   * @param value
+   * @return <tt>true</tt> if the value is a win
+   */
+  public static boolean isWin(int value) {
+    return value != UNKNOWN && value > 0;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the provided value is a loss for the side to
+   * move.
+   *
+   * @param value
+   * @return <tt>true</tt> if the value is a loss
+   */
+  public static boolean isLoss(int value) {
+    return value != UNKNOWN && value < 0;
+  }
+
+  /**
+   * Returns the number of plies to mate for the provided value, which must be
+   * a win or a loss: odd for a win and even for a loss.
+   *
+   * @param value
+   * @return the distance to mate in plies
+   */
+  public static int toPlies(int value) {
+    return value > 0 ? 2 * value - 1 : -2 * value - 2;
+  }
+
+  /**
+   * Returns the value of a win or loss in the provided number of plies: a win
+   * if it is odd and a loss if it is even.
+   *
+   * @param plies
+   * @return the value
+   * @throws IllegalStateException
+   *           if the distance is too great for a value
+   */
+  static int fromPlies(int plies) {
+    int value = plies % 2 == 1 ? (plies + 1) / 2 : -plies / 2 - 1;
+    if (value > Byte.MAX_VALUE || value < Byte.MIN_VALUE) {
+      throw new IllegalStateException("Mate in " + plies + " plies is too deep for a table");
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return material + EXTENSION;
+  }
+
+}
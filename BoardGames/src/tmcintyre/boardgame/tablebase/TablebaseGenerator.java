@@ -0,0 +1,415 @@
+package tmcintyre.boardgame.tablebase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import tmcintyre.boardgame.game.promotiongames.ChessAttacks;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+
+/**
+ * Makes {@link Tablebase}s by retrograde analysis, working back from the
+ * checkmates of an ending one ply at a time.
+ *
+ * <p>
+ * The first pass finds the checkmates, which are lost in 0 plies. Each pass
+ * after that looks again at every position not yet known to be won or lost: on
+ * pass <tt>n</tt>, a position is won in <tt>n</tt> plies if one of its moves
+ * reaches a position lost in <tt>n - 1</tt>, and lost in <tt>n</tt> plies if
+ * all of its moves reach positions won in at most <tt>n - 1</tt>. A capture or
+ * promotion leaves the ending, so its value is looked up in the table of the
+ * ending it leads to, which must be made first. What is neither won nor lost
+ * once the passes stop finding anything is drawn.
+ *
+ * <p>
+ * The positions are split into blocks that the threads of a pass work through
+ * in parallel. A pass only ever decides positions at its own distance, and
+ * reads only those of earlier passes, so the threads need not coordinate until
+ * the pass is over.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public final class TablebaseGenerator {
+
+  private static final int BLOCKS_PER_THREAD = 16;
+
+  private final File directory;
+  private final int threads;
+
+  /**
+   * Creates a generator that keeps its tables in the provided directory.
+   *
+   * @param directory
+   * @param threads
+   *          the number of threads each pass uses, at least 1
+   * @throws IllegalArgumentException
+   *           if the number of threads is less than 1
+   */
+  public TablebaseGenerator(File directory, int threads) {
+    if (threads < 1) throw new IllegalArgumentException("A generator needs at least one thread");
+    this.directory = directory;
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the table for the provided ending, or its colour-reversed twin,
+   * making it and any tables it needs that are not yet in the directory.
+   *
+   * @param material
+   * @return the table
+   * @throws IOException
+   *           if a table cannot be read or written
+   */
+  public Tablebase generate(Material material) throws IOException {
+    material = material.canonical();
+    File file = new File(directory, material + Tablebase.EXTENSION);
+    if (file.exists()) return Tablebase.open(file);
+
+    Tablebases children = new Tablebases();
+    for (Material child : material.getChildren()) {
+      children.add(generate(child));
+    }
+    build(material, children).write(file);
+    // Mapped from the file, so the heap copy can go
+    return Tablebase.open(file);
+  }
+
+  /**
+   * Makes the table for the provided canonical ending, from the tables of the
+   * endings it leads to.
+   *
+   * @param material
+   * @param children
+   *          the tables of every ending in <code>material.getChildren</code>
+   * @return the table, held on the heap
+   */
+  Tablebase build(Material material, Tablebases children) {
+    TablebaseIndex index = new TablebaseIndex(material);
+    byte[] values = new byte[Tablebase.HEADER_BYTES + 2 * index.size()];
+    ByteBuffer buffer = ByteBuffer.wrap(values);
+    buffer.putLong(0, Tablebase.MAGIC);
+    buffer.putInt(8, material.code());
+
+    int longestChild = 0;
+    for (Material child : material.getChildren()) {
+      Tablebase table = children.get(child);
+      if (table == null) throw new IllegalStateException("No table for " + child);
+      longestChild = Math.max(longestChild, table.getLongest());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Tablebase generator");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    int longest = 0;
+    try {
+      pass(executor, material, index, values, children, 0);
+      // A capture into a long mate may decide a position after some quiet
+      // passes, but never after the longest mate of the tables it leads to
+      for (int plies = 1; plies <= longestChild + 1 || longest == plies - 1; plies++) {
+        if (pass(executor, material, index, values, children, plies) > 0) longest = plies;
+      }
+    } finally {
+      executor.shutdown();
+    }
+    buffer.putInt(12, longest);
+    return new Tablebase(material, index, buffer);
+  }
+
+  /**
+   * Runs one pass over all the positions in parallel.
+   *
+   * @return the number of positions decided
+   */
+  private int pass(ExecutorService executor, Material material, TablebaseIndex index,
+      byte[] values, Tablebases children, int plies) {
+    int size = index.size();
+    int blockSize = Math.max(1, (size + threads * BLOCKS_PER_THREAD - 1)
+        / (threads * BLOCKS_PER_THREAD));
+    List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+    for (int start = 0; start < size; start += blockSize) {
+      final Block block = new Block(material, index, values, children, plies, start, Math.min(
+          size, start + blockSize));
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return block.run();
+        }
+      }));
+    }
+
+    int decided = 0;
+    for (Future<Integer> future : futures) {
+      try {
+        decided += future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted making the table for " + material);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Failed making the table for " + material, e.getCause());
+      }
+    }
+    return decided;
+  }
+
+  /**
+   * A range of positions for one thread to work through in a pass, with its
+   * own board to set them up on.
+   */
+  private static final class Block {
+
+    private static final int ILLEGAL = Integer.MAX_VALUE;
+
+    private final TablebaseIndex index;
+    private final byte[] values;
+    private final Tablebases children;
+    private final int plies;
+    private final int start;
+    private final int end;
+    private final int size;
+
+    private final int[] types;
+    private final int[] sides;
+    private final int pieceCount;
+    private final int[] squares;
+    private final int[] childSquares;
+    private final int[] probeSquares = new int[Material.MAX_PIECES];
+    private final long[][] pieces = new long[2][ChessBoard.KING + 1];
+    private final long[] occupancy = new long[2];
+    // Packed moves: the slot moved, its destination and promotion type + 1
+    private final int[] moves = new int[256];
+
+    Block(Material material, TablebaseIndex index, byte[] values, Tablebases children,
+        int plies, int start, int end) {
+      this.index = index;
+      this.values = values;
+      this.children = children;
+      this.plies = plies;
+      this.start = start;
+      this.end = end;
+      this.size = index.size();
+      types = material.getSlotTypes();
+      sides = material.getSlotSides();
+      pieceCount = material.getPieceCount();
+      squares = new int[pieceCount];
+      childSquares = new int[pieceCount];
+    }
+
+    int run() {
+      int decided = 0;
+      for (int position = start; position < end; position++) {
+        boolean setUp = false;
+        for (int side = ChessBoard.WHITE; side <= ChessBoard.BLACK; side++) {
+          int offset = Tablebase.HEADER_BYTES + side * size + position;
+          if (values[offset] != 0) continue;
+          if (!setUp) {
+            if (!setUp(position)) break;
+            setUp = true;
+          }
+          int value = evaluate(side);
+          if (value != 0) {
+            values[offset] = (byte) value;
+            decided++;
+          }
+        }
+      }
+      return decided;
+    }
+
+    /**
+     * Puts the pieces of the position with the provided number on the board.
+     *
+     * @return <tt>false</tt> if two pieces are on the same square
+     */
+    private boolean setUp(int position) {
+      index.squares(position, squares);
+      for (int side = 0; side < 2; side++) {
+        occupancy[side] = 0;
+        for (int type = 0; type < pieces[side].length; type++) {
+          pieces[side][type] = 0;
+        }
+      }
+      for (int slot = 0; slot < pieceCount; slot++) {
+        long bit = 1L << squares[slot];
+        if (((occupancy[0] | occupancy[1]) & bit) != 0) return false;
+        pieces[sides[slot]][types[slot]] |= bit;
+        occupancy[sides[slot]] |= bit;
+      }
+      return true;
+    }
+
+    /**
+     * Returns the value of the position on the board if this pass decides it,
+     * and otherwise 0.
+     */
+    private int evaluate(int side) {
+      // The side not to move may not be in check
+      if (isAttacked(kingSquare(side ^ 1), side)) return 0;
+
+      int count = generate(side);
+      boolean winning = plies % 2 == 1;
+      boolean canMove = false;
+      for (int i = 0; i < count; i++) {
+        int value = play(side, moves[i]);
+        if (value == ILLEGAL) continue;
+        canMove = true;
+        if (plies == 0) break;
+        if (winning) {
+          if (Tablebase.isLoss(value) && Tablebase.toPlies(value) == plies - 1) {
+            return Tablebase.fromPlies(plies);
+          }
+        } else if (!Tablebase.isWin(value) || Tablebase.toPlies(value) > plies - 1) {
+          // A capture or promotion may reach a longer win in a finished table,
+          // which leaves the position to a later pass
+          return 0;
+        }
+      }
+      if (plies == 0) {
+        return !canMove && isAttacked(kingSquare(side), side ^ 1) ? Tablebase.fromPlies(0) : 0;
+      }
+      // Stalemate or checkmate, or a position not won on this pass. Every move
+      // wins in at most plies - 1, and had none taken that long, the position
+      // would have been lost earlier.
+      return winning || !canMove ? 0 : Tablebase.fromPlies(plies);
+    }
+
+    /**
+     * Generates the moves of the side to move, some of which may leave its king
+     * in check.
+     *
+     * @return the number of moves
+     */
+    private int generate(int side) {
+      long own = occupancy[side];
+      long enemy = occupancy[side ^ 1];
+      long all = own | enemy;
+      int count = 0;
+      for (int slot = 0; slot < pieceCount; slot++) {
+        if (sides[slot] != side) continue;
+        int from = squares[slot];
+        long targets;
+        switch (types[slot]) {
+        case ChessBoard.PAWN:
+          targets = ChessAttacks.pawnAttacks(side, from) & enemy;
+          int step = side == ChessBoard.WHITE ? -ChessBoard.SIZE : ChessBoard.SIZE;
+          int startRow = side == ChessBoard.WHITE ? ChessBoard.SIZE - 2 : 1;
+          if ((all & 1L << from + step) == 0) {
+            targets |= 1L << from + step;
+            if (ChessBoard.row(from) == startRow && (all & 1L << from + 2 * step) == 0) {
+              targets |= 1L << from + 2 * step;
+            }
+          }
+          break;
+        case ChessBoard.KNIGHT:
+          targets = ChessAttacks.knightAttacks(from) & ~own;
+          break;
+        case ChessBoard.BISHOP:
+          targets = ChessAttacks.bishopAttacks(from, all) & ~own;
+          break;
+        case ChessBoard.ROOK:
+          targets = ChessAttacks.rookAttacks(from, all) & ~own;
+          break;
+        case ChessBoard.QUEEN:
+          targets = ChessAttacks.queenAttacks(from, all) & ~own;
+          break;
+        default:
+          targets = ChessAttacks.kingAttacks(from) & ~own;
+          break;
+        }
+
+        for (; targets != 0; targets &= targets - 1) {
+          int to = Long.numberOfTrailingZeros(targets);
+          int move = slot | to << 3;
+          int row = ChessBoard.row(to);
+          if (types[slot] == ChessBoard.PAWN && (row == 0 || row == ChessBoard.SIZE - 1)) {
+            for (int type = ChessBoard.KNIGHT; type <= ChessBoard.QUEEN; type++) {
+              moves[count++] = move | (type + 1) << 9;
+            }
+          } else {
+            moves[count++] = move;
+          }
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Plays the move on the board, and returns the value of the position it
+     * reaches, for the opponent, or <code>ILLEGAL</code> if it leaves the
+     * player's king in check. The board is left as it was.
+     */
+    private int play(int side, int move) {
+      int slot = move & 7;
+      int from = squares[slot];
+      int to = move >>> 3 & 63;
+      int promotion = (move >>> 9) - 1;
+      int type = types[slot];
+      long fromBit = 1L << from;
+      long toBit = 1L << to;
+
+      int captured = -1;
+      if ((occupancy[side ^ 1] & toBit) != 0) {
+        for (int other = 0; other < pieceCount; other++) {
+          if (squares[other] == to && sides[other] != side) captured = other;
+        }
+        pieces[side ^ 1][types[captured]] ^= toBit;
+        occupancy[side ^ 1] ^= toBit;
+      }
+      pieces[side][type] ^= fromBit;
+      pieces[side][promotion >= 0 ? promotion : type] |= toBit;
+      occupancy[side] ^= fromBit | toBit;
+
+      int value;
+      if (isAttacked(kingSquare(side), side ^ 1)) {
+        value = ILLEGAL;
+      } else if (captured >= 0 || promotion >= 0) {
+        value = children.probe(pieces, side ^ 1, probeSquares);
+        if (value == Tablebase.UNKNOWN) throw new IllegalStateException("No table for a child");
+      } else {
+        System.arraycopy(squares, 0, childSquares, 0, pieceCount);
+        childSquares[slot] = to;
+        value = values[Tablebase.HEADER_BYTES + (side ^ 1) * size + index.index(childSquares)];
+      }
+
+      occupancy[side] ^= fromBit | toBit;
+      pieces[side][promotion >= 0 ? promotion : type] ^= toBit;
+      pieces[side][type] |= fromBit;
+      if (captured >= 0) {
+        pieces[side ^ 1][types[captured]] |= toBit;
+        occupancy[side ^ 1] |= toBit;
+      }
+      return value;
+    }
+
+    private int kingSquare(int side) {
+      return Long.numberOfTrailingZeros(pieces[side][ChessBoard.KING]);
+    }
+
+    private boolean isAttacked(int square, int side) {
+      long[] own = pieces[side];
+      long all = occupancy[0] | occupancy[1];
+      return (ChessAttacks.pawnAttacks(side ^ 1, square) & own[ChessBoard.PAWN]) != 0
+          || (ChessAttacks.knightAttacks(square) & own[ChessBoard.KNIGHT]) != 0
+          || (ChessAttacks.kingAttacks(square) & own[ChessBoard.KING]) != 0
+          || (ChessAttacks.bishopAttacks(square, all)
+              & (own[ChessBoard.BISHOP] | own[ChessBoard.QUEEN])) != 0
+          || (ChessAttacks.rookAttacks(square, all)
+              & (own[ChessBoard.ROOK] | own[ChessBoard.QUEEN])) != 0;
+    }
+
+  }
+
+}
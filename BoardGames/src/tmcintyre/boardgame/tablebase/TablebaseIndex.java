@@ -0,0 +1,181 @@
+package tmcintyre.boardgame.tablebase;
+
+import java.util.Arrays;
+
+import tmcintyre.boardgame.game.promotiongames.ChessAttacks;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+
+/**
+ * Numbers the positions of an ending, using the symmetries of the board so
+ * that positions that are reflections of each other share a number.
+ *
+ * <p>
+ * Without pawns, a position may be reflected left to right, top to bottom and
+ * about the long diagonal, so the white king can always be brought into the
+ * ten squares of one corner triangle; if it is on the diagonal, the black king
+ * can also be brought to one side of it. With pawns, which only move one way,
+ * only the left to right reflection is used, bringing the white king onto the
+ * queen's side. The pair of kings, never next to each other, then takes one of
+ * 462 or 1806 numbers. Each other piece adds a digit: its square, or for a
+ * pawn its square among the 48 a pawn can stand on.
+ *
+ * <p>
+ * Squares are numbered as by {@link ChessBoard}. Numbers whose pieces
+ * overlap are part of the range but name no position.
+ *
+ * @author Tom McIntyre
+ *
+ */
+final class TablebaseIndex {
+
+  private static final int MIRROR_COLS = 1;
+  private static final int MIRROR_ROWS = 2;
+  private static final int TRANSPOSE = 4;
+
+  private static final int PAWN_SQUARES = 48;
+
+  // Pairs of king squares by number, and numbers by pair (-1 for none)
+  private static final int[][] KINGS = new int[2][];
+  private static final int[][] KING_NUMBERS = new int[2][];
+
+  static {
+    for (int pawns = 0; pawns < 2; pawns++) {
+      KING_NUMBERS[pawns] = new int[ChessBoard.SQUARES * ChessBoard.SQUARES];
+      Arrays.fill(KING_NUMBERS[pawns], -1);
+      int[] pairs = new int[ChessBoard.SQUARES * ChessBoard.SQUARES];
+      int count = 0;
+      for (int white = 0; white < ChessBoard.SQUARES; white++) {
+        for (int black = 0; black < ChessBoard.SQUARES; black++) {
+          if (!isCanonical(white, black, pawns == 1)) continue;
+          KING_NUMBERS[pawns][white * ChessBoard.SQUARES + black] = count;
+          pairs[count++] = white * ChessBoard.SQUARES + black;
+        }
+      }
+      KINGS[pawns] = Arrays.copyOf(pairs, count);
+    }
+  }
+
+  private final int pieces;
+  private final boolean pawns;
+  private final boolean[] isPawn;
+  private final int[] kings;
+  private final int[] kingNumbers;
+  private final int size;
+
+  /**
+   * Creates the numbering of the provided ending.
+   *
+   * @param material
+   * @throws IllegalArgumentException
+   *           if the ending has too many positions to number with an
+   *           <tt>int</tt>
+   */
+  TablebaseIndex(Material material) {
+    pieces = material.getPieceCount();
+    pawns = material.hasPawns();
+    int[] types = material.getSlotTypes();
+    isPawn = new boolean[pieces];
+    kings = KINGS[pawns ? 1 : 0];
+    kingNumbers = KING_NUMBERS[pawns ? 1 : 0];
+    long size = kings.length;
+    for (int slot = 2; slot < pieces; slot++) {
+      isPawn[slot] = types[slot] == ChessBoard.PAWN;
+      size *= isPawn[slot] ? PAWN_SQUARES : ChessBoard.SQUARES;
+    }
+    if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Too large: " + material);
+    this.size = (int) size;
+  }
+
+  private static boolean isCanonical(int white, int black, boolean pawns) {
+    if (white == black || (ChessAttacks.kingAttacks(white) & 1L << black) != 0) return false;
+    int row = ChessBoard.row(white);
+    int col = ChessBoard.col(white);
+    if (pawns) return col < 4;
+    if (row > 3 || col > row) return false;
+    return row != col || ChessBoard.col(black) <= ChessBoard.row(black);
+  }
+
+  /**
+   * Returns the number of numbers, that is one more than the largest.
+   *
+   * @return the size of the numbering
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of the position with the provided squares, or -1 if
+   * the kings are next to each other or a pawn is on its first or last rank.
+   *
+   * @param squares
+   *          the square of each piece, by slot
+   * @return the number of the position
+   */
+  int index(int[] squares) {
+    int transform = transform(squares[0], squares[1]);
+    int kingNumber = kingNumbers[apply(squares[0], transform) * ChessBoard.SQUARES
+        + apply(squares[1], transform)];
+    if (kingNumber < 0) return -1;
+    int index = kingNumber;
+    for (int slot = 2; slot < pieces; slot++) {
+      int square = apply(squares[slot], transform);
+      if (isPawn[slot]) {
+        square -= ChessBoard.SIZE;
+        if (square < 0 || square >= PAWN_SQUARES) return -1;
+        index = index * PAWN_SQUARES + square;
+      } else {
+        index = index * ChessBoard.SQUARES + square;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Writes the squares of the position with the provided number into the
+   * provided array, by slot. The pieces of the position may overlap.
+   *
+   * @param index
+   * @param squares
+   */
+  void squares(int index, int[] squares) {
+    for (int slot = pieces - 1; slot >= 2; slot--) {
+      if (isPawn[slot]) {
+        squares[slot] = index % PAWN_SQUARES + ChessBoard.SIZE;
+        index /= PAWN_SQUARES;
+      } else {
+        squares[slot] = index % ChessBoard.SQUARES;
+        index /= ChessBoard.SQUARES;
+      }
+    }
+    int kingPair = kings[index];
+    squares[0] = kingPair / ChessBoard.SQUARES;
+    squares[1] = kingPair % ChessBoard.SQUARES;
+  }
+
+  /**
+   * Returns the reflections that bring the kings into their canonical places.
+   */
+  private int transform(int whiteKing, int blackKing) {
+    int transform = 0;
+    if (ChessBoard.col(whiteKing) > 3) transform |= MIRROR_COLS;
+    if (pawns) return transform;
+    if (ChessBoard.row(whiteKing) > 3) transform |= MIRROR_ROWS;
+    int king = apply(whiteKing, transform);
+    if (ChessBoard.col(king) > ChessBoard.row(king)) {
+      transform |= TRANSPOSE;
+    } else if (ChessBoard.col(king) == ChessBoard.row(king)) {
+      int other = apply(blackKing, transform);
+      if (ChessBoard.col(other) > ChessBoard.row(other)) transform |= TRANSPOSE;
+    }
+    return transform;
+  }
+
+  private static int apply(int square, int transform) {
+    if ((transform & MIRROR_COLS) != 0) square ^= 7;
+    if ((transform & MIRROR_ROWS) != 0) square ^= 56;
+    if ((transform & TRANSPOSE) != 0) square = (square & 7) << 3 | square >>> 3;
+    return square;
+  }
+
+}
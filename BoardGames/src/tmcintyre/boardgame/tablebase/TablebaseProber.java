@@ -0,0 +1,60 @@
+package tmcintyre.boardgame.tablebase;
+
+import tmcintyre.boardgame.game.promotiongames.ChessAttacks;
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+
+/**
+ * Probes a set of {@link Tablebases} for the positions of chess games, with
+ * arrays of its own that are reused from one probe to the next, so that a
+ * search can probe at every node without allocating.
+ *
+ * <p>
+ * A <code>TablebaseProber</code> is not thread-safe. Each thread, such as each
+ * search of an engine, has its own, while all of them share the tables.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public final class TablebaseProber {
+
+  private final Tablebases tablebases;
+  private final long[][] pieces = new long[2][ChessBoard.KING + 1];
+  private final int[] squares = new int[Material.MAX_PIECES];
+
+  public TablebaseProber(Tablebases tablebases) {
+    this.tablebases = tablebases;
+  }
+
+  /**
+   * Returns the <code>Tablebase</code> value of the current position of the
+   * provided game, for the player to move, or <code>Tablebase.UNKNOWN</code>
+   * if there is no table for it. Bare kings are a draw.
+   *
+   * <p>
+   * Positions in which castling or an en passant capture is possible are not
+   * in any table, so probes of them are <code>UNKNOWN</code>.
+   *
+   * @param game
+   * @return the value of the position
+   */
+  public int probe(ChessGame game) {
+    ChessBoard board = game.getBoard();
+    if (Long.bitCount(board.getOccupied()) > Material.MAX_PIECES) return Tablebase.UNKNOWN;
+    if (game.getCastlingRights() != 0) return Tablebase.UNKNOWN;
+    int side = game.getSide(game.getCurrentPlayer());
+    int enPassant = game.getEnPassantSquare();
+    if (enPassant >= 0 && (ChessAttacks.pawnAttacks(side ^ 1, enPassant)
+        & board.getPieces(side, ChessBoard.PAWN)) != 0) {
+      return Tablebase.UNKNOWN;
+    }
+
+    for (int s = ChessBoard.WHITE; s <= ChessBoard.BLACK; s++) {
+      for (int type = ChessBoard.PAWN; type <= ChessBoard.KING; type++) {
+        pieces[s][type] = board.getPieces(s, type);
+      }
+    }
+    return tablebases.probe(pieces, side, squares);
+  }
+
+}
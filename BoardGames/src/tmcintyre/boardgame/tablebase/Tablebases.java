@@ -0,0 +1,194 @@
+package tmcintyre.boardgame.tablebase;
+
+import java.io.File;
+import java.io.IOException;
+
+import tmcintyre.boardgame.game.promotiongames.ChessBoard;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.game.promotiongames.ChessMove;
+
+/**
+ * A set of {@link Tablebase}s, which answers for any position of their
+ * endings whether the side to move wins, loses or draws, and how soon.
+ *
+ * <p>
+ * Tables are found by the code of their ending in an array, so a probe does
+ * no hashing and takes no locks. Once the tables have been added, any number
+ * of threads may probe at once, as the search threads of an engine do, each
+ * through its own {@link TablebaseProber}.
+ *
+ * <p>
+ * Positions in which castling or an en passant capture is possible are not in
+ * any table, so probes of them are <code>UNKNOWN</code>.
+ *
+ * @author Tom McIntyre
+ *
+ */
+public final class Tablebases {
+
+  private final Tablebase[] tables = new Tablebase[Material.getCodeCount()];
+  private int size;
+
+  /**
+   * Creates an empty set of tables.
+   */
+  public Tablebases() {
+
+  }
+
+  /**
+   * Opens all the tables in the provided directory.
+   *
+   * @param directory
+   * @throws IOException
+   *           if a table cannot be read
+   */
+  public Tablebases(File directory) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) throw new IOException("Not a directory: " + directory);
+    for (File file : files) {
+      if (file.getName().endsWith(Tablebase.EXTENSION)) add(Tablebase.open(file));
+    }
+  }
+
+  /**
+   * Adds a table, which serves both its ending and the colour-reversed twin.
+   *
+   * @param table
+   */
+  public void add(Tablebase table) {
+    Material material = table.getMaterial();
+    if (tables[material.code()] == null) size++;
+    tables[material.code()] = table;
+    tables[material.flip().code()] = table;
+  }
+
+  /**
+   * Returns <tt>true</tt> if there is a table for the provided ending or its
+   * colour-reversed twin.
+   *
+   * @param material
+   * @return <tt>true</tt> if the ending has a table
+   */
+  public boolean contains(Material material) {
+    return get(material) != null;
+  }
+
+  /**
+   * Returns the table for the provided ending or its colour-reversed twin, or
+   * <code>null</code> if there is none.
+   *
+   * @param material
+   * @return the table for the ending
+   */
+  public Tablebase get(Material material) {
+    return tables[material.code()];
+  }
+
+  /**
+   * Returns the number of tables.
+   *
+   * @return the number of tables
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the <code>Tablebase</code> value of the current position of the
+   * provided game, for the player to move, or <code>Tablebase.UNKNOWN</code>
+   * if there is no table for it. Bare kings are a draw.
+   *
+   * <p>
+   * This makes a new <code>TablebaseProber</code> for the one probe. Code that
+   * probes often, such as a search, keeps a prober of its own instead.
+   *
+   * @param game
+   * @return the value of the position
+   * @see TablebaseProber#probe(ChessGame)
+   */
+  public int probe(ChessGame game) {
+    return new TablebaseProber(this).probe(game);
+  }
+
+  /**
+   * Returns the value of the position with the provided pieces, or
+   * <code>Tablebase.UNKNOWN</code> if there is no table for it. There must be
+   * no more than <code>Material.MAX_PIECES</code> pieces.
+   *
+   * @param pieces
+   *          the bitboards of each side, by <code>ChessBoard</code> type index
+   * @param side
+   *          the side to move
+   * @param squares
+   *          an array of at least <code>Material.MAX_PIECES</code> to work
+   *          in
+   * @return the value of the position
+   */
+  int probe(long[][] pieces, int side, int[] squares) {
+    int code = Material.code(pieces[ChessBoard.WHITE], pieces[ChessBoard.BLACK]);
+    // Bare kings
+    if (code == 0) return 0;
+    Tablebase table = tables[code];
+    if (table == null) return Tablebase.UNKNOWN;
+
+    // A table for the colour-reversed twin sees the board upside down
+    boolean flip = table.getMaterial().code() != code;
+    int white = flip ? ChessBoard.BLACK : ChessBoard.WHITE;
+    squares[0] = orient(Long.numberOfTrailingZeros(pieces[white][ChessBoard.KING]), flip);
+    squares[1] = orient(Long.numberOfTrailingZeros(pieces[white ^ 1][ChessBoard.KING]), flip);
+    int slot = 2;
+    for (int s = 0; s < 2; s++) {
+      long[] own = pieces[white ^ s];
+      for (int type = ChessBoard.QUEEN; type >= ChessBoard.PAWN; type--) {
+        for (long bits = own[type]; bits != 0; bits &= bits - 1) {
+          squares[slot++] = orient(Long.numberOfTrailingZeros(bits), flip);
+        }
+      }
+    }
+
+    int position = table.getIndex().index(squares);
+    if (position < 0) return Tablebase.UNKNOWN;
+    return table.get(position, flip ? side ^ 1 : side);
+  }
+
+  private static int orient(int square, boolean flip) {
+    return flip ? square ^ 56 : square;
+  }
+
+  /**
+   * Returns the best move for the player to move in the provided game, by the
+   * tables: the quickest mate when winning, the slowest when losing, and
+   * otherwise any move that keeps the draw.
+   *
+   * @param game
+   * @return the packed <code>ChessMove</code>, or 0 if the position, or the
+   *         position after any of its moves, has no table, or there are no
+   *         legal moves
+   */
+  public int bestMove(ChessGame game) {
+    TablebaseProber prober = new TablebaseProber(this);
+    if (prober.probe(game) == Tablebase.UNKNOWN) return 0;
+    int[] moves = new int[ChessMove.MAX_MOVES];
+    int count = game.generateMoves(moves);
+    int best = 0;
+    int bestRank = Integer.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      game.doPackedMove(moves[i]);
+      int value = prober.probe(game);
+      game.undoPackedMove(moves[i]);
+      if (value == Tablebase.UNKNOWN) return 0;
+
+      // The value is the opponent's
+      int rank = 0;
+      if (Tablebase.isLoss(value)) rank = 1000 - Tablebase.toPlies(value);
+      if (Tablebase.isWin(value)) rank = -1000 + Tablebase.toPlies(value);
+      if (rank > bestRank) {
+        bestRank = rank;
+        best = moves[i];
+      }
+    }
+    return best;
+  }
+
+}
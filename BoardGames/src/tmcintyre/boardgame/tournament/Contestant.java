@@ -0,0 +1,60 @@
+package tmcintyre.boardgame.tournament;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+
+/**
+ * One of the sides playing in a {@link Tournament}, such as an engine with
+ * given settings.
+ * 
+ * <p>
+ * A contestant plays through a {@link Mover} made for each thread of the
+ * tournament, so that anything a mover keeps between moves, such as an
+ * engine's transposition table, is only ever used by one game at a time.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public interface Contestant {
+
+  /**
+   * Returns the name the contestant is reported under, which should be unique
+   * within a tournament.
+   * 
+   * @return the name of the contestant
+   */
+  public String getName();
+
+  /**
+   * Returns a new <code>Mover</code> to play this contestant's moves in one
+   * thread.
+   * 
+   * @return a new <code>Mover</code>
+   */
+  public Mover newMover();
+
+  /**
+   * Chooses the moves of a {@link Contestant}, in one game at a time.
+   */
+  public interface Mover {
+
+    /**
+     * Called before the mover plays in a new game.
+     * 
+     * @param game
+     */
+    public void newGame(Game game);
+
+    /**
+     * Returns the move to play for the player to move in the provided game,
+     * or <code>null</code> if there is none. A dice game has already been
+     * rolled for.
+     * 
+     * @param game
+     * @return the move to play
+     */
+    public Move chooseMove(Game game);
+
+  }
+
+}
@@ -0,0 +1,91 @@
+package tmcintyre.boardgame.tournament;
+
+import tmcintyre.boardgame.engine.Engine;
+import tmcintyre.boardgame.engine.SearchLimits;
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+
+/**
+ * A {@link Contestant} whose moves are searched by an {@link Engine}, to the
+ * same limits every move. Each thread of a tournament has its own engine,
+ * whose table is cleared before every game.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class EngineContestant implements Contestant {
+
+  public static final int DEFAULT_HASH_MEGABYTES = 4;
+
+  private final String name;
+  private final SearchLimits limits;
+  private final int hashMegabytes;
+
+  /**
+   * Creates an engine contestant with a table of
+   * <code>DEFAULT_HASH_MEGABYTES</code> in each thread.
+   * 
+   * @param name
+   * @param limits
+   *          the limits of every search, which must not be changed while the
+   *          tournament runs
+   */
+  public EngineContestant(String name, SearchLimits limits) {
+    this(name, limits, DEFAULT_HASH_MEGABYTES);
+  }
+
+  /**
+   * Creates an engine contestant.
+   * 
+   * @param name
+   * @param limits
+   *          the limits of every search, which must not be changed while the
+   *          tournament runs
+   * @param hashMegabytes
+   *          the size of the table of the engine in each thread
+   */
+  public EngineContestant(String name, SearchLimits limits, int hashMegabytes) {
+    this.name = name;
+    this.limits = limits;
+    this.hashMegabytes = hashMegabytes;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns a new engine for a thread of the tournament. Subclasses may
+   * override this to play engines with other settings, such as another
+   * <code>Evaluator</code>.
+   * 
+   * @param hashMegabytes
+   * @return a new engine
+   */
+  protected Engine newEngine(int hashMegabytes) {
+    return new Engine(hashMegabytes);
+  }
+
+  @Override
+  public Mover newMover() {
+    final Engine engine = newEngine(hashMegabytes);
+    return new Mover() {
+      @Override
+      public void newGame(Game game) {
+        engine.clearHash();
+      }
+
+      @Override
+      public Move chooseMove(Game game) {
+        return engine.bestMove(game, limits);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
@@ -0,0 +1,210 @@
+package tmcintyre.boardgame.tournament;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import tmcintyre.boardgame.game.AbstractGame;
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.game.Move;
+import tmcintyre.boardgame.game.Observer;
+import tmcintyre.boardgame.game.dicegames.DiceGame;
+import tmcintyre.boardgame.game.promotiongames.ChessGame;
+import tmcintyre.boardgame.player.Player;
+import tmcintyre.boardgame.tablebase.Tablebase;
+import tmcintyre.boardgame.tablebase.TablebaseProber;
+
+/**
+ * Plays one game between two {@link Contestant.Mover}s, with no GUI and no
+ * <code>Logger</code>, and reports who won.
+ * 
+ * <p>
+ * The game starts with a number of random moves, chosen from a seed so that
+ * the same opening can be played again with the colours reversed. It is drawn
+ * if it reaches the ply limit, if a position comes up for the third time (in
+ * games without dice), if the player to move has no move and has not lost,
+ * and in chess by stalemate, which <code>ChessGame</code> itself scores as a
+ * win.
+ * 
+ * <p>
+ * A chess game may also be adjudicated by endgame tables: once a turn is over
+ * and the tables know the position, it is won by whoever they say wins, or
+ * drawn.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class HeadlessGame implements Observer {
+
+  /** The result of a game won by the first player. */
+  static final int FIRST_WINS = 0;
+  /** The result of a game won by the second player. */
+  static final int SECOND_WINS = 1;
+  static final int DRAW = -1;
+
+  private static final int NOT_ADJUDICATED = -2;
+
+  private static final int REPETITIONS = 3;
+
+  private final Game game;
+  private final List<Player> players = new ArrayList<Player>();
+  private Player winner;
+  private TablebaseProber prober;
+
+  /**
+   * Creates a new game of the provided type, with the first choice of each of
+   * its options.
+   * 
+   * @param type
+   * @param firstName
+   * @param secondName
+   */
+  HeadlessGame(GameType type, String firstName, String secondName) {
+    game = type.getNewInstance();
+    if (game instanceof AbstractGame) ((AbstractGame) game).setLoggingEnabled(false);
+    Map<String, String[]> options = game.getGameSpecificOptions();
+    if (options != null) {
+      Map<String, String> selected = new HashMap<String, String>();
+      for (Map.Entry<String, String[]> option : options.entrySet()) {
+        String[] choices = option.getValue();
+        if (choices != null && choices.length > 0) selected.put(option.getKey(), choices[0]);
+      }
+      game.implementSelectedOptions(selected);
+    }
+    players.add(new Player(Color.WHITE, firstName));
+    players.add(new Player(Color.BLACK, secondName));
+    game.addPlayers(players);
+    game.addObserver(this);
+  }
+
+  Game getGame() {
+    return game;
+  }
+
+  /**
+   * Sets the prober of the tables that adjudicate a chess game, or
+   * <code>null</code> to play every game out.
+   * 
+   * @param prober
+   */
+  void setProber(TablebaseProber prober) {
+    this.prober = prober;
+  }
+
+  /**
+   * Plays the game out.
+   * 
+   * @param movers
+   *          the first and second player's movers
+   * @param latencies
+   *          receive the time each mover takes over each of its moves, or
+   *          <code>null</code> if the times are not wanted
+   * @param openingSeed
+   *          chooses the random opening moves
+   * @param openingPlies
+   *          the number of random moves to start with
+   * @param maxPlies
+   *          the number of moves after which the game is drawn
+   * @return <code>FIRST_WINS</code>, <code>SECOND_WINS</code> or
+   *         <code>DRAW</code>
+   */
+  int play(Contestant.Mover[] movers, Latencies[] latencies, long openingSeed, int openingPlies,
+      int maxPlies) {
+    for (Contestant.Mover mover : movers) {
+      mover.newGame(game);
+    }
+    game.start();
+
+    Random opening = new Random(openingSeed);
+    boolean repeats = !(game instanceof DiceGame);
+    Map<Long, Integer> seen = new HashMap<Long, Integer>();
+    for (int ply = 0; winner == null && ply < maxPlies; ply++) {
+      if (game instanceof DiceGame && !((DiceGame) game).currentPlayerHasRolled()) {
+        ((DiceGame) game).rollDice();
+      }
+      if (repeats) {
+        Long key = game.getPositionKey();
+        Integer count = seen.get(key);
+        count = count == null ? 1 : count + 1;
+        if (count == REPETITIONS) return DRAW;
+        seen.put(key, count);
+      }
+
+      Player player = game.getCurrentPlayer();
+      Move move;
+      if (ply < openingPlies) {
+        List<Move> moves = player.getAllLegalMoves();
+        move = moves.isEmpty() ? null : moves.get(opening.nextInt(moves.size()));
+      } else {
+        int side = players.indexOf(player);
+        long start = System.nanoTime();
+        move = movers[side].chooseMove(game);
+        if (latencies != null) latencies[side].add(System.nanoTime() - start);
+      }
+      if (move == null) return DRAW;
+      game.doMove(move, false);
+      if (winner == null) {
+        int adjudicated = adjudicate();
+        if (adjudicated != NOT_ADJUDICATED) return adjudicated;
+      }
+    }
+    if (winner == null) return DRAW;
+
+    Player loser = players.get(1 - players.indexOf(winner));
+    if (game instanceof ChessGame && !((ChessGame) game).isInCheck(loser)) return DRAW;
+    return players.indexOf(winner);
+  }
+
+  /**
+   * Returns the result the tables give for the position at the end of a turn,
+   * or <code>NOT_ADJUDICATED</code> if there are no tables for it.
+   */
+  private int adjudicate() {
+    if (prober == null || !(game instanceof ChessGame)) return NOT_ADJUDICATED;
+    int value = prober.probe((ChessGame) game);
+    if (value == Tablebase.UNKNOWN) return NOT_ADJUDICATED;
+    if (value == 0) return DRAW;
+    int toMove = players.indexOf(game.getCurrentPlayer());
+    return Tablebase.isWin(value) ? toMove : 1 - toMove;
+  }
+
+  @Override
+  public void notifyOnWin(Player winner) {
+    if (this.winner == null) this.winner = winner;
+  }
+
+  @Override
+  public void notifyOnStart() {
+
+  }
+
+  @Override
+  public void notifyOnCurrentPlayerChanged() {
+
+  }
+
+  @Override
+  public void notifyOnMove(Move move) {
+
+  }
+
+  @Override
+  public void notifyOnPromotion(Move move) {
+
+  }
+
+  @Override
+  public void notifyOnStalemate() {
+
+  }
+
+  @Override
+  public void notifyOnUndo() {
+
+  }
+
+}
@@ -0,0 +1,56 @@
+package tmcintyre.boardgame.tournament;
+
+import java.util.Arrays;
+
+/**
+ * The times a contestant took over each of its moves, from which percentiles
+ * are read. Each thread of a tournament keeps its own, which are merged at
+ * the end.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+final class Latencies {
+
+  private long[] nanos = new long[1024];
+  private int size;
+  private boolean sorted = true;
+
+  void add(long time) {
+    if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+    nanos[size++] = time;
+    sorted = false;
+  }
+
+  void addAll(Latencies other) {
+    if (size + other.size > nanos.length) {
+      nanos = Arrays.copyOf(nanos, Math.max(size + other.size, size * 2));
+    }
+    System.arraycopy(other.nanos, 0, nanos, size, other.size);
+    size += other.size;
+    sorted = false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the time, in nanoseconds, that the given percentage of the moves
+   * took no longer than, or 0 if there are none.
+   * 
+   * @param percent
+   *          from 0 to 100
+   * @return the percentile
+   */
+  long percentile(double percent) {
+    if (size == 0) return 0;
+    if (!sorted) {
+      Arrays.sort(nanos, 0, size);
+      sorted = true;
+    }
+    int index = (int) Math.ceil(percent / 100 * size) - 1;
+    return nanos[Math.max(0, Math.min(size - 1, index))];
+  }
+
+}
@@ -0,0 +1,51 @@
+package tmcintyre.boardgame.tournament;
+
+import java.util.List;
+import java.util.Random;
+
+import tmcintyre.boardgame.game.Game;
+import tmcintyre.boardgame.game.Move;
+
+/**
+ * A {@link Contestant} that plays any legal move, chosen at random, as a
+ * baseline for engines to beat.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class RandomContestant implements Contestant {
+
+  private final String name;
+
+  public RandomContestant(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Mover newMover() {
+    final Random random = new Random();
+    return new Mover() {
+      @Override
+      public void newGame(Game game) {
+
+      }
+
+      @Override
+      public Move chooseMove(Game game) {
+        List<Move> moves = game.getCurrentPlayer().getAllLegalMoves();
+        return moves.isEmpty() ? null : moves.get(random.nextInt(moves.size()));
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
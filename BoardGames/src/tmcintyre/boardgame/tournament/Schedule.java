@@ -0,0 +1,38 @@
+package tmcintyre.boardgame.tournament;
+
+/**
+ * Which contestants of a {@link Tournament} play each other.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public enum Schedule {
+
+  /** Every contestant plays every other. */
+  ROUND_ROBIN,
+
+  /** The first contestant plays each of the others, who do not meet. */
+  GAUNTLET;
+
+  /**
+   * Returns the pairings of this schedule, as the indices of the two
+   * contestants of each.
+   * 
+   * @param contestants
+   *          the number of contestants
+   * @return the pairings
+   */
+  int[][] pairings(int contestants) {
+    int count = this == ROUND_ROBIN ? contestants * (contestants - 1) / 2 : contestants - 1;
+    int[][] pairings = new int[Math.max(0, count)][];
+    int pairing = 0;
+    for (int first = 0; first < contestants; first++) {
+      for (int second = first + 1; second < contestants; second++) {
+        pairings[pairing++] = new int[] { first, second };
+      }
+      if (this == GAUNTLET) break;
+    }
+    return pairings;
+  }
+
+}
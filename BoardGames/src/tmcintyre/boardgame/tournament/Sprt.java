@@ -0,0 +1,228 @@
+package tmcintyre.boardgame.tournament;
+
+/**
+ * A sequential probability ratio test of whether one contestant is stronger
+ * than another, from the results of pairs of games played from the same
+ * opening with the colours reversed.
+ * 
+ * <p>
+ * The test weighs the hypothesis that the candidate is <tt>elo0</tt> Elo
+ * stronger than the baseline (usually 0: no better) against the hypothesis
+ * that it is <tt>elo1</tt> stronger. After each pair the log-likelihood ratio
+ * is compared with bounds set by the chances <tt>alpha</tt> and <tt>beta</tt>
+ * of accepting the wrong one, and the test ends as soon as either bound is
+ * crossed. Pairs are scored as five outcomes, from two losses to two wins, so
+ * that the luck of the opening, which both games share, cancels out. The
+ * ratio is the usual normal approximation of the generalised test over those
+ * outcomes.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public final class Sprt {
+
+  /** The state of a test. */
+  public enum Status {
+    /** Neither bound has been crossed. */
+    CONTINUE,
+    /** The candidate is at least <tt>elo1</tt> stronger. */
+    ACCEPT_H1,
+    /** The candidate is no more than <tt>elo0</tt> stronger. */
+    ACCEPT_H0
+  }
+
+  // Added to the count of each outcome in the ratio, so that the first few
+  // pairs, whose variance is close to 0, cannot decide the test
+  private static final double PRIOR = 0.5;
+  // The number of standard deviations of the 95% confidence interval
+  private static final double Z_95 = 1.959964;
+
+  private final double elo0;
+  private final double elo1;
+  private final double lower;
+  private final double upper;
+  // Pairs by the candidate's score, in half points from 0 to 2
+  private final long[] pairs = new long[5];
+
+  /**
+   * Creates a test.
+   * 
+   * @param elo0
+   *          the difference in Elo of the null hypothesis
+   * @param elo1
+   *          the difference in Elo of the alternative, greater than
+   *          <tt>elo0</tt>
+   * @param alpha
+   *          the chance of accepting <tt>elo1</tt> when <tt>elo0</tt> is true
+   * @param beta
+   *          the chance of accepting <tt>elo0</tt> when <tt>elo1</tt> is true
+   * @throws IllegalArgumentException
+   *           if <tt>elo1</tt> is not greater than <tt>elo0</tt>, or either
+   *           chance is not between 0 and 1
+   */
+  public Sprt(double elo0, double elo1, double alpha, double beta) {
+    if (elo1 <= elo0) throw new IllegalArgumentException("elo1 must be greater than elo0");
+    if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+      throw new IllegalArgumentException("alpha and beta must be between 0 and 1");
+    }
+    this.elo0 = elo0;
+    this.elo1 = elo1;
+    this.lower = Math.log(beta / (1 - alpha));
+    this.upper = Math.log((1 - beta) / alpha);
+  }
+
+  /**
+   * Adds the result of a pair of games.
+   * 
+   * @param halfPoints
+   *          the candidate's score over both games, in half points: 0 for two
+   *          losses up to 4 for two wins
+   * @throws IllegalArgumentException
+   *           if the score is not from 0 to 4
+   */
+  public void addPair(int halfPoints) {
+    if (halfPoints < 0 || halfPoints >= pairs.length) {
+      throw new IllegalArgumentException("Not the score of a pair: " + halfPoints);
+    }
+    pairs[halfPoints]++;
+  }
+
+  /**
+   * Returns the number of pairs in which the candidate scored the given
+   * number of half points.
+   * 
+   * @param halfPoints
+   *          from 0 to 4
+   * @return the number of pairs
+   */
+  public long getPairs(int halfPoints) {
+    return pairs[halfPoints];
+  }
+
+  public long getPairs() {
+    long total = 0;
+    for (long count : pairs) {
+      total += count;
+    }
+    return total;
+  }
+
+  public double getLowerBound() {
+    return lower;
+  }
+
+  public double getUpperBound() {
+    return upper;
+  }
+
+  /**
+   * Returns the log-likelihood ratio of <tt>elo1</tt> over <tt>elo0</tt>.
+   * 
+   * @return the log-likelihood ratio, 0 before any pairs
+   */
+  public double getLlr() {
+    long n = getPairs();
+    if (n == 0) return 0;
+    double[] moments = moments(PRIOR);
+    double mean = moments[0];
+    double variance = moments[1];
+    double score0 = expectedScore(elo0);
+    double score1 = expectedScore(elo1);
+    return n * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+  }
+
+  public Status getStatus() {
+    double llr = getLlr();
+    if (llr >= upper) return Status.ACCEPT_H1;
+    if (llr <= lower) return Status.ACCEPT_H0;
+    return Status.CONTINUE;
+  }
+
+  /**
+   * Returns the candidate's share of the points.
+   * 
+   * @return the score, from 0 to 1, or 0.5 before any pairs
+   */
+  public double getScore() {
+    return getPairs() == 0 ? 0.5 : moments(0)[0];
+  }
+
+  /**
+   * Returns how many Elo stronger the candidate has played than the baseline.
+   * 
+   * @return the difference in Elo
+   */
+  public double getElo() {
+    return toElo(getScore());
+  }
+
+  /**
+   * Returns the half-width of the 95% confidence interval of
+   * <code>getElo</code>, taken as the larger side of the interval, which is
+   * not symmetric in Elo.
+   * 
+   * @return the error in Elo, or infinity before two pairs or when either
+   *         side of the interval is unbounded, as when every pair is won
+   */
+  public double getEloError() {
+    long n = getPairs();
+    if (n < 2) return Double.POSITIVE_INFINITY;
+    double[] moments = moments(0);
+    double error = Z_95 * Math.sqrt(moments[1] / n);
+    double elo = toElo(moments[0]);
+    double upper = toElo(moments[0] + error);
+    double lower = toElo(moments[0] - error);
+    // Infinity less infinity would be NaN
+    if (Double.isInfinite(elo) || Double.isInfinite(upper) || Double.isInfinite(lower)) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.max(upper - elo, elo - lower);
+  }
+
+  /**
+   * Returns the mean and the variance of the score of a pair, as a share of
+   * its two points, with the provided number added to each count.
+   */
+  private double[] moments(double prior) {
+    double total = 0;
+    double sum = 0;
+    for (int i = 0; i < pairs.length; i++) {
+      double count = pairs[i] + prior;
+      total += count;
+      sum += count * i / 4.0;
+    }
+    double mean = sum / total;
+    double squares = 0;
+    for (int i = 0; i < pairs.length; i++) {
+      double deviation = i / 4.0 - mean;
+      squares += (pairs[i] + prior) * deviation * deviation;
+    }
+    return new double[] { mean, squares / total };
+  }
+
+  /**
+   * Returns the share of the points expected of a player the given number of
+   * Elo stronger than its opponent.
+   */
+  static double expectedScore(double elo) {
+    return 1 / (1 + Math.pow(10, -elo / 400));
+  }
+
+  /**
+   * Returns the difference in Elo that a share of the points is expected from,
+   * infinite for a share of 0 or 1.
+   */
+  static double toElo(double score) {
+    if (score <= 0) return Double.NEGATIVE_INFINITY;
+    if (score >= 1) return Double.POSITIVE_INFINITY;
+    return -400 * Math.log10(1 / score - 1);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Pairs: %d [%d %d %d %d %d]  Elo: %.1f +/- %.1f  LLR: %.2f (%.2f, %.2f)"
+        + " [%.1f, %.1f]  %s", getPairs(), pairs[0], pairs[1], pairs[2], pairs[3], pairs[4],
+        getElo(), getEloError(), getLlr(), lower, upper, elo0, elo1, getStatus());
+  }
+
+}
@@ -0,0 +1,200 @@
+package tmcintyre.boardgame.tournament;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.tablebase.TablebaseProber;
+import tmcintyre.boardgame.tablebase.Tablebases;
+
+/**
+ * Plays pairs of headless games between a candidate and a baseline, such as
+ * an engine with a change to its search or evaluation and the engine without
+ * it, until a {@link Sprt} decides whether the candidate is stronger.
+ * 
+ * <p>
+ * As in a {@link Tournament}, both games of a pair start from the same random
+ * opening, once with each contestant moving first, and pairs are played at
+ * once on a fixed pool of threads, each with its own movers. The test is
+ * updated as each pair ends, and no more pairs are started once it is
+ * decided; pairs that end after that are not counted.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class SprtMatch {
+
+  public static final int DEFAULT_MAX_PAIRS = 20000;
+
+  /**
+   * Told of the state of the test after each pair, while the test is locked,
+   * so that the progress of a long match can be shown.
+   */
+  public interface Listener {
+    void pairCompleted(Sprt sprt);
+  }
+
+  private final GameType type;
+  private final Contestant candidate;
+  private final Contestant baseline;
+  private final Sprt sprt;
+  private int openingPlies = Tournament.DEFAULT_OPENING_PLIES;
+  private int maxPlies = Tournament.DEFAULT_MAX_PLIES;
+  private int maxPairs = DEFAULT_MAX_PAIRS;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private long seed = System.nanoTime();
+  private Listener listener;
+  private Tablebases tablebases;
+
+  /**
+   * Creates a match.
+   * 
+   * @param type
+   *          the game to play, which must allow two players
+   * @param candidate
+   * @param baseline
+   * @param sprt
+   *          the test, which is updated as the match is played
+   * @throws IllegalArgumentException
+   *           if the game cannot be played by two players
+   */
+  public SprtMatch(GameType type, Contestant candidate, Contestant baseline, Sprt sprt) {
+    if (type.getMinPlayers() > 2 || type.getMaxPlayers() < 2) {
+      throw new IllegalArgumentException(type + " is not a two-player game");
+    }
+    this.type = type;
+    this.candidate = candidate;
+    this.baseline = baseline;
+    this.sprt = sprt;
+  }
+
+  public void setOpeningPlies(int plies) {
+    this.openingPlies = plies;
+  }
+
+  public void setMaxPlies(int plies) {
+    this.maxPlies = plies;
+  }
+
+  /**
+   * Sets the number of pairs after which the match ends undecided.
+   * 
+   * @param pairs
+   */
+  public void setMaxPairs(int pairs) {
+    this.maxPairs = pairs;
+  }
+
+  /**
+   * Sets the number of pairs played at once.
+   * 
+   * @param threads
+   *          the number of threads, at least 1
+   * @throws IllegalArgumentException
+   *           if the number of threads is less than 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) throw new IllegalArgumentException("A match needs at least one thread");
+    this.threads = threads;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Sets the endgame tables that adjudicate chess games, or <code>null</code>
+   * to play every game out.
+   * 
+   * @param tablebases
+   */
+  public void setTablebases(Tablebases tablebases) {
+    this.tablebases = tablebases;
+  }
+
+  /**
+   * Plays pairs until the test is decided or the most pairs have been played.
+   * 
+   * @return the status of the test
+   */
+  public Sprt.Status run() {
+    final AtomicInteger next = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            Contestant.Mover[] movers = { candidate.newMover(), baseline.newMover() };
+            TablebaseProber prober = tablebases == null ? null : new TablebaseProber(tablebases);
+            for (int pair = next.getAndIncrement(); pair < maxPairs; pair = next.getAndIncrement()) {
+              synchronized (sprt) {
+                if (sprt.getStatus() != Sprt.Status.CONTINUE) break;
+              }
+              int halfPoints = playPair(pair, movers, prober);
+              synchronized (sprt) {
+                if (sprt.getStatus() != Sprt.Status.CONTINUE) break;
+                sprt.addPair(halfPoints);
+                if (listener != null) listener.pairCompleted(sprt);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    synchronized (sprt) {
+      return sprt.getStatus();
+    }
+  }
+
+  /**
+   * Plays both games of a pair, and returns the candidate's score in half
+   * points.
+   */
+  private int playPair(int pair, Contestant.Mover[] movers, TablebaseProber prober) {
+    long openingSeed = seed * 1000003 + pair;
+    int halfPoints = 0;
+    for (int game = 0; game < 2; game++) {
+      // The candidate is the first player of the first game
+      int first = game;
+      int second = 1 - game;
+      HeadlessGame headless = new HeadlessGame(type, name(first), name(second));
+      headless.setProber(prober);
+      int result = headless.play(new Contestant.Mover[] { movers[first], movers[second] }, null,
+          openingSeed, openingPlies, maxPlies);
+      if (result == HeadlessGame.DRAW) {
+        halfPoints++;
+      } else if ((result == HeadlessGame.FIRST_WINS) == (first == 0)) {
+        halfPoints += 2;
+      }
+    }
+    return halfPoints;
+  }
+
+  private String name(int contestant) {
+    return contestant == 0 ? candidate.getName() : baseline.getName();
+  }
+
+}
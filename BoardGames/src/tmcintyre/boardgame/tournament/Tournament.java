@@ -0,0 +1,248 @@
+package tmcintyre.boardgame.tournament;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tmcintyre.boardgame.game.GameType;
+import tmcintyre.boardgame.tablebase.TablebaseProber;
+import tmcintyre.boardgame.tablebase.Tablebases;
+
+/**
+ * Plays many headless games between {@link Contestant}s, on all the
+ * processors of the machine, and tallies the results.
+ * 
+ * <p>
+ * The contestants meet in the pairings of a {@link Schedule}. Each pairing
+ * plays its games in pairs from the same random opening, once with each
+ * contestant moving first, so that neither gains from the luck of the
+ * opening or of moving first.
+ * 
+ * <p>
+ * Each game is a task for a fixed pool of threads, by default one for each
+ * processor. A thread makes its own {@link Contestant.Mover}s, which it uses
+ * for every game it plays, so an engine's table is only allocated once per
+ * thread rather than once per game. No game has a GUI or a
+ * <code>Logger</code>.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class Tournament {
+
+  public static final int DEFAULT_GAMES_PER_PAIRING = 100;
+  public static final int DEFAULT_OPENING_PLIES = 4;
+  public static final int DEFAULT_MAX_PLIES = 400;
+
+  private final GameType type;
+  private final List<Contestant> contestants;
+  private Schedule schedule = Schedule.ROUND_ROBIN;
+  private int gamesPerPairing = DEFAULT_GAMES_PER_PAIRING;
+  private int openingPlies = DEFAULT_OPENING_PLIES;
+  private int maxPlies = DEFAULT_MAX_PLIES;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private long seed = System.nanoTime();
+  private Tablebases tablebases;
+
+  /**
+   * Creates a tournament.
+   * 
+   * @param type
+   *          the game to play, which must allow two players
+   * @param contestants
+   *          at least two contestants
+   * @throws IllegalArgumentException
+   *           if the game cannot be played by two players, or there are fewer
+   *           than two contestants
+   */
+  public Tournament(GameType type, List<Contestant> contestants) {
+    if (type.getMinPlayers() > 2 || type.getMaxPlayers() < 2) {
+      throw new IllegalArgumentException(type + " is not a two-player game");
+    }
+    if (contestants.size() < 2) throw new IllegalArgumentException("Too few contestants");
+    this.type = type;
+    this.contestants = new ArrayList<Contestant>(contestants);
+  }
+
+  public void setSchedule(Schedule schedule) {
+    this.schedule = schedule;
+  }
+
+  /**
+   * Sets the number of games each pairing plays, which is rounded up to an
+   * even number so that each opening is played with both colours.
+   * 
+   * @param games
+   */
+  public void setGamesPerPairing(int games) {
+    this.gamesPerPairing = Math.max(2, games + games % 2);
+  }
+
+  /**
+   * Sets the number of random moves each game starts with.
+   * 
+   * @param plies
+   */
+  public void setOpeningPlies(int plies) {
+    this.openingPlies = plies;
+  }
+
+  /**
+   * Sets the number of moves after which a game is drawn.
+   * 
+   * @param plies
+   */
+  public void setMaxPlies(int plies) {
+    this.maxPlies = plies;
+  }
+
+  /**
+   * Sets the number of games played at once.
+   * 
+   * @param threads
+   *          the number of threads, at least 1
+   * @throws IllegalArgumentException
+   *           if the number of threads is less than 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) throw new IllegalArgumentException("A tournament needs at least one thread");
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the seed the random openings are chosen from, so that a tournament
+   * can be played again with the same openings.
+   * 
+   * @param seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Sets the endgame tables that adjudicate chess games, or <code>null</code>
+   * to play every game out.
+   * 
+   * @param tablebases
+   */
+  public void setTablebases(Tablebases tablebases) {
+    this.tablebases = tablebases;
+  }
+
+  /**
+   * Plays all the games of the tournament.
+   * 
+   * @return the results
+   */
+  public TournamentResult run() {
+    final int[][] pairings = schedule.pairings(contestants.size());
+    final int games = pairings.length * gamesPerPairing;
+    final AtomicInteger next = new AtomicInteger();
+    final int n = contestants.size();
+    long start = System.nanoTime();
+
+    List<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Worker>() {
+          @Override
+          public Worker call() {
+            Worker worker = new Worker(n);
+            for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+              worker.play(game, pairings[game / gamesPerPairing]);
+            }
+            return worker;
+          }
+        }));
+      }
+
+      TournamentResult result = new TournamentResult(names());
+      for (Future<Worker> future : futures) {
+        Worker worker = future.get();
+        result.add(worker.wins, worker.draws, worker.latencies);
+      }
+      result.setNanos(System.nanoTime() - start);
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String> names() {
+    List<String> names = new ArrayList<String>();
+    for (Contestant contestant : contestants) {
+      names.add(contestant.getName());
+    }
+    return names;
+  }
+
+  /**
+   * The seed of the opening of the given pair of games of a pairing, the same
+   * for both games of the pair.
+   */
+  private long openingSeed(int pairing, int pair) {
+    return (seed * 31 + pairing) * 1000003 + pair;
+  }
+
+  /**
+   * Plays games in one thread, keeping its own movers and tallies.
+   */
+  private final class Worker {
+
+    final Contestant.Mover[] movers;
+    final long[][] wins;
+    final long[][] draws;
+    final Latencies[] latencies;
+    final TablebaseProber prober = tablebases == null ? null : new TablebaseProber(tablebases);
+
+    Worker(int contestants) {
+      movers = new Contestant.Mover[contestants];
+      wins = new long[contestants][contestants];
+      draws = new long[contestants][contestants];
+      latencies = new Latencies[contestants];
+      for (int i = 0; i < contestants; i++) {
+        latencies[i] = new Latencies();
+      }
+    }
+
+    void play(int game, int[] pairing) {
+      int index = game % gamesPerPairing;
+      // The second game of each pair reverses the colours
+      int first = pairing[index % 2];
+      int second = pairing[1 - index % 2];
+
+      HeadlessGame headless = new HeadlessGame(type, contestants.get(first).getName(),
+          contestants.get(second).getName());
+      headless.setProber(prober);
+      int result = headless.play(new Contestant.Mover[] { mover(first), mover(second) },
+          new Latencies[] { latencies[first], latencies[second] }, openingSeed(game
+              / gamesPerPairing, index / 2), openingPlies, maxPlies);
+      if (result == HeadlessGame.FIRST_WINS) {
+        wins[first][second]++;
+      } else if (result == HeadlessGame.SECOND_WINS) {
+        wins[second][first]++;
+      } else {
+        draws[first][second]++;
+        draws[second][first]++;
+      }
+    }
+
+    private Contestant.Mover mover(int contestant) {
+      if (movers[contestant] == null) movers[contestant] = contestants.get(contestant).newMover();
+      return movers[contestant];
+    }
+
+  }
+
+}
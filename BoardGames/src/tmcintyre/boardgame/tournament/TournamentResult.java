@@ -0,0 +1,210 @@
+package tmcintyre.boardgame.tournament;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of a {@link Tournament}: the wins, draws and losses of each
+ * contestant against each other, the number of games played a second, and
+ * how long each contestant took over its moves.
+ * 
+ * @author Tom McIntyre
+ * 
+ */
+public class TournamentResult {
+
+  private final List<String> names;
+  private final long[][] wins;
+  private final long[][] draws;
+  private final Latencies[] latencies;
+  private long nanos;
+
+  TournamentResult(List<String> names) {
+    int n = names.size();
+    this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+    wins = new long[n][n];
+    draws = new long[n][n];
+    latencies = new Latencies[n];
+    for (int i = 0; i < n; i++) {
+      latencies[i] = new Latencies();
+    }
+  }
+
+  void add(long[][] wins, long[][] draws, Latencies[] latencies) {
+    for (int i = 0; i < names.size(); i++) {
+      for (int j = 0; j < names.size(); j++) {
+        this.wins[i][j] += wins[i][j];
+        this.draws[i][j] += draws[i][j];
+      }
+      this.latencies[i].addAll(latencies[i]);
+    }
+  }
+
+  void setNanos(long nanos) {
+    this.nanos = nanos;
+  }
+
+  /**
+   * Returns the names of the contestants, in the order they were entered.
+   * 
+   * @return the names of the contestants
+   */
+  public List<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Returns the number of games the first contestant won against the second.
+   * 
+   * @param contestant
+   * @param opponent
+   * @return the number of wins
+   */
+  public long getWins(int contestant, int opponent) {
+    return wins[contestant][opponent];
+  }
+
+  public long getDraws(int contestant, int opponent) {
+    return draws[contestant][opponent];
+  }
+
+  public long getLosses(int contestant, int opponent) {
+    return wins[opponent][contestant];
+  }
+
+  public long getWins(int contestant) {
+    return sum(wins[contestant]);
+  }
+
+  public long getDraws(int contestant) {
+    return sum(draws[contestant]);
+  }
+
+  public long getLosses(int contestant) {
+    long losses = 0;
+    for (long[] opponent : wins) {
+      losses += opponent[contestant];
+    }
+    return losses;
+  }
+
+  private static long sum(long[] counts) {
+    long sum = 0;
+    for (long count : counts) {
+      sum += count;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the points the contestant scored: one for a win and a half for a
+   * draw.
+   * 
+   * @param contestant
+   * @return the score
+   */
+  public double getScore(int contestant) {
+    return getWins(contestant) + getDraws(contestant) / 2.0;
+  }
+
+  public long getGames() {
+    long games = 0;
+    for (int i = 0; i < names.size(); i++) {
+      games += getWins(i) + getDraws(i);
+    }
+    // Each draw was counted for both contestants
+    long draws = 0;
+    for (int i = 0; i < names.size(); i++) {
+      draws += getDraws(i);
+    }
+    return games - draws / 2;
+  }
+
+  public long getNanos() {
+    return nanos;
+  }
+
+  public double getGamesPerSecond() {
+    return getGames() * 1e9 / Math.max(1, nanos);
+  }
+
+  /**
+   * Returns the number of moves the contestant chose, not counting random
+   * opening moves.
+   * 
+   * @param contestant
+   * @return the number of moves
+   */
+  public int getMoves(int contestant) {
+    return latencies[contestant].size();
+  }
+
+  /**
+   * Returns the time that the given percentage of the contestant's moves took
+   * no longer than.
+   * 
+   * @param contestant
+   * @param percent
+   *          from 0 to 100
+   * @return the percentile, in nanoseconds
+   */
+  public long getLatencyPercentile(int contestant, double percent) {
+    return latencies[contestant].percentile(percent);
+  }
+
+  /**
+   * Returns a table of the results: a cross table of wins, draws and losses,
+   * then each contestant's totals and move times in milliseconds.
+   */
+  @Override
+  public String toString() {
+    int width = 8;
+    for (String name : names) {
+      width = Math.max(width, name.length() + 2);
+    }
+    StringBuilder table = new StringBuilder();
+    table.append(pad("", width));
+    for (String name : names) {
+      table.append(pad(name, width));
+    }
+    table.append('\n');
+    for (int i = 0; i < names.size(); i++) {
+      table.append(pad(names.get(i), width));
+      for (int j = 0; j < names.size(); j++) {
+        String cell = i == j ? "-" : getWins(i, j) + "/" + getDraws(i, j) + "/" + getLosses(i, j);
+        table.append(pad(cell, width));
+      }
+      table.append('\n');
+    }
+    table.append('\n');
+    table.append(String.format("%-" + width + "s%8s%8s%8s%8s%10s%10s%10s%10s%n", "", "W", "D",
+        "L", "Score", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    for (int i = 0; i < names.size(); i++) {
+      table.append(String.format("%-" + width + "s%8d%8d%8d%7.1f%%%10.2f%10.2f%10.2f%10.2f%n",
+          names.get(i), getWins(i), getDraws(i), getLosses(i), percentage(i),
+          millis(i, 50), millis(i, 90), millis(i, 99), millis(i, 100)));
+    }
+    table.append(String.format("%nGames: %d  Time: %dms  Games/s: %.1f%n", getGames(),
+        nanos / 1000000, getGamesPerSecond()));
+    return table.toString();
+  }
+
+  private double percentage(int contestant) {
+    long games = getWins(contestant) + getDraws(contestant) + getLosses(contestant);
+    return games == 0 ? 0 : getScore(contestant) * 100 / games;
+  }
+
+  private double millis(int contestant, double percent) {
+    return getLatencyPercentile(contestant, percent) / 1e6;
+  }
+
+  private static String pad(String text, int width) {
+    StringBuilder padded = new StringBuilder(text);
+    while (padded.length() < width) {
+      padded.append(' ');
+    }
+    return padded.toString();
+  }
+
+}